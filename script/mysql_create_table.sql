@@ -9,5 +9,8 @@ CREATE TABLE `t_transaction_history` (
   `ftime` datetime(3) NOT NULL,
   PRIMARY KEY (`fid`),
   UNIQUE KEY `id_UNIQUE` (`fid`),
-  KEY `faddress_index` (`faddress`)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
\ No newline at end of file
+  KEY `faddress_ftime_fid_index` (`faddress`,`ftime`,`fid`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+-- upgrade an existing table for keyset pagination:
+-- ALTER TABLE `t_transaction_history` ADD KEY `faddress_ftime_fid_index` (`faddress`,`ftime`,`fid`), DROP KEY `faddress_index`;
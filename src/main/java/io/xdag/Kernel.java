@@ -37,6 +37,7 @@ import io.xdag.crypto.Keys;
 import io.xdag.crypto.RandomX;
 import io.xdag.db.*;
 import io.xdag.db.mysql.TransactionHistoryStoreImpl;
+import io.xdag.db.mysql.TxHistoryWriter;
 import io.xdag.db.rocksdb.*;
 import io.xdag.net.*;
 import io.xdag.net.message.MessageQueue;
@@ -50,6 +51,7 @@ import io.xdag.rpc.modules.xdag.*;
 import io.xdag.rpc.netty.*;
 import io.xdag.rpc.serialize.JacksonBasedRpcSerializer;
 import io.xdag.rpc.serialize.JsonRpcSerializer;
+import io.xdag.utils.DruidUtils;
 import io.xdag.utils.XdagTime;
 import lombok.Getter;
 import lombok.Setter;
@@ -59,6 +61,7 @@ import org.hyperledger.besu.crypto.KeyPair;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -77,6 +80,7 @@ public class Kernel {
     protected BlockStore blockStore;
     protected OrphanBlockStore orphanBlockStore;
     protected TransactionHistoryStore txHistoryStore;
+    protected TxHistoryWriter txHistoryWriter;
 
     protected SnapshotStore snapshotStore;
     protected Blockchain blockchain;
@@ -111,6 +115,7 @@ public class Kernel {
 
     // rpc
     private JsonRpcWeb3ServerHandler jsonRpcWeb3ServerHandler;
+    private JsonRpcExecutor jsonRpcExecutor;
     private Web3 web3;
     private Web3WebSocketServer web3WebSocketServer;
     private Web3HttpServer web3HttpServer;
@@ -161,12 +166,17 @@ public class Kernel {
 
         log.info("Wallet init.");
 
-        dbFactory = new RocksdbFactory(this.config);
+        if (config.getNodeSpec().isStoreSingleDb()) {
+            dbFactory = new RocksdbColumnFamilyFactory(this.config);
+        } else {
+            dbFactory = new RocksdbFactory(this.config);
+        }
         blockStore = new BlockStoreImpl(
                 dbFactory.getDB(DatabaseName.INDEX),
                 dbFactory.getDB(DatabaseName.BLOCK),
                 dbFactory.getDB(DatabaseName.TIME),
-                dbFactory.getDB(DatabaseName.TXHISTORY));
+                dbFactory.getDB(DatabaseName.TXHISTORY),
+                config.getNodeSpec().getStoreBlockInfoCacheSize());
         log.info("Block Store init.");
         blockStore.init();
 
@@ -180,7 +190,16 @@ public class Kernel {
 
         if (config.getEnableTxHistory()) {
             long txPageSizeLimit = config.getTxPageSizeLimit();
-            txHistoryStore = new TransactionHistoryStoreImpl(txPageSizeLimit);
+            if ("rocksdb".equalsIgnoreCase(config.getTxHistoryStoreType())) {
+                TxHistoryIndexStoreImpl txHistoryIndexStore = new TxHistoryIndexStoreImpl(
+                        dbFactory.getDB(DatabaseName.TXINDEX), txPageSizeLimit);
+                txHistoryIndexStore.init();
+                txHistoryStore = txHistoryIndexStore;
+            } else {
+                txHistoryWriter = new TxHistoryWriter(DruidUtils::getConnection,
+                        Paths.get(config.getNodeSpec().getStoreDir(), "txhistory.spool"));
+                txHistoryStore = new TransactionHistoryStoreImpl(txPageSizeLimit, txHistoryWriter);
+            }
             log.info("Transaction History Store init.");
         }
 
@@ -330,9 +349,15 @@ public class Kernel {
     private JsonRpcWeb3ServerHandler getJsonRpcWeb3ServerHandler() {
         if (jsonRpcWeb3ServerHandler == null) {
             try {
+                jsonRpcExecutor = new JsonRpcExecutor(
+                        config.getRPCSpec().getRPCExecutorThreads(),
+                        config.getRPCSpec().getRPCExecutorQueueSize(),
+                        config.getRPCSpec().isRPCExecutorVirtualThreads()
+                );
                 jsonRpcWeb3ServerHandler = new JsonRpcWeb3ServerHandler(
                         getWeb3(),
-                        config.getRPCSpec().getRpcModules()
+                        config.getRPCSpec().getRpcModules(),
+                        jsonRpcExecutor
                 );
             } catch (Exception e) {
                 log.error("catch an error " + e.getMessage());
@@ -419,6 +444,9 @@ public class Kernel {
         if (web3WebSocketServer != null) {
             web3WebSocketServer.stop();
         }
+        if (jsonRpcExecutor != null) {
+            jsonRpcExecutor.shutdown();
+        }
 
         // 1. 工作层关闭
         // stop consensus
@@ -451,11 +479,15 @@ public class Kernel {
         // 3. 数据层关闭
         // TODO 关闭checkmain线程
         blockchain.stopCheckMain();
-
-        for (DatabaseName name : DatabaseName.values()) {
-            dbFactory.getDB(name).close();
+        log.info("BlockInfo cache stats: {}", blockStore.getBlockInfoCacheStats());
+        log.info("Extra block pool stats: {}", blockchain.getMemOrphanPool());
+        if (txHistoryWriter != null) {
+            txHistoryWriter.close();
+            log.info("Tx history writer stop.");
         }
 
+        dbFactory.close();
+
         // release
         randomx.randomXPoolReleaseMem();
         log.info("Release randomx");
@@ -29,6 +29,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import io.xdag.Kernel;
 import io.xdag.core.*;
+import io.xdag.db.mysql.TxHistoryWriter;
 import io.xdag.net.Channel;
 import io.xdag.net.websocket.ChannelSupervise;
 import io.xdag.utils.BasicUtils;
@@ -339,18 +340,20 @@ public class Commands {
     public String stats() {
         XdagStats xdagStats = kernel.getBlockchain().getXdagStats();
         XdagTopStatus xdagTopStatus = kernel.getBlockchain().getXdagTopStatus();
+        MemOrphanPool memOrphanPool = kernel.getBlockchain().getMemOrphanPool();
 
         // diff
         BigInteger currentDiff = xdagTopStatus.getTopDiff() != null ? xdagTopStatus.getTopDiff() : BigInteger.ZERO;
         BigInteger netDiff = xdagStats.getMaxdifficulty() != null ? xdagStats.getMaxdifficulty() : BigInteger.ZERO;
         BigInteger maxDiff = netDiff.max(currentDiff);
 
-        return String.format("""
+        String stats = String.format("""
                         Statistics for ours and maximum known parameters:
                                     hosts: %d of %d
                                    blocks: %d of %d
                               main blocks: %d of %d
                              extra blocks: %d
+                               extra pool: %d hits, %d misses, %d evictions
                             orphan blocks: %d
                          wait sync blocks: %d
                          chain difficulty: %s of %s
@@ -362,6 +365,7 @@ public class Commands {
                 xdagStats.getNblocks(), Math.max(xdagStats.getTotalnblocks(), xdagStats.getNblocks()),
                 xdagStats.getNmain(), Math.max(xdagStats.getTotalnmain(), xdagStats.getNmain()),
                 xdagStats.nextra,
+                memOrphanPool.getHits(), memOrphanPool.getMisses(), memOrphanPool.getEvictions(),
                 xdagStats.nnoref,
                 xdagStats.nwaitsync,
 //                xdagTopStatus.getTopDiff()!=null?xdagTopStatus.getTopDiff().toString(16):"",
@@ -375,6 +379,15 @@ public class Commands {
                 xdagHashRate(kernel.getBlockchain().getXdagExtStats().getHashRateTotal()),
                 kernel.getAddressStore().getAddressSize().toLong()
         );
+
+        // only present when tx history is written to mysql
+        TxHistoryWriter txHistoryWriter = kernel.getTxHistoryWriter();
+        if (txHistoryWriter != null) {
+            stats += String.format("\n       tx history: %d queued, flush %d ms last, %d ms avg",
+                    txHistoryWriter.getQueueDepth(), txHistoryWriter.getLastFlushMillis(),
+                    txHistoryWriter.getAverageFlushMillis());
+        }
+        return stats;
     }
 
     /**
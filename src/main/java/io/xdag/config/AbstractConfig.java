@@ -43,6 +43,8 @@ import org.apache.commons.lang3.SystemUtils;
 import java.net.InetSocketAddress;
 import java.util.*;
 
+import static io.xdag.config.Constants.MAX_ALLOWED_EXTRA;
+
 @Slf4j
 @Getter
 @Setter
@@ -62,6 +64,8 @@ public class AbstractConfig implements Config, AdminSpec, NodeSpec, WalletSpec,
     // =========================
 
     protected int WebsocketServerPort;
+    protected int poolShareVerifyThreads = Runtime.getRuntime().availableProcessors();
+    protected int poolShareQueueSize = 65536;
 
     protected int maxShareCountPerChannel = 20;
     protected int awardEpoch = 0xf;
@@ -101,6 +105,7 @@ public class AbstractConfig implements Config, AdminSpec, NodeSpec, WalletSpec,
     protected int connectionReadTimeout = 10000;
     protected boolean enableTxHistory = false;
     protected long txPageSizeLimit = 500;
+    protected String txHistoryStoreType = "mysql";
     protected boolean enableGenerateBlock = false;
 
     protected String rootDir;
@@ -113,6 +118,17 @@ public class AbstractConfig implements Config, AdminSpec, NodeSpec, WalletSpec,
     protected int storeMaxOpenFiles = 1024;
     protected int storeMaxThreads = 1;
     protected boolean storeFromBackup = false;
+    protected long storeBlockInfoCacheSize = 64L * 1024 * 1024;
+    protected boolean storeSingleDb = false;
+    protected long storeBlockCacheSize = 256L * 1024 * 1024;
+    protected long storeWriteBufferSize = 128L * 1024 * 1024;
+    protected int importVerifyThreads = Runtime.getRuntime().availableProcessors();
+    protected int importMaxPendingPerPeer = 1024;
+    protected int importQueueSize = 8192;
+    protected int syncMaxInFlight = 32;
+    protected int syncMaxInFlightPerPeer = 8;
+    protected long extraPoolMaxSize = MAX_ALLOWED_EXTRA;
+    protected long extraPoolMaxAge = 3600;
     protected String originStoreDir = "./testdate";
 
     protected String whitelistUrl;
@@ -145,6 +161,9 @@ public class AbstractConfig implements Config, AdminSpec, NodeSpec, WalletSpec,
     protected String rpcHost;
     protected int rpcPortHttp;
     protected int rpcPortWs;
+    protected int rpcExecutorThreads;
+    protected int rpcExecutorQueueSize;
+    protected boolean rpcExecutorVirtualThreads;
 
     // =========================
     // Xdag Snapshot
@@ -152,6 +171,7 @@ public class AbstractConfig implements Config, AdminSpec, NodeSpec, WalletSpec,
     protected boolean snapshotEnabled = false;
     protected long snapshotHeight;
     protected long snapshotTime;
+    protected int snapshotImportThreads = Runtime.getRuntime().availableProcessors();
     protected boolean isSnapshotJ;
 
     // =========================
@@ -254,6 +274,9 @@ public class AbstractConfig implements Config, AdminSpec, NodeSpec, WalletSpec,
         poolWhiteIPList = config.hasPath("pool.whiteIPs") ? config.getStringList("pool.whiteIPs") : Collections.singletonList("127.0.0.1");
         log.info("Pool whitelist {}. Any IP allowed? {}", poolWhiteIPList, poolWhiteIPList.contains("0.0.0.0"));
         WebsocketServerPort = config.hasPath("pool.ws.port") ? config.getInt("pool.ws.port") : 7001;
+        poolShareVerifyThreads = config.hasPath("pool.share.verifyThreads") ? config.getInt("pool.share.verifyThreads") : Runtime.getRuntime().availableProcessors();
+        poolShareQueueSize = config.hasPath("pool.share.queueSize") ? config.getInt("pool.share.queueSize") : 65536;
+        snapshotImportThreads = config.hasPath("snapshot.importThreads") ? config.getInt("snapshot.importThreads") : Runtime.getRuntime().availableProcessors();
         nodeIp = config.hasPath("node.ip") ? config.getString("node.ip") : "127.0.0.1";
         nodePort = config.hasPath("node.port") ? config.getInt("node.port") : 8001;
         nodeTag = config.hasPath("node.tag") ? config.getString("node.tag") : "xdagj";
@@ -262,6 +285,18 @@ public class AbstractConfig implements Config, AdminSpec, NodeSpec, WalletSpec,
         enableTxHistory = config.hasPath("node.transaction.history.enable") && config.getBoolean("node.transaction.history.enable");
         enableGenerateBlock = config.hasPath("node.generate.block.enable") && config.getBoolean("node.generate.block.enable");
         txPageSizeLimit = config.hasPath("node.transaction.history.pageSizeLimit") ? config.getInt("node.transaction.history.pageSizeLimit") : 500;
+        txHistoryStoreType = config.hasPath("node.transaction.history.store") ? config.getString("node.transaction.history.store") : "mysql";
+        storeSingleDb = config.hasPath("node.store.singleDb") && config.getBoolean("node.store.singleDb");
+        storeBlockCacheSize = config.hasPath("node.store.blockCacheSize") ? config.getBytes("node.store.blockCacheSize") : 256L * 1024 * 1024;
+        storeWriteBufferSize = config.hasPath("node.store.writeBufferSize") ? config.getBytes("node.store.writeBufferSize") : 128L * 1024 * 1024;
+        storeBlockInfoCacheSize = config.hasPath("node.store.blockInfoCacheSize") ? config.getBytes("node.store.blockInfoCacheSize") : 64L * 1024 * 1024;
+        importVerifyThreads = config.hasPath("node.import.verifyThreads") ? config.getInt("node.import.verifyThreads") : Runtime.getRuntime().availableProcessors();
+        importMaxPendingPerPeer = config.hasPath("node.import.maxPendingPerPeer") ? config.getInt("node.import.maxPendingPerPeer") : 1024;
+        importQueueSize = config.hasPath("node.import.queueSize") ? config.getInt("node.import.queueSize") : 8192;
+        syncMaxInFlight = config.hasPath("node.sync.maxInFlight") ? config.getInt("node.sync.maxInFlight") : 32;
+        syncMaxInFlightPerPeer = config.hasPath("node.sync.maxInFlightPerPeer") ? config.getInt("node.sync.maxInFlightPerPeer") : 8;
+        extraPoolMaxSize = config.hasPath("node.extra.maxSize") ? config.getLong("node.extra.maxSize") : MAX_ALLOWED_EXTRA;
+        extraPoolMaxAge = config.hasPath("node.extra.maxAge") ? config.getLong("node.extra.maxAge") : 3600;
         fundAddress = config.hasPath("fund.address") ? config.getString("fund.address") : "4duPWMbYUgAifVYkKDCWxLvRRkSByf5gb";
         fundRation = config.hasPath("fund.ration") ? config.getDouble("fund.ration") : 5;
         nodeRation = config.hasPath("node.ration") ? config.getDouble("node.ration") : 5;
@@ -278,6 +313,9 @@ public class AbstractConfig implements Config, AdminSpec, NodeSpec, WalletSpec,
             rpcHost = config.hasPath("rpc.http.host") ? config.getString("rpc.http.host") : "127.0.0.1";
             rpcPortHttp = config.hasPath("rpc.http.port") ? config.getInt("rpc.http.port") : 10001;
             rpcPortWs = config.hasPath("rpc.ws.port") ? config.getInt("rpc.ws.port") : 10002;
+            rpcExecutorThreads = config.hasPath("rpc.executor.threads") ? config.getInt("rpc.executor.threads") : 0;
+            rpcExecutorQueueSize = config.hasPath("rpc.executor.queueSize") ? config.getInt("rpc.executor.queueSize") : 1024;
+            rpcExecutorVirtualThreads = !config.hasPath("rpc.executor.virtualThreads") || config.getBoolean("rpc.executor.virtualThreads");
         }
         flag = config.hasPath("randomx.flags.fullmem") && config.getBoolean("randomx.flags.fullmem");
 
@@ -417,6 +455,21 @@ public class AbstractConfig implements Config, AdminSpec, NodeSpec, WalletSpec,
         return rpcPortWs;
     }
 
+    @Override
+    public int getRPCExecutorThreads() {
+        return rpcExecutorThreads;
+    }
+
+    @Override
+    public int getRPCExecutorQueueSize() {
+        return rpcExecutorQueueSize;
+    }
+
+    @Override
+    public boolean isRPCExecutorVirtualThreads() {
+        return rpcExecutorVirtualThreads;
+    }
+
     @Override
     public boolean isSnapshotEnabled() {
         return snapshotEnabled;
@@ -447,6 +500,11 @@ public class AbstractConfig implements Config, AdminSpec, NodeSpec, WalletSpec,
         return txPageSizeLimit;
     }
 
+    @Override
+    public String getTxHistoryStoreType() {
+        return txHistoryStoreType;
+    }
+
     @Override
     public boolean getEnableGenerateBlock() {
         return enableGenerateBlock;
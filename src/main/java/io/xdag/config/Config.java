@@ -93,11 +93,18 @@ public interface Config {
 
     long getTxPageSizeLimit();
 
+    // mysql or rocksdb
+    String getTxHistoryStoreType();
+
     //websocket
     List<String> getPoolWhiteIPList();
 
     int getWebsocketServerPort();
 
+    int getPoolShareVerifyThreads();
+
+    int getPoolShareQueueSize();
+
     FundSpec getFundSpec();
 
 }
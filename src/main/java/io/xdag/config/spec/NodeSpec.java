@@ -94,6 +94,28 @@ public interface NodeSpec {
 
     boolean isStoreFromBackup();
 
+    long getStoreBlockInfoCacheSize();
+
+    boolean isStoreSingleDb();
+
+    long getStoreBlockCacheSize();
+
+    long getStoreWriteBufferSize();
+
+    int getImportVerifyThreads();
+
+    int getImportMaxPendingPerPeer();
+
+    int getImportQueueSize();
+
+    int getSyncMaxInFlight();
+
+    int getSyncMaxInFlightPerPeer();
+
+    long getExtraPoolMaxSize();
+
+    long getExtraPoolMaxAge();
+
     int getNetMaxFrameBodySize();
 
     int getNetMaxPacketSize();
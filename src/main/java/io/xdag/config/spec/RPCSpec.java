@@ -38,4 +38,16 @@ public interface RPCSpec {
     int getRPCPortByHttp();
 
     int getRPCPortByWebSocket();
+
+    /**
+     * Platform threads handling requests, 0 to size the pool from the CPU count.
+     */
+    int getRPCExecutorThreads();
+
+    /**
+     * Requests allowed to wait for a thread before new ones are rejected as busy.
+     */
+    int getRPCExecutorQueueSize();
+
+    boolean isRPCExecutorVirtualThreads();
 }
@@ -40,4 +40,6 @@ public interface SnapshotSpec {
     long getSnapshotTime();
 
     void setSnapshotTime(long time);
+
+    int getSnapshotImportThreads();
 }
@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.consensus;
+
+import lombok.Getter;
+
+/**
+ * A share message from a pool.
+ *
+ * <p>Pools send {@code {"msgType":2,"msgContent":{"share":"..","hash":"..","taskIndex":n}}}. The few fields
+ * needed are picked out of the text directly instead of building a JSON tree for every share.
+ *
+ * <p>Pools that negotiated the binary protocol send a batch instead: the flag byte followed by records of
+ * share (32 bytes), preHash (32 bytes) and big endian task index (8 bytes).
+ */
+@Getter
+public class PoolShare {
+
+    public static final int SHARE_FLAG = 2;
+    public static final int RECORD_SIZE = 32 + 32 + 8;
+
+    private final String share;
+    private final String hash;
+    private final long taskIndex;
+
+    public PoolShare(String share, String hash, long taskIndex) {
+        this.share = share;
+        this.hash = hash;
+        this.taskIndex = taskIndex;
+    }
+
+    /**
+     * @return the share, or null if the text is not a well formed share message
+     */
+    public static PoolShare parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        int msgType = valueIndex(text, "msgType");
+        if (msgType < 0 || parseLong(text, msgType) != SHARE_FLAG) {
+            return null;
+        }
+        int taskIndex = valueIndex(text, "taskIndex");
+        String share = parseString(text, valueIndex(text, "share"));
+        String hash = parseString(text, valueIndex(text, "hash"));
+        if (taskIndex < 0 || share == null || hash == null) {
+            return null;
+        }
+        long index = parseLong(text, taskIndex);
+        if (index == Long.MIN_VALUE) {
+            return null;
+        }
+        return new PoolShare(share, hash, index);
+    }
+
+    /**
+     * @return the number of share records in a binary batch, or -1 if it is not one
+     */
+    public static int recordCount(byte[] batch) {
+        if (batch == null || batch.length < 1 + RECORD_SIZE || batch[0] != SHARE_FLAG
+                || (batch.length - 1) % RECORD_SIZE != 0) {
+            return -1;
+        }
+        return (batch.length - 1) / RECORD_SIZE;
+    }
+
+    /**
+     * Index of the first character of the value of {@code "key"}, or -1.
+     */
+    private static int valueIndex(String text, String key) {
+        String quoted = "\"" + key + "\"";
+        int from = 0;
+        while (true) {
+            int i = text.indexOf(quoted, from);
+            if (i < 0) {
+                return -1;
+            }
+            int j = skipWhitespace(text, i + quoted.length());
+            if (j < text.length() && text.charAt(j) == ':') {
+                return skipWhitespace(text, j + 1);
+            }
+            // the key text was a value, keep looking
+            from = i + 1;
+        }
+    }
+
+    private static int skipWhitespace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static String parseString(String text, int i) {
+        if (i < 0 || i >= text.length() || text.charAt(i) != '"') {
+            return null;
+        }
+        int end = text.indexOf('"', i + 1);
+        // share and hash are plain hex, escapes mean something else was sent
+        if (end < 0 || text.lastIndexOf('\\', end) > i) {
+            return null;
+        }
+        return text.substring(i + 1, end);
+    }
+
+    /**
+     * @return the number at {@code i}, or {@link Long#MIN_VALUE} if there is none
+     */
+    private static long parseLong(String text, int i) {
+        if (i < 0 || i >= text.length()) {
+            return Long.MIN_VALUE;
+        }
+        int end = i;
+        if (text.charAt(end) == '-') {
+            end++;
+        }
+        while (end < text.length() && Character.isDigit(text.charAt(end))) {
+            end++;
+        }
+        try {
+            return Long.parseLong(text, i, end, 10);
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.consensus;
+
+import static io.xdag.config.Constants.REQUEST_BLOCKS_MAX_TIME;
+import static io.xdag.config.Constants.REQUEST_WAIT;
+
+import com.google.common.util.concurrent.SettableFuture;
+import io.xdag.db.BlockStore;
+import io.xdag.net.Channel;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.MutableBytes;
+
+/**
+ * Breadth first search of the 16-ary sums tree for the time ranges where we differ from the network.
+ *
+ * <p>All differing children of a level are requested at once, spread round robin over the active peers, so
+ * a level costs one round trip instead of one per node. A node whose peer does not answer is asked again
+ * from the next peer with the next level.
+ */
+@Slf4j
+public class SumsDivergenceFinder {
+
+    /**
+     * sums requests of one level waited for together
+     */
+    public static final long LEVEL_TIMEOUT = TimeUnit.SECONDS.toMillis(REQUEST_WAIT) / 4;
+    public static final int MAX_ATTEMPTS = 3;
+    /**
+     * requests in flight per round, a large level is sent in several rounds
+     */
+    public static final int MAX_BATCH = 512;
+
+    private final Supplier<List<Channel>> channels;
+    private final Map<Long, SettableFuture<Bytes>> sumsRequestMap;
+    private final BlockStore blockStore;
+    private final long levelTimeout;
+    private int nextPeer;
+
+    public SumsDivergenceFinder(Supplier<List<Channel>> channels, Map<Long, SettableFuture<Bytes>> sumsRequestMap,
+            BlockStore blockStore) {
+        this(channels, sumsRequestMap, blockStore, LEVEL_TIMEOUT);
+    }
+
+    SumsDivergenceFinder(Supplier<List<Channel>> channels, Map<Long, SettableFuture<Bytes>> sumsRequestMap,
+            BlockStore blockStore, long levelTimeout) {
+        this.channels = channels;
+        this.sumsRequestMap = sumsRequestMap;
+        this.blockStore = blockStore;
+        this.levelTimeout = levelTimeout;
+    }
+
+    /**
+     * Start times of the leaf ranges (at most {@code REQUEST_BLOCKS_MAX_TIME} wide) under {@code [t, t + dt)}
+     * whose sums differ from the peers', oldest first and at most {@code limit} of them.
+     */
+    public List<Long> find(long t, long dt, int limit) throws InterruptedException {
+        TreeSet<Long> leaves = new TreeSet<>();
+        List<Node> level = new ArrayList<>();
+        level.add(new Node(t, dt));
+        while (!level.isEmpty() && leaves.size() < limit) {
+            List<Node> next = new ArrayList<>();
+            List<Node> internal = new ArrayList<>();
+            for (Node node : level) {
+                if (node.dt <= REQUEST_BLOCKS_MAX_TIME) {
+                    leaves.add(node.t);
+                } else {
+                    internal.add(node);
+                }
+            }
+            for (int from = 0; from < internal.size(); from += MAX_BATCH) {
+                if (!expand(internal.subList(from, Math.min(internal.size(), from + MAX_BATCH)), next)) {
+                    // no peer to ask
+                    return new ArrayList<>(leaves);
+                }
+            }
+            level = next;
+        }
+        List<Long> res = new ArrayList<>(leaves);
+        return res.size() > limit ? res.subList(0, limit) : res;
+    }
+
+    /**
+     * Request the sums of {@code nodes} and add their differing children, or the nodes to retry, to {@code next}.
+     */
+    private boolean expand(List<Node> nodes, List<Node> next) throws InterruptedException {
+        List<Channel> peers = channels.get();
+        if (peers == null || peers.isEmpty()) {
+            return false;
+        }
+        List<Request> requests = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            MutableBytes lSums = MutableBytes.create(256);
+            if (blockStore.loadSum(node.t, node.t + node.dt, lSums) <= 0) {
+                continue;
+            }
+            Channel channel = peers.get(Math.floorMod(nextPeer++, peers.size()));
+            SettableFuture<Bytes> sf = SettableFuture.create();
+            long seq = channel.getP2pHandler().sendGetSums(node.t, node.t + node.dt);
+            sumsRequestMap.put(seq, sf);
+            requests.add(new Request(node, lSums, seq, sf));
+        }
+
+        long deadline = System.currentTimeMillis() + levelTimeout;
+        for (Request request : requests) {
+            Bytes rSums;
+            try {
+                rSums = request.sf.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                if (++request.node.attempts < MAX_ATTEMPTS) {
+                    next.add(request.node);
+                } else {
+                    log.debug("Give up sums request {} after {} attempts", request.node.t, request.node.attempts);
+                }
+                continue;
+            } finally {
+                sumsRequestMap.remove(request.seq);
+            }
+            long dt = request.node.dt >> 4;
+            for (int i = 0; i < 16; i++) {
+                long lSumsSum = request.lSums.getLong(i * 16, ByteOrder.LITTLE_ENDIAN);
+                long lSumsSize = request.lSums.getLong(i * 16 + 8, ByteOrder.LITTLE_ENDIAN);
+                long rSumsSum = rSums.getLong(i * 16, ByteOrder.LITTLE_ENDIAN);
+                long rSumsSize = rSums.getLong(i * 16 + 8, ByteOrder.LITTLE_ENDIAN);
+
+                if (lSumsSize != rSumsSize || lSumsSum != rSumsSum) {
+                    next.add(new Node(request.node.t + i * dt, dt));
+                }
+            }
+        }
+        return true;
+    }
+
+    private static class Node {
+
+        private final long t;
+        private final long dt;
+        private int attempts;
+
+        private Node(long t, long dt) {
+            this.t = t;
+            this.dt = dt;
+        }
+    }
+
+    private static class Request {
+
+        private final Node node;
+        private final MutableBytes lSums;
+        private final long seq;
+        private final SettableFuture<Bytes> sf;
+
+        private Request(Node node, MutableBytes lSums, long seq, SettableFuture<Bytes> sf) {
+            this.node = node;
+            this.lSums = lSums;
+            this.seq = seq;
+            this.sf = sf;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.consensus;
+
+import io.xdag.core.BlockWrapper;
+import io.xdag.net.Peer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import org.apache.tuweni.bytes.Bytes32;
+
+/**
+ * Blocks waiting for a missing parent, indexed by that parent.
+ *
+ * <p>Every waiting block is also kept in arrival order, so when the buffer is over its block or byte budget the
+ * oldest ones are dropped first in O(1) each. A parent is requested once when the first child starts waiting for
+ * it and again only after {@link #REQUEST_TIMEOUT}, however many children or peers point at it. Each request goes
+ * to one peer, the {@link Request} tells the caller which attempt it is so every retry can go to another peer.
+ */
+public class SyncBuffer {
+
+    /**
+     * a missing parent is requested again after this long
+     */
+    public static final long REQUEST_TIMEOUT = TimeUnit.SECONDS.toMillis(64);
+    /**
+     * rough bookkeeping cost of one waiting block on top of its raw data
+     */
+    public static final long ENTRY_OVERHEAD = 256;
+
+    private final long maxBlocks;
+    private final long maxBytes;
+
+    /**
+     * missing parents, in the order they were last requested
+     */
+    private final LinkedHashMap<Bytes32, Parent> parents = new LinkedHashMap<>();
+    /**
+     * waiting blocks by hashlow, oldest first
+     */
+    private final LinkedHashMap<Bytes32, Entry> blocks = new LinkedHashMap<>();
+    @Getter
+    private long bytes;
+    @Getter
+    private long evictions;
+
+    public SyncBuffer(long maxBlocks, long maxBytes) {
+        this.maxBlocks = maxBlocks;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Park a block until its parent arrives.
+     *
+     * @return true if the parent should be requested now
+     */
+    public synchronized boolean add(BlockWrapper blockWrapper, Bytes32 parentHash, long now) {
+        Bytes32 hash = blockWrapper.getBlock().getHashLow();
+        Entry old = blocks.get(hash);
+        if (old != null && !old.parent.equals(parentHash)) {
+            remove(old);
+            old = null;
+        }
+        if (old == null) {
+            blockWrapper.setTime(now);
+            Entry entry = new Entry(hash, parentHash, blockWrapper,
+                    blockWrapper.getBlock().getXdagBlock().getData().size() + ENTRY_OVERHEAD);
+            blocks.put(hash, entry);
+            bytes += entry.size;
+        }
+
+        boolean request;
+        Parent parent = parents.get(parentHash);
+        if (parent == null) {
+            parent = new Parent(now, blockWrapper.isOld(), blockWrapper.getRemotePeer());
+            parents.put(parentHash, parent);
+            request = true;
+        } else if (now - parent.requestTime > REQUEST_TIMEOUT) {
+            requestAgain(parentHash, parent, now);
+            request = true;
+        } else {
+            request = false;
+        }
+        if (old == null) {
+            parent.children.add(hash);
+        }
+
+        evict();
+        return request && parents.containsKey(parentHash);
+    }
+
+    /**
+     * Take every block waiting for the given parent, in arrival order.
+     */
+    public synchronized List<BlockWrapper> release(Bytes32 parentHash) {
+        Parent parent = parents.remove(parentHash);
+        if (parent == null) {
+            return Collections.emptyList();
+        }
+        List<BlockWrapper> res = new ArrayList<>(parent.children.size());
+        for (Bytes32 hash : parent.children) {
+            Entry entry = blocks.remove(hash);
+            if (entry != null) {
+                bytes -= entry.size;
+                res.add(entry.blockWrapper);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Marks every parent whose request timed out as requested again.
+     *
+     * @return the requests to send again, oldest first
+     */
+    public synchronized List<Request> expireRequests(long now) {
+        List<Bytes32> expired = new ArrayList<>();
+        for (Map.Entry<Bytes32, Parent> entry : parents.entrySet()) {
+            if (now - entry.getValue().requestTime <= REQUEST_TIMEOUT) {
+                break;
+            }
+            expired.add(entry.getKey());
+        }
+        List<Request> requests = new ArrayList<>(expired.size());
+        for (Bytes32 parentHash : expired) {
+            Parent parent = parents.get(parentHash);
+            requestAgain(parentHash, parent, now);
+            requests.add(new Request(parentHash, parent));
+        }
+        return requests;
+    }
+
+    /**
+     * @return the latest request for the parent, or null if no block waits for it
+     */
+    public synchronized Request request(Bytes32 parentHash) {
+        Parent parent = parents.get(parentHash);
+        return parent == null ? null : new Request(parentHash, parent);
+    }
+
+    public synchronized int size() {
+        return blocks.size();
+    }
+
+    public synchronized int parentSize() {
+        return parents.size();
+    }
+
+    public synchronized boolean isWaiting(Bytes32 hash) {
+        return blocks.containsKey(hash);
+    }
+
+    private void evict() {
+        Iterator<Entry> it = blocks.values().iterator();
+        while ((blocks.size() > maxBlocks || bytes > maxBytes) && it.hasNext()) {
+            Entry entry = it.next();
+            it.remove();
+            unlink(entry);
+            evictions++;
+        }
+    }
+
+    private void requestAgain(Bytes32 parentHash, Parent parent, long now) {
+        parent.requestTime = now;
+        parent.attempts++;
+        // keeps the parents ordered by request time
+        parents.remove(parentHash);
+        parents.put(parentHash, parent);
+    }
+
+    private void remove(Entry entry) {
+        blocks.remove(entry.hash);
+        unlink(entry);
+    }
+
+    private void unlink(Entry entry) {
+        bytes -= entry.size;
+        Parent parent = parents.get(entry.parent);
+        if (parent != null) {
+            parent.children.remove(entry.hash);
+            if (parent.children.isEmpty()) {
+                parents.remove(entry.parent);
+            }
+        }
+    }
+
+    private static final class Parent {
+
+        private final LinkedHashSet<Bytes32> children = new LinkedHashSet<>();
+        private final boolean old;
+        private final Peer source;
+        private long requestTime;
+        private int attempts = 1;
+
+        private Parent(long requestTime, boolean old, Peer source) {
+            this.requestTime = requestTime;
+            this.old = old;
+            this.source = source;
+        }
+    }
+
+    /**
+     * A request for a missing parent.
+     */
+    @Getter
+    public static final class Request {
+
+        private final Bytes32 parent;
+        /**
+         * 1 for the first request, one more for every retry
+         */
+        private final int attempt;
+        private final boolean old;
+        /**
+         * peer that sent the first block waiting for the parent, may be null
+         */
+        private final Peer source;
+
+        private Request(Bytes32 parent, Parent state) {
+            this.parent = parent;
+            this.attempt = state.attempts;
+            this.old = state.old;
+            this.source = state.source;
+        }
+    }
+
+    private static final class Entry {
+
+        private final Bytes32 hash;
+        private final Bytes32 parent;
+        private final BlockWrapper blockWrapper;
+        private final long size;
+
+        private Entry(Bytes32 hash, Bytes32 parent, BlockWrapper blockWrapper, long size) {
+            this.hash = hash;
+            this.parent = parent;
+            this.blockWrapper = blockWrapper;
+            this.size = size;
+        }
+    }
+}
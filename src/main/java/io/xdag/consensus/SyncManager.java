@@ -24,7 +24,6 @@
 
 package io.xdag.consensus;
 
-import com.google.common.collect.Queues;
 import io.xdag.Kernel;
 import io.xdag.config.Config;
 import io.xdag.config.DevnetConfig;
@@ -44,10 +43,11 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.commons.lang3.time.FastDateFormat;
 import org.apache.tuweni.bytes.Bytes32;
-import org.hyperledger.besu.crypto.SecureRandomProvider;
+import org.apache.tuweni.bytes.MutableBytes32;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Date;
+import java.util.Deque;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.*;
@@ -63,10 +63,12 @@ import static io.xdag.utils.XdagTime.msToXdagtimestamp;
 @Getter
 @Setter
 public class SyncManager {
-    // sycMap's MAX_SIZE
+    // max blocks waiting for a parent
     public static final int MAX_SIZE = 500000;
-    // If syncMap.size() > MAX_SIZE remove number of keys;
-    public static final int DELETE_NUM = 5000;
+    // max memory held by blocks waiting for a parent
+    public static final long MAX_BYTES = 256L * 1024 * 1024;
+    // how often timed out parent requests are moved to another peer, in ms
+    public static final long PARENT_RETRY_INTERVAL = 1000;
 
     private static final ThreadFactory factory = new BasicThreadFactory.Builder()
             .namingPattern("SyncManager-thread-%d")
@@ -88,9 +90,9 @@ public class SyncManager {
      */
     private Queue<BlockWrapper> blockQueue = new ConcurrentLinkedQueue<>();
     /**
-     * Queue for the link block don't exist
+     * Blocks whose link block don't exist, indexed by the missing block
      */
-    private ConcurrentHashMap<Bytes32, Queue<BlockWrapper>> syncMap = new ConcurrentHashMap<>();
+    private final SyncBuffer syncBuffer = new SyncBuffer(MAX_SIZE, MAX_BYTES);
     /***
      * Queue for poll oldest block
      */
@@ -99,6 +101,22 @@ public class SyncManager {
 
     private ScheduledExecutorService checkStateTask;
 
+    /**
+     * Verifies block signatures ahead of import, off the chain lock.
+     */
+    private final ExecutorService verifyExecutor;
+    /**
+     * Pending verifications in arrival order, imported one by one by the import thread. Bounded, a producer
+     * blocks while it is full.
+     */
+    private final BlockingQueue<PendingImport> verifiedQueue;
+    /**
+     * blocks a peer may have waiting for import before reading from it is paused
+     */
+    private final int maxPendingPerPeer;
+    private Thread importThread;
+    private volatile boolean importRunning;
+
     private ScheduledFuture<?> checkStateFuture;
     private final TransactionHistoryStore txHistoryStore;
 
@@ -109,11 +127,17 @@ public class SyncManager {
         this.stateListener = new StateListener();
         checkStateTask = new ScheduledThreadPoolExecutor(1, factory);
         this.txHistoryStore = kernel.getTxHistoryStore();
+        this.verifyExecutor = new ForkJoinPool(Math.max(1, kernel.getConfig().getNodeSpec().getImportVerifyThreads()));
+        this.maxPendingPerPeer = Math.max(2, kernel.getConfig().getNodeSpec().getImportMaxPendingPerPeer());
+        this.verifiedQueue = new LinkedBlockingQueue<>(Math.max(1, kernel.getConfig().getNodeSpec().getImportQueueSize()));
     }
 
     public void start() throws InterruptedException {
         log.debug("Download receiveBlock run...");
         new Thread(this.stateListener, "xdag-stateListener").start();
+        importRunning = true;
+        importThread = factory.newThread(this::importLoop);
+        importThread.start();
         checkStateFuture = checkStateTask.scheduleAtFixedRate(this::checkState, 64, 5, TimeUnit.SECONDS);
     }
 
@@ -162,14 +186,96 @@ public class SyncManager {
         return res;
     }
 
+    /**
+     * Verifies the block's signatures on the worker pool and queues it for import. Import keeps the
+     * arrival order, so parents received before their children are still imported first.
+     */
+    public void submitBlock(BlockWrapper blockWrapper) {
+        submitBlock(blockWrapper, null);
+    }
+
+    /**
+     * Queues a block received from {@code channel}. Only decodes and enqueues on the caller's thread, the
+     * channel stops reading while too many of its blocks wait for import. Once all peers together have
+     * {@code node.import.queueSize} blocks waiting, the caller blocks until the import thread catches up.
+     */
+    public void submitBlock(BlockWrapper blockWrapper, Channel channel) {
+        if (channel != null) {
+            channel.importQueued(maxPendingPerPeer);
+        }
+        try {
+            verifiedQueue.put(new PendingImport(
+                    CompletableFuture.supplyAsync(() -> preValidate(blockWrapper), verifyExecutor), channel));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for the import queue, block dropped");
+            if (channel != null) {
+                channel.importDone(maxPendingPerPeer);
+            }
+        }
+    }
+
+    /**
+     * Checks everything that only depends on the block itself. The result is memoized on the block, so
+     * the synchronized import only runs the checks that need chain state.
+     */
+    BlockWrapper preValidate(BlockWrapper blockWrapper) {
+        try {
+            Block block = blockWrapper.getBlock();
+            block.parse();
+            block.verifiedKeys();
+            blockWrapper.setVerified(true);
+        } catch (Exception e) {
+            // leave it to the import to reject the block
+            log.debug("Pre-validate block failed: {}", e.getMessage());
+        }
+        return blockWrapper;
+    }
+
+    private void importLoop() {
+        long lastRetry = System.currentTimeMillis();
+        while (importRunning) {
+            long now = System.currentTimeMillis();
+            if (now - lastRetry >= PARENT_RETRY_INTERVAL) {
+                retryParentRequests(now);
+                lastRetry = now;
+            }
+            PendingImport pending;
+            try {
+                pending = verifiedQueue.poll(PARENT_RETRY_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (pending == null) {
+                continue;
+            }
+            try {
+                validateAndAddNewBlock(pending.block.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Import block failed", e);
+            } finally {
+                if (pending.channel != null) {
+                    pending.channel.importDone(maxPendingPerPeer);
+                }
+            }
+        }
+    }
+
     /**
      * Processing the queue adding blocks to the chain.
      */
     // todo:修改共识
     public ImportResult importBlock(BlockWrapper blockWrapper) {
         log.debug("importBlock:{}", blockWrapper.getBlock().getHashLow());
-        ImportResult importResult = blockchain
-                .tryToConnect(new Block(new XdagBlock(blockWrapper.getBlock().getXdagBlock().getData().toArray())));
+        Block block = new Block(new XdagBlock(blockWrapper.getBlock().getXdagBlock().getData().toArray()));
+        if (blockWrapper.isVerified()) {
+            block.setVerifiedKeys(blockWrapper.getBlock().verifiedKeys());
+        }
+        ImportResult importResult = blockchain.tryToConnect(block);
 
         if (importResult == EXIST) {
             log.debug("Block have exist:" + blockWrapper.getBlock().getHashLow());
@@ -193,18 +299,7 @@ public class SyncManager {
         log.debug("validateAndAddNewBlock:{}, {}", blockWrapper.getBlock().getHashLow(), result);
         switch (result) {
             case EXIST, IMPORTED_BEST, IMPORTED_NOT_BEST, IN_MEM -> syncPopBlock(blockWrapper);
-            case NO_PARENT -> {
-                if (syncPushBlock(blockWrapper, result.getHashlow())) {
-                    log.debug("push block:{}, NO_PARENT {}", blockWrapper.getBlock().getHashLow(), result);
-                    List<Channel> channels = channelMgr.getActiveChannels();
-                    for (Channel channel : channels) {
-                        // if (channel.getRemotePeer().equals(blockWrapper.getRemotePeer())) {
-                        channel.getP2pHandler().sendGetBlock(result.getHashlow(), blockWrapper.isOld());
-                        //}
-                    }
-
-                }
-            }
+            case NO_PARENT -> syncPushBlock(blockWrapper, result.getHashlow());
             case INVALID_BLOCK -> {
 //                log.error("invalid block:{}", Hex.toHexString(blockWrapper.getBlock().getHashLow()));
             }
@@ -219,84 +314,70 @@ public class SyncManager {
      *
      * @param blockWrapper 新区块
      * @param hashLow      缺失的parent哈希
+     * @return true if the parent was requested from the peers
      */
     public boolean syncPushBlock(BlockWrapper blockWrapper, Bytes32 hashLow) {
-        if (syncMap.size() >= MAX_SIZE) {
-            for (int j = 0; j < DELETE_NUM; j++) {
-                List<Bytes32> keyList = new ArrayList<>(syncMap.keySet());
-                Bytes32 key = keyList.get(SecureRandomProvider.publicSecureRandom().nextInt(keyList.size()));
-                assert key != null;
-                if (syncMap.remove(key) != null) blockchain.getXdagStats().nwaitsync--;
+        boolean request = syncBuffer.add(blockWrapper, hashLow, System.currentTimeMillis());
+        blockchain.getXdagStats().nwaitsync = syncBuffer.parentSize();
+        if (request) {
+            log.debug("push block:{}, NO_PARENT {}", blockWrapper.getBlock().getHashLow(), hashLow.toHexString());
+            requestParent(syncBuffer.request(hashLow));
+        }
+        return request;
+    }
+
+    /**
+     * Asks the next peer for every missing parent whose request timed out without an answer.
+     */
+    void retryParentRequests(long now) {
+        for (SyncBuffer.Request request : syncBuffer.expireRequests(now)) {
+            requestParent(request);
+        }
+    }
+
+    /**
+     * Sends a parent request to one peer. The first request goes to the peer that sent the waiting block, which
+     * most likely has its parent, each retry to the next peer in turn.
+     */
+    private void requestParent(SyncBuffer.Request request) {
+        List<Channel> channels = channelMgr.getActiveChannels();
+        if (request == null || channels.isEmpty()) {
+            return;
+        }
+        int first = Math.floorMod(request.getParent().hashCode(), channels.size());
+        Peer source = request.getSource();
+        for (int i = 0; source != null && i < channels.size(); i++) {
+            Peer peer = channels.get(i).getRemotePeer();
+            if (peer != null && StringUtils.equals(peer.getPeerId(), source.getPeerId())) {
+                first = i;
+                break;
             }
         }
-        AtomicBoolean r = new AtomicBoolean(true);
-        long now = System.currentTimeMillis();
-
-        Queue<BlockWrapper> newQueue = Queues.newConcurrentLinkedQueue();
-        blockWrapper.setTime(now);
-        newQueue.add(blockWrapper);
-        blockchain.getXdagStats().nwaitsync++;
-
-        syncMap.merge(hashLow, newQueue,
-                (oldQ, newQ) -> {
-                    blockchain.getXdagStats().nwaitsync--;
-                    for (BlockWrapper b : oldQ) {
-                        if (b.getBlock().getHashLow().equals(blockWrapper.getBlock().getHashLow())) {
-                            // after 64 sec must resend block request
-                            if (now - b.getTime() > 64 * 1000) {
-                                b.setTime(now);
-                                r.set(true);
-                            } else {
-                                // TODO should be consider timeout not received request block
-                                r.set(false);
-                            }
-                            return oldQ;
-                        }
-                    }
-                    oldQ.add(blockWrapper);
-                    r.set(true);
-                    return oldQ;
-                });
-        return r.get();
+        Channel target = channels.get((first + request.getAttempt() - 1) % channels.size());
+        target.getP2pHandler().sendGetBlock(MutableBytes32.wrap(request.getParent().toArray()), request.isOld());
     }
 
     /**
      * 根据接收到的区块，将子区块释放
+     * <p>
+     * Walks the waiting descendants level by level with a work list, so a long chain of orphans does not grow
+     * the import thread's stack.
      */
     public void syncPopBlock(BlockWrapper blockWrapper) {
-        Block block = blockWrapper.getBlock();
-
-        Queue<BlockWrapper> queue = syncMap.getOrDefault(block.getHashLow(), null);
-        if (queue != null) {
-            syncMap.remove(block.getHashLow());
-            blockchain.getXdagStats().nwaitsync--;
-            queue.forEach(bw -> {
+        Deque<Bytes32> arrived = new ArrayDeque<>();
+        arrived.add(blockWrapper.getBlock().getHashLow());
+        while (!arrived.isEmpty()) {
+            for (BlockWrapper bw : syncBuffer.release(arrived.poll())) {
                 ImportResult importResult = importBlock(bw);
                 switch (importResult) {
-                    case EXIST, IN_MEM, IMPORTED_BEST, IMPORTED_NOT_BEST -> {
-                        // TODO import成功后都需要移除
-                        syncPopBlock(bw);
-                        queue.remove(bw);
-                    }
-                    case NO_PARENT -> {
-                        if (syncPushBlock(bw, importResult.getHashlow())) {
-                            log.debug("push block:{}, NO_PARENT {}", bw.getBlock().getHashLow(),
-                                    importResult.getHashlow().toHexString());
-                            List<Channel> channels = channelMgr.getActiveChannels();
-                            for (Channel channel : channels) {
-//                            Peer remotePeer = channel.getRemotePeer();
-//                            Peer blockPeer = bw.getRemotePeer();
-                                // if (StringUtils.equals(remotePeer.getIp(), blockPeer.getIp()) && remotePeer.getPort() == blockPeer.getPort() ) {
-                                channel.getP2pHandler().sendGetBlock(importResult.getHashlow(), blockWrapper.isOld());
-                                //}
-                            }
-                        }
-                    }
+                    case EXIST, IN_MEM, IMPORTED_BEST, IMPORTED_NOT_BEST -> arrived.add(bw.getBlock().getHashLow());
+                    case NO_PARENT -> syncPushBlock(bw, importResult.getHashlow());
                     default -> {
                     }
                 }
-            });
+            }
         }
+        blockchain.getXdagStats().nwaitsync = syncBuffer.parentSize();
     }
 
     // TODO：目前默认是一直保持同步，不负责出块
@@ -364,6 +445,11 @@ public class SyncManager {
             this.stateListener.isRunning = false;
         }
         stopStateTask();
+        importRunning = false;
+        if (importThread != null) {
+            importThread.interrupt();
+        }
+        verifyExecutor.shutdownNow();
     }
 
     private void stopStateTask() {
@@ -378,6 +464,17 @@ public class SyncManager {
         channelMgr.onNewForeignBlock(blockWrapper);
     }
 
+    private static class PendingImport {
+
+        private final Future<BlockWrapper> block;
+        private final Channel channel;
+
+        private PendingImport(Future<BlockWrapper> block, Channel channel) {
+            this.block = block;
+            this.channel = channel;
+        }
+    }
+
     private class StateListener implements Runnable {
 
         boolean isRunning = false;
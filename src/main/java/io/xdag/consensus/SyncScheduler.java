@@ -0,0 +1,340 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.consensus;
+
+import static io.xdag.config.Constants.REQUEST_BLOCKS_MAX_TIME;
+import static io.xdag.config.Constants.REQUEST_WAIT;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import io.xdag.net.Channel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * Keeps up to {@code maxInFlight} block range requests outstanding across all active peers.
+ *
+ * <p>Ranges go to the peer with the best score, its average reply latency weighted by the requests it already
+ * has in flight. A request without reply is retried on another peer after a timeout derived from that peer's
+ * latency. Once nothing is left to hand out, requests stuck on a slow peer are also sent to an idle one and the
+ * first reply wins.
+ */
+@Slf4j
+public class SyncScheduler {
+
+    /**
+     * attempts before a range is left to the next sums round
+     */
+    public static final int MAX_ATTEMPTS = 3;
+    /**
+     * a request slower than this multiple of its peer's latency is also sent to an idle peer
+     */
+    public static final int STEAL_FACTOR = 3;
+    /**
+     * latency assumed for a peer that has not replied yet
+     */
+    public static final long DEFAULT_LATENCY = 1000;
+    private static final long MIN_TIMEOUT = TimeUnit.SECONDS.toMillis(4);
+    private static final long MAX_TIMEOUT = TimeUnit.SECONDS.toMillis(REQUEST_WAIT);
+
+    private final Supplier<List<Channel>> channels;
+    private final Map<Long, SettableFuture<Bytes>> requestMap;
+    private final int maxInFlight;
+    private final int maxInFlightPerPeer;
+
+    private final Deque<Request> pending = new ArrayDeque<>();
+    /**
+     * requests by the random sequence of every copy sent
+     */
+    private final Map<Long, Request> sent = new HashMap<>();
+    private final Set<Request> inFlight = new HashSet<>();
+    private final Set<Long> scheduled = new HashSet<>();
+    private final Map<Channel, PeerScore> scores = new IdentityHashMap<>();
+
+    public SyncScheduler(Supplier<List<Channel>> channels, Map<Long, SettableFuture<Bytes>> requestMap,
+            int maxInFlight, int maxInFlightPerPeer) {
+        this.channels = channels;
+        this.requestMap = requestMap;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.maxInFlightPerPeer = Math.max(1, maxInFlightPerPeer);
+    }
+
+    /**
+     * Queue the range starting at {@code time}, unless it is already queued or in flight.
+     */
+    public synchronized boolean submit(long time) {
+        if (!scheduled.add(time)) {
+            return false;
+        }
+        pending.offerLast(new Request(time));
+        return true;
+    }
+
+    /**
+     * Ranges queued or in flight.
+     */
+    public synchronized int size() {
+        return scheduled.size();
+    }
+
+    public synchronized int inFlightSize() {
+        return inFlight.size();
+    }
+
+    public synchronized int capacity() {
+        return maxInFlight;
+    }
+
+    /**
+     * Expire, steal and hand out requests.
+     */
+    public void tick() {
+        tick(System.currentTimeMillis());
+    }
+
+    synchronized void tick(long now) {
+        List<Channel> active = channels.get();
+        dropInactivePeers(active, now);
+        checkTimeouts(now);
+        dispatch(active, now);
+        if (pending.isEmpty()) {
+            steal(active, now);
+        }
+    }
+
+    private void dispatch(List<Channel> active, long now) {
+        while (inFlight.size() < maxInFlight && !pending.isEmpty()) {
+            Channel channel = pickPeer(active, null);
+            if (channel == null) {
+                return;
+            }
+            send(pending.pollFirst(), channel, now);
+        }
+    }
+
+    private void steal(List<Channel> active, long now) {
+        for (Request request : new ArrayList<>(inFlight)) {
+            if (request.copies.size() != 1) {
+                continue;
+            }
+            Copy copy = request.copies.values().iterator().next();
+            PeerScore score = score(copy.channel);
+            if (now - copy.sentAt < Math.max(MIN_TIMEOUT / 2, STEAL_FACTOR * score.latency)) {
+                continue;
+            }
+            Channel idle = pickPeer(active, copy.channel);
+            if (idle == null || score(idle).inFlight > 0) {
+                return;
+            }
+            log.debug("Steal blocks request {} from slow peer {}", request.time, copy.channel.getRemoteAddress());
+            send(request, idle, now);
+        }
+    }
+
+    private void checkTimeouts(long now) {
+        for (Request request : new ArrayList<>(inFlight)) {
+            Iterator<Map.Entry<Long, Copy>> it = request.copies.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, Copy> entry = it.next();
+                Copy copy = entry.getValue();
+                PeerScore score = score(copy.channel);
+                if (now - copy.sentAt >= score.timeout()) {
+                    log.debug("Blocks request {} timeout on {}", request.time, copy.channel.getRemoteAddress());
+                    score.failed();
+                    forget(entry.getKey(), copy);
+                    it.remove();
+                }
+            }
+            if (request.copies.isEmpty()) {
+                retry(request);
+            }
+        }
+    }
+
+    private void dropInactivePeers(List<Channel> active, long now) {
+        Set<Channel> alive = Collections.newSetFromMap(new IdentityHashMap<>());
+        alive.addAll(active);
+        for (Request request : new ArrayList<>(inFlight)) {
+            request.copies.entrySet().removeIf(entry -> {
+                if (alive.contains(entry.getValue().channel) && entry.getValue().channel.isActive()) {
+                    return false;
+                }
+                forget(entry.getKey(), entry.getValue());
+                return true;
+            });
+            if (request.copies.isEmpty()) {
+                retry(request);
+            }
+        }
+        scores.keySet().retainAll(alive);
+    }
+
+    private void retry(Request request) {
+        inFlight.remove(request);
+        if (++request.attempts < MAX_ATTEMPTS) {
+            pending.offerFirst(request);
+        } else {
+            log.debug("Give up blocks request {} after {} attempts", request.time, request.attempts);
+            scheduled.remove(request.time);
+        }
+    }
+
+    private Channel pickPeer(List<Channel> active, Channel exclude) {
+        Channel best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (Channel channel : active) {
+            if (channel == exclude || !channel.isActive()) {
+                continue;
+            }
+            PeerScore score = score(channel);
+            if (score.inFlight >= maxInFlightPerPeer) {
+                continue;
+            }
+            double cost = score.cost();
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = channel;
+            }
+        }
+        return best;
+    }
+
+    private void send(Request request, Channel channel, long now) {
+        long seq = channel.getP2pHandler().sendGetBlocks(request.time, request.time + REQUEST_BLOCKS_MAX_TIME);
+        SettableFuture<Bytes> sf = SettableFuture.create();
+        request.copies.put(seq, new Copy(channel, now));
+        sent.put(seq, request);
+        inFlight.add(request);
+        score(channel).inFlight++;
+        requestMap.put(seq, sf);
+        sf.addListener(() -> onReply(seq, System.currentTimeMillis()), MoreExecutors.directExecutor());
+    }
+
+    /**
+     * A peer finished sending the blocks of a request, cancel the other copies and hand out more work.
+     */
+    synchronized void onReply(long seq, long now) {
+        requestMap.remove(seq);
+        Request request = sent.remove(seq);
+        if (request == null) {
+            return;
+        }
+        Copy copy = request.copies.remove(seq);
+        PeerScore score = score(copy.channel);
+        score.inFlight--;
+        score.succeeded(now - copy.sentAt);
+        for (Map.Entry<Long, Copy> other : request.copies.entrySet()) {
+            forget(other.getKey(), other.getValue());
+        }
+        request.copies.clear();
+        inFlight.remove(request);
+        scheduled.remove(request.time);
+        dispatch(channels.get(), now);
+    }
+
+    private void forget(long seq, Copy copy) {
+        requestMap.remove(seq);
+        sent.remove(seq);
+        PeerScore score = scores.get(copy.channel);
+        if (score != null) {
+            score.inFlight--;
+        }
+    }
+
+    private PeerScore score(Channel channel) {
+        return scores.computeIfAbsent(channel, c -> new PeerScore());
+    }
+
+    synchronized PeerScore getScore(Channel channel) {
+        return scores.get(channel);
+    }
+
+    private static class Request {
+
+        private final long time;
+        private int attempts;
+        private final Map<Long, Copy> copies = new LinkedHashMap<>();
+
+        private Request(long time) {
+            this.time = time;
+        }
+    }
+
+    private static class Copy {
+
+        private final Channel channel;
+        private final long sentAt;
+
+        private Copy(Channel channel, long sentAt) {
+            this.channel = channel;
+            this.sentAt = sentAt;
+        }
+    }
+
+    /**
+     * Reply latency as an exponential moving average plus recent failures.
+     */
+    @Getter
+    static class PeerScore {
+
+        private long latency = DEFAULT_LATENCY;
+        private int inFlight;
+        private int failures;
+        private long completed;
+
+        private void succeeded(long elapsed) {
+            latency = completed == 0 ? elapsed : (latency * 7 + elapsed) / 8;
+            completed++;
+            failures = Math.max(0, failures - 1);
+        }
+
+        private void failed() {
+            failures++;
+        }
+
+        private long timeout() {
+            return Math.min(MAX_TIMEOUT, Math.max(MIN_TIMEOUT, latency * 4));
+        }
+
+        private double cost() {
+            return (double) (inFlight + 1) * Math.max(1, latency) * (1 + failures);
+        }
+    }
+}
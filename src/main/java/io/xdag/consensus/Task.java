@@ -26,6 +26,7 @@ package io.xdag.consensus;
 
 import io.xdag.core.XdagField;
 import io.xdag.utils.XdagSha256Digest;
+import java.nio.ByteBuffer;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -34,6 +35,10 @@ import lombok.Setter;
 public class Task implements Cloneable {
     private XdagField[] task;
     private static final int TASK_FLAG = 1;
+    /**
+     * flag, preHash, taskSeed, taskTime, taskIndex
+     */
+    public static final int BINARY_SIZE = 1 + 32 + 32 + 8 + 8;
     private long taskTime;
 
     private long taskIndex;
@@ -67,6 +72,23 @@ public class Task implements Cloneable {
                 "}";
     }
 
+    /**
+     * Task frame for pools that negotiated the binary protocol, numbers are big endian.
+     */
+    public byte[] toBinary() {
+        ByteBuffer buffer = ByteBuffer.allocate(BINARY_SIZE);
+        buffer.put((byte) TASK_FLAG);
+        if (task != null && task.length == 2) {
+            buffer.put(task[0].getData().toArrayUnsafe(), 0, 32);
+            buffer.put(task[1].getData().toArrayUnsafe(), 0, 32);
+        } else {
+            buffer.position(buffer.position() + 64);
+        }
+        buffer.putLong(taskTime);
+        buffer.putLong(taskIndex);
+        return buffer.array();
+    }
+
     @Override
     protected Object clone() throws CloneNotSupportedException {
         Task t = (Task) super.clone();
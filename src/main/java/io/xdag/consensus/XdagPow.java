@@ -46,13 +46,11 @@ import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.bytes.MutableBytes;
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.io.IOException;
-import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static io.xdag.utils.BasicUtils.hash2byte;
@@ -73,8 +71,10 @@ public class XdagPow implements PoW, Listener, Runnable {
     protected GetShares sharesFromPools;
     // 当前区块
     protected AtomicReference<Block> generateBlock = new AtomicReference<>();
-    protected AtomicReference<Bytes32> minShare = new AtomicReference<>();
-    protected final AtomicReference<Bytes32> minHash = new AtomicReference<>();
+    /**
+     * best share of the current task, replaced by compare and set from the share workers
+     */
+    protected final AtomicReference<BestShare> bestShare = new AtomicReference<>();
     protected final Wallet wallet;
 
     protected ChannelManager channelMgr;
@@ -96,9 +96,8 @@ public class XdagPow implements PoW, Listener, Runnable {
     private final ExecutorService broadcasterExecutor = Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
             .namingPattern("XdagPow-broadcaster-thread")
             .build());
-    private final ExecutorService getSharesExecutor = Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
-            .namingPattern("XdagPow-getShares-thread")
-            .build());
+    private final ExecutorService getSharesExecutor;
+    private final int getSharesThreads;
 
     protected RandomX randomXUtils;
     private boolean isRunning = false;
@@ -111,7 +110,11 @@ public class XdagPow implements PoW, Listener, Runnable {
         this.timer = new Timer();
         this.broadcaster = new Broadcaster();
         this.randomXUtils = kernel.getRandomx();
-        this.sharesFromPools = new GetShares();
+        this.sharesFromPools = new GetShares(Math.max(1, kernel.getConfig().getPoolShareQueueSize()));
+        this.getSharesThreads = Math.max(1, kernel.getConfig().getPoolShareVerifyThreads());
+        this.getSharesExecutor = Executors.newFixedThreadPool(getSharesThreads, new BasicThreadFactory.Builder()
+                .namingPattern("XdagPow-getShares-thread-%d")
+                .build());
         this.poolAwardManager = kernel.getPoolAwardManager();
         this.wallet = kernel.getWallet();
 
@@ -121,7 +124,9 @@ public class XdagPow implements PoW, Listener, Runnable {
     public void start() {
         if (!this.isRunning) {
             this.isRunning = true;
-            getSharesExecutor.execute(this.sharesFromPools);
+            for (int i = 0; i < getSharesThreads; i++) {
+                getSharesExecutor.execute(this.sharesFromPools);
+            }
             mainExecutor.execute(this);
             kernel.getPoolAwardManager().start();
             timerExecutor.execute(timer);
@@ -188,13 +193,15 @@ public class XdagPow implements PoW, Listener, Runnable {
         Block block = blockchain.createNewBlock(null, null, true, null, XAmount.ZERO);
         block.signOut(wallet.getDefKey());
         // The first 20 bytes of the initial nonce are the node wallet address.
-        minShare.set(Bytes32.wrap(BytesUtils.merge(hash2byte(keyPair2Hash(wallet.getDefKey())),
-                RandomUtils.nextBytes(12))));
+        Bytes32 share = Bytes32.wrap(BytesUtils.merge(hash2byte(keyPair2Hash(wallet.getDefKey())),
+                RandomUtils.nextBytes(12)));
 
-        block.setNonce(minShare.get());
-        minHash.set(Bytes32.fromHexString("ffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffff"));
+        block.setNonce(share);
+        bestShare.set(new BestShare(taskIndex.get(), share,
+                Bytes32.fromHexString("ffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffff")));
         currentTask.set(createTaskByRandomXBlock(block, sendTime));
-        ChannelSupervise.send2Pools(currentTask.get().toJsonString());
+        sharesFromPools.newTask();
+        ChannelSupervise.send2Pools(currentTask.get());
         return block;
     }
 
@@ -203,13 +210,14 @@ public class XdagPow implements PoW, Listener, Runnable {
         taskIndex.incrementAndGet();
         Block block = blockchain.createNewBlock(null, null, true, null, XAmount.ZERO);
         block.signOut(wallet.getDefKey());
-        minShare.set(Bytes32.wrap(BytesUtils.merge(hash2byte(keyPair2Hash(wallet.getDefKey())),
-                RandomUtils.nextBytes(12))));
-        block.setNonce(minShare.get());
+        Bytes32 share = Bytes32.wrap(BytesUtils.merge(hash2byte(keyPair2Hash(wallet.getDefKey())),
+                RandomUtils.nextBytes(12)));
+        block.setNonce(share);
         // initial nonce
-        minHash.set(block.recalcHash());
+        bestShare.set(new BestShare(taskIndex.get(), share, block.recalcHash()));
         currentTask.set(createTaskByNewBlock(block, sendTime));
-        ChannelSupervise.send2Pools(currentTask.get().toJsonString());
+        sharesFromPools.newTask();
+        ChannelSupervise.send2Pools(currentTask.get());
         return block;
     }
 
@@ -225,22 +233,43 @@ public class XdagPow implements PoW, Listener, Runnable {
 
     /**
      * Every time a share sent from a pool is received, it will be recorded here.
+     * <p>
+     * Shares for another task and shares already seen for this task are dropped before any hashing.
      */
     @Override
     public void receiveNewShare(String share, String hash, long taskIndex) {
+        Bytes32 nonce;
+        Bytes32 preHash;
+        try {
+            nonce = Bytes32.wrap(Bytes.fromHexString(share));
+            preHash = Bytes32.wrap(Bytes.fromHexString(hash));
+        } catch (IllegalArgumentException e) {
+            sharesFromPools.malformed.increment();
+            log.debug("Share format error, current share: " + share);
+            return;
+        }
+        receiveNewShare(nonce, preHash, taskIndex);
+    }
+
+    public void receiveNewShare(Bytes32 share, Bytes32 preHash, long taskIndex) {
 
         if (!this.isRunning) {
             return;
         }
-        if (currentTask.get() == null) {
+        Task task = currentTask.get();
+        if (task == null) {
             log.info("Current task is empty");
-        } else if (currentTask.get().getTaskIndex() == taskIndex && Objects.equals(hash,
-                currentTask.get().getTask()[0].getData().toUnprefixedHexString())) {
+        } else if (task.getTaskIndex() == taskIndex && preHash.equals(task.getTask()[0].getData())) {
             // log.debug("Receive Share-info From Pool, Share: {},preHash: {}, task index: {}", share, preHash,
             // taskIndex);
-            onNewShare(Bytes32.wrap(Bytes.fromHexString(share)));
+            if (!sharesFromPools.firstSeen(taskIndex, share)) {
+                sharesFromPools.duplicate.increment();
+                return;
+            }
+            onNewShare(task, share);
         } else {
-            log.debug("Task index error or preHash error. " + "Current task is " + currentTask.get().getTaskIndex() +
+            sharesFromPools.stale.increment();
+            log.debug("Task index error or preHash error. " + "Current task is " + task.getTaskIndex() +
                     " ,but pool sends task index is " + taskIndex);
         }
     }
@@ -259,9 +288,8 @@ public class XdagPow implements PoW, Listener, Runnable {
         }
     }
 
-    protected void onNewShare(Bytes32 share) {
+    protected void onNewShare(Task task, Bytes32 share) {
         try {
-            Task task = currentTask.get();
             Bytes32 hash;
             // if randomx fork
             if (kernel.getRandomx().isRandomxFork(task.getTaskTime())) {
@@ -276,19 +304,20 @@ public class XdagPow implements PoW, Listener, Runnable {
                 XdagSha256Digest digest = new XdagSha256Digest(task.getDigest());
                 hash = Bytes32.wrap(digest.sha256Final(share.reverse()));
             }
-            synchronized (minHash) {
-                Bytes32 mh = minHash.get();
-                if (compareTo(hash.toArray(), 0, 32, mh.toArray(), 0, 32) < 0) {
-                    log.debug("Receive a hash from pool,hash {} is valid.", hash.toHexString());
-                    minHash.set(hash);
-                    minShare.set(share);
-                    // put minShare into nonce
-                    Block b = generateBlock.get();
-                    b.setNonce(minShare.get());
-                    log.debug("New MinShare :" + share.toHexString());
-                    log.debug("New MinHash :" + hash.toHexString());
+            sharesFromPools.verified.increment();
+            BestShare candidate = new BestShare(task.getTaskIndex(), share, hash);
+            BestShare best;
+            do {
+                best = bestShare.get();
+                // a new task started meanwhile, or not better
+                if (best == null || best.taskIndex != candidate.taskIndex
+                        || compareTo(hash.toArray(), 0, 32, best.hash.toArray(), 0, 32) >= 0) {
+                    return;
                 }
-            }
+            } while (!bestShare.compareAndSet(best, candidate));
+            log.debug("Receive a hash from pool,hash {} is valid.", hash.toHexString());
+            log.debug("New MinShare :" + share.toHexString());
+            log.debug("New MinHash :" + hash.toHexString());
         } catch (Exception e) {
             log.error(e.getMessage(), e);
         }
@@ -300,12 +329,15 @@ public class XdagPow implements PoW, Listener, Runnable {
         // stop generate main block
         isWorking = false;
         if (b != null) {
+            // put minShare into nonce
+            Bytes32 minShare = bestShare.get().share;
+            b.setNonce(minShare);
             Block newBlock = new Block(new XdagBlock(b.toBytes()));
             log.debug("Broadcast locally generated blockchain, waiting to be verified. block hash = [{}]", newBlock.getHash().toHexString());
             // add new block and broadcast the new block
             kernel.getBlockchain().tryToConnect(newBlock);
             Bytes32 currentPreHash = Bytes32.wrap(currentTask.get().getTask()[0].getData());
-            poolAwardManager.addAwardBlock(minShare.get(), currentPreHash, newBlock.getHash(), newBlock.getTimestamp());
+            poolAwardManager.addAwardBlock(minShare, currentPreHash, newBlock.getHash(), newBlock.getTimestamp());
             BlockWrapper bw = new BlockWrapper(newBlock, kernel.getConfig().getNodeSpec().getTTL());
             broadcaster.broadcast(bw);
         }
@@ -532,44 +564,174 @@ public class XdagPow implements PoW, Listener, Runnable {
         }
     }
 
+    /**
+     * One record of a binary share batch.
+     */
+    private static final class BinaryShare {
+
+        private final Bytes32 share;
+        private final Bytes32 preHash;
+        private final long taskIndex;
+
+        private BinaryShare(Bytes32 share, Bytes32 preHash, long taskIndex) {
+            this.share = share;
+            this.preHash = preHash;
+            this.taskIndex = taskIndex;
+        }
+    }
+
+    /**
+     * Lowest share hash found for a task.
+    protected static final class BestShare {
+
+        private final long taskIndex;
+        private final Bytes32 share;
+        private final Bytes32 hash;
+
+        private BestShare(long taskIndex, Bytes32 share, Bytes32 hash) {
+            this.taskIndex = taskIndex;
+            this.share = share;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Shares from pools, verified by a pool of worker threads. Each worker hashes with its own RandomX VM from
+     * the VM pool.
+     */
     public class GetShares implements Runnable {
-        private final LinkedBlockingQueue<String> shareQueue = new LinkedBlockingQueue<>();
+        /**
+         * JSON share messages and the records of binary share batches
+         */
+        private final BlockingQueue<Object> shareQueue;
         private volatile boolean isRunning = false;
-        private static final int SHARE_FLAG = 2;
+        /**
+         * shares seen for the current task
+         */
+        private volatile Set<Bytes32> seenShares = ConcurrentHashMap.newKeySet();
+        private volatile long seenTaskIndex = -1;
+
+        private final LongAdder received = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder malformed = new LongAdder();
+        private final LongAdder stale = new LongAdder();
+        private final LongAdder duplicate = new LongAdder();
+        private final LongAdder verified = new LongAdder();
+        private long lastVerified;
+        private long lastRateTime = System.currentTimeMillis();
+        @Getter
+        private volatile double sharesPerSecond;
+
+        public GetShares(int capacity) {
+            this.shareQueue = new LinkedBlockingQueue<>(capacity);
+        }
 
         @Override
         public void run() {
             isRunning = true;
             while (isRunning) {
-                String shareInfo = null;
+                Object item = null;
                 try {
-                    shareInfo = shareQueue.poll(50, TimeUnit.MILLISECONDS);
+                    item = shareQueue.poll(50, TimeUnit.MILLISECONDS);
                 } catch (InterruptedException e) {
                     log.error(e.getMessage(), e);
                 }
-                if (shareInfo != null) {
-                    try {
-                        JSONObject shareJson = new JSONObject(shareInfo);
-                        if (shareJson.getInt("msgType") == SHARE_FLAG) {
-                            receiveNewShare(shareJson.getJSONObject("msgContent").getString("share"),
-                                    shareJson.getJSONObject("msgContent").getString("hash"),
-                                    shareJson.getJSONObject("msgContent").getLong("taskIndex"));
-                        } else {
-                            log.error("Share format error! Current share: " + shareInfo);
-                        }
-
-                    } catch (JSONException e) {
+                if (item instanceof String shareInfo) {
+                    PoolShare share = PoolShare.parse(shareInfo);
+                    if (share != null) {
+                        receiveNewShare(share.getShare(), share.getHash(), share.getTaskIndex());
+                    } else {
+                        malformed.increment();
                         log.error("Share format error, current share: " + shareInfo);
                     }
+                } else if (item instanceof BinaryShare share) {
+                    receiveNewShare(share.share, share.preHash, share.taskIndex);
                 }
             }
         }
 
         public void getShareInfo(String share) {
             // todo:Limit the number of shares submitted by each pool within each block production cycle
+            received.increment();
             if (!shareQueue.offer(share)) {
+                dropped.increment();
                 log.error("Failed to get ShareInfo from pools");
             }
         }
+
+        /**
+         * Queue the records of a binary batch, see {@link PoolShare}, one item per share so that all verify
+         * threads work on a large batch.
+         */
+        public void getShareBatch(byte[] batch) {
+            int count = PoolShare.recordCount(batch);
+            if (count < 0) {
+                received.increment();
+                malformed.increment();
+                log.error("Share batch format error, length: " + batch.length);
+                return;
+            }
+            received.add(count);
+            for (int i = 0, offset = 1; i < count; i++, offset += PoolShare.RECORD_SIZE) {
+                BinaryShare share = new BinaryShare(Bytes32.wrap(batch, offset), Bytes32.wrap(batch, offset + 32),
+                        BytesUtils.bytesToLong(batch, offset + 64, false));
+                if (!shareQueue.offer(share)) {
+                    dropped.add(count - i);
+                    log.error("Failed to get ShareInfo from pools");
+                    return;
+                }
+            }
+        }
+
+        boolean firstSeen(long taskIndex, Bytes32 share) {
+            Set<Bytes32> seen = seenShares;
+            return seenTaskIndex != taskIndex || seen.add(share);
+        }
+
+        /**
+         * Starts dedup for the new task and logs the share rate of the last one.
+         */
+        synchronized void newTask() {
+            seenShares = ConcurrentHashMap.newKeySet();
+            seenTaskIndex = taskIndex.get();
+            long now = System.currentTimeMillis();
+            long total = verified.sum();
+            if (now > lastRateTime) {
+                sharesPerSecond = (total - lastVerified) * 1000.0 / (now - lastRateTime);
+            }
+            lastVerified = total;
+            lastRateTime = now;
+            log.info("Shares: {}/s, received {}, verified {}, dropped {}, malformed {}, stale {}, duplicate {}",
+                    String.format("%.1f", sharesPerSecond), received.sum(), total, dropped.sum(), malformed.sum(),
+                    stale.sum(), duplicate.sum());
+        }
+
+        public long getReceived() {
+            return received.sum();
+        }
+
+        public long getDropped() {
+            return dropped.sum();
+        }
+
+        public long getMalformed() {
+            return malformed.sum();
+        }
+
+        public long getStale() {
+            return stale.sum();
+        }
+
+        public long getDuplicate() {
+            return duplicate.sum();
+        }
+
+        public long getVerified() {
+            return verified.sum();
+        }
+
+        public int getQueueSize() {
+            return shareQueue.size();
+        }
     }
 }
@@ -38,19 +38,13 @@ import io.xdag.net.ChannelManager;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.RandomUtils;
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.tuweni.bytes.Bytes;
-import org.apache.tuweni.bytes.MutableBytes;
 
-import java.nio.ByteOrder;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.TreeSet;
 import java.util.concurrent.*;
 
-import static io.xdag.config.Constants.REQUEST_BLOCKS_MAX_TIME;
-import static io.xdag.config.Constants.REQUEST_WAIT;
-
 @Slf4j
 public class XdagSync {
 
@@ -67,7 +61,20 @@ public class XdagSync {
     @Getter
     private final ConcurrentHashMap<Long, SettableFuture<Bytes>> blocksRequestMap;
 
-    private final LinkedList<Long> syncWindow = new LinkedList<>();
+    private static final int SYNC_WINDOW_SIZE = 2048;
+
+    /**
+     * start times of the periods that differ, oldest first
+     */
+    private final TreeSet<Long> syncWindow = new TreeSet<>();
+    private final SumsDivergenceFinder finder;
+    /**
+     * hands the ranges of syncWindow out to all active peers
+     */
+    @Getter
+    private final SyncScheduler scheduler;
+    private final ScheduledExecutorService scheduleTask;
+    private ScheduledFuture<?> scheduleFuture;
 
     @Getter@Setter
     private Status status;
@@ -76,9 +83,6 @@ public class XdagSync {
     private ScheduledFuture<?> sendFuture;
     private volatile boolean isRunning;
 
-    private long lastRequestTime;
-    private int count;
-
     public XdagSync(Kernel kernel) {
         this.kernel = kernel;
         this.channelMgr = kernel.getChannelMgr();
@@ -86,6 +90,11 @@ public class XdagSync {
         sendTask = new ScheduledThreadPoolExecutor(1, factory);
         sumsRequestMap = new ConcurrentHashMap<>();
         blocksRequestMap = new ConcurrentHashMap<>();
+        scheduleTask = new ScheduledThreadPoolExecutor(1, factory);
+        finder = new SumsDivergenceFinder(this::getAnyNode, sumsRequestMap, blockStore);
+        scheduler = new SyncScheduler(this::getAnyNode, blocksRequestMap,
+                kernel.getConfig().getNodeSpec().getSyncMaxInFlight(),
+                kernel.getConfig().getNodeSpec().getSyncMaxInFlightPerPeer());
     }
 
     /**
@@ -98,144 +107,68 @@ public class XdagSync {
             // TODO: paulochen 开始同步的时间点/快照时间点
 //            startSyncTime = 1588687929343L; // 1716ffdffff 171e52dffff
             sendFuture = sendTask.scheduleAtFixedRate(this::syncLoop, 32, 2, TimeUnit.SECONDS);
+            // replies dispatch new requests themselves, the tick handles timeouts and slow peers
+            scheduleFuture = scheduleTask.scheduleAtFixedRate(this::scheduleLoop, 32000, 200, TimeUnit.MILLISECONDS);
         }
     }
 
     private void syncLoop() {
-        count++;
         try {
             if (syncWindow.size() < 32) {
                 log.debug("start finding different time periods");
                 requestBlocks(0, 1L << 48);
             }
-            if (getLastTime() >= lastRequestTime || count == 128) {
-                count = 0;
-                log.debug("start getting blocks");
-                getBlocks();
-            }
+            getBlocks();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Throwable e) {
             log.error("error when requestBlocks {}", e.getMessage());
         }
     }
 
+    private void scheduleLoop() {
+        try {
+            scheduler.tick();
+        } catch (Throwable e) {
+            log.error("error when scheduling blocks requests {}", e.getMessage());
+        }
+    }
+
     /**
-     *  Use syncWindow to request blocks in segments.
+     *  Hand the time periods of syncWindow to the scheduler, oldest first.
      */
     private void getBlocks() {
-        List<Channel> any = getAnyNode();
-        if (any == null || any.size() == 0) {
-            return;
-        }
-        SettableFuture<Bytes> sf = SettableFuture.create();
-        int index = RandomUtils.nextInt() % any.size();
-        Channel xc = any.get(index);
         long lastTime = getLastTime();
 
         // Extract the time that has been synchronized.
-        while (!syncWindow.isEmpty() && syncWindow.get(0) < lastTime) {
+        while (!syncWindow.isEmpty() && syncWindow.first() < lastTime) {
             syncWindow.pollFirst();
         }
 
-        // Segmented requests, each request for 32 time periods.
-        int size = syncWindow.size();
-        for (int i = 0; i < 32; i++) {
-            if (i >= size) {
-                break;
-            }
-            //when the synchronization process channel is removed and reset, update the channel
-            if (!xc.isActive()){
-                log.debug("sync channel need to update");
-                return;
-            }
-
-            long time = syncWindow.get(i);
-            sendGetBlocks(xc, time, sf);
-            if (i == 30) lastRequestTime = time;
+        // keep a window of two rounds of requests queued
+        while (!syncWindow.isEmpty() && scheduler.size() < 2 * scheduler.capacity()) {
+            scheduler.submit(syncWindow.pollFirst());
         }
-
+        scheduler.tick();
     }
 
 
     /**
-     * @param t start time
-     * @param dt interval time
+     * Find the time periods that differ from the network and add them to syncWindow.
      */
-    private void requestBlocks(long t, long dt) {
+    private void requestBlocks(long t, long dt) throws InterruptedException {
         // Not in sync state, synchronization is complete, stop synchronization task.
         if (status != Status.SYNCING) {
             stop();
             return;
         }
 
-        List<Channel> any = getAnyNode();
-        if (any == null || any.size() == 0) {
-            return;
-        }
-
-        SettableFuture<Bytes> sf = SettableFuture.create();
-        int index = RandomUtils.nextInt() % any.size();
-        Channel xc = any.get(index);
-        if (dt > REQUEST_BLOCKS_MAX_TIME) {
-            findGetBlocks(xc, t, dt, sf);
-        } else {
-            if (!kernel.getSyncMgr().isSyncOld() && !kernel.getSyncMgr().isSync()) {
-                log.debug("set sync old");
-                setSyncOld();
-            }
-
-            if ((syncWindow.isEmpty() || t > syncWindow.peekFirst()) && syncWindow.size() < 2048) {
-                syncWindow.offerLast(t);
-            }
-        }
-    }
-
-    /**
-     * Request blocks from remote nodes.
-     * @param t request time
-     */
-    private void sendGetBlocks(Channel xc, long t, SettableFuture<Bytes> sf) {
-        long randomSeq = xc.getP2pHandler().sendGetBlocks(t, t + REQUEST_BLOCKS_MAX_TIME);
-        blocksRequestMap.put(randomSeq, sf);
-        try {
-            sf.get(REQUEST_WAIT, TimeUnit.SECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            blocksRequestMap.remove(randomSeq);
-            log.error(e.getMessage(), e);
-        }
-    }
-
-
-    /**
-     * Recursively find the time periods to request.
-     */
-    private void findGetBlocks(Channel xc, long t, long dt, SettableFuture<Bytes> sf) {
-        MutableBytes lSums = MutableBytes.create(256);
-        Bytes rSums;
-        if (blockStore.loadSum(t, t + dt, lSums) <= 0) {
-            return;
-        }
-        long randomSeq = xc.getP2pHandler().sendGetSums(t, t + dt);
-        sumsRequestMap.put(randomSeq, sf);
-        try {
-            Bytes sums = sf.get(REQUEST_WAIT, TimeUnit.SECONDS);
-            rSums = sums.copy();
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            sumsRequestMap.remove(randomSeq);
-            log.error(e.getMessage(), e);
-            return;
-        }
-        sumsRequestMap.remove(randomSeq);
-        dt >>= 4;
-        for (int i = 0; i < 16; i++) {
-            long lSumsSum = lSums.getLong(i * 16, ByteOrder.LITTLE_ENDIAN);
-            long lSumsSize = lSums.getLong(i * 16 + 8, ByteOrder.LITTLE_ENDIAN);
-            long rSumsSum = rSums.getLong(i * 16, ByteOrder.LITTLE_ENDIAN);
-            long rSumsSize = rSums.getLong(i * 16 + 8, ByteOrder.LITTLE_ENDIAN);
-
-            if (lSumsSize != rSumsSize || lSumsSum != rSumsSum) {
-                requestBlocks(t + i * dt, dt);
-            }
+        List<Long> periods = finder.find(t, dt, SYNC_WINDOW_SIZE - syncWindow.size());
+        if (!periods.isEmpty() && !kernel.getSyncMgr().isSyncOld() && !kernel.getSyncMgr().isSync()) {
+            log.debug("set sync old");
+            setSyncOld();
         }
+        syncWindow.addAll(periods);
     }
 
     public void setSyncOld() {
@@ -280,8 +213,12 @@ public class XdagSync {
                 if (sendFuture != null) {
                     sendFuture.cancel(true);
                 }
+                if (scheduleFuture != null) {
+                    scheduleFuture.cancel(true);
+                }
                 // 关闭线程池
                 sendTask.shutdownNow();
+                scheduleTask.shutdownNow();
                 sendTask.awaitTermination(5, TimeUnit.SECONDS);
             } catch (InterruptedException e) {
                 log.error(e.getMessage(), e);
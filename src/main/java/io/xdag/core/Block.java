@@ -27,9 +27,11 @@ package io.xdag.core;
 import com.google.common.collect.Lists;
 import io.xdag.config.Config;
 import io.xdag.crypto.Hash;
+import io.xdag.crypto.Keys;
 import io.xdag.crypto.Sign;
 import io.xdag.utils.BytesUtils;
 import io.xdag.utils.SimpleEncoder;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -92,6 +94,17 @@ public class Block implements Cloneable {
     private boolean isOurs;
     private byte[] encoded;
     private int tempLength;
+    /**
+     * keys that signed this block, computed once by {@link #verifiedKeys()}
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile List<SECPPublicKey> verifiedKeys;
+    /**
+     * signing digests by field count, only valid for the xdagBlock they were cut from
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile SubRawData subRawData;
     @Getter
     @Setter
     private boolean pretopCandidate;
@@ -158,9 +171,7 @@ public class Block implements Cloneable {
 
         if (CollectionUtils.isNotEmpty(keys)) {
             for (KeyPair key : keys) {
-                byte[] keydata = Sign.publicKeyBytesFromPrivate(key.getPrivateKey().getEncodedBytes().toUnsignedBigInteger(), true); //poor performance
-//                byte[] keydata = key.getCompressPubKeyBytes(); //good performance
-                boolean yBit = BytesUtils.toByte(BytesUtils.subArray(keydata, 0, 1)) == 0x03;
+                boolean yBit = Keys.toCompressedBytes(key.getPublicKey()).get(0) == 0x03;
                 XdagField.FieldType type = yBit ? XDAG_FIELD_PUBLIC_KEY_1 : XDAG_FIELD_PUBLIC_KEY_0;
                 setType(type, lenghth++);
                 pubKeys.add(key.getPublicKey());
@@ -235,6 +246,7 @@ public class Block implements Cloneable {
         if (this.parsed) {
             return;
         }
+        this.verifiedKeys = null;
         if (this.info == null) {
             this.info = new BlockInfo();
         }
@@ -352,8 +364,7 @@ public class Block implements Cloneable {
             encoder.write(info.getRemark());
         }
         for (SECPPublicKey publicKey : pubKeys) {
-            byte[] pubkeyBytes = publicKey.asEcPoint(Sign.CURVE).getEncoded(true);
-            byte[] key = BytesUtils.subArray(pubkeyBytes, 1, 32);
+            byte[] key = Keys.toCompressedBytes(publicKey).slice(1, 32).toArray();
             encoder.writeField(key);
         }
         encoded = encoder.toBytes();
@@ -388,7 +399,7 @@ public class Block implements Cloneable {
     private void sign(KeyPair ecKey, XdagField.FieldType type) {
         byte[] encoded = toBytes();
         // log.debug("sign encoded:{}", Hex.toHexString(encoded));
-        byte[] pubkeyBytes = ecKey.getPublicKey().asEcPoint(Sign.CURVE).getEncoded(true);
+        byte[] pubkeyBytes = Keys.toCompressedBytes(ecKey.getPublicKey()).toArray();
         byte[] digest = BytesUtils.merge(encoded, pubkeyBytes);
         //log.debug("sign digest:{}", Hex.toHexString(digest));
         Bytes32 hash = Hash.hashTwice(Bytes.wrap(digest));
@@ -403,8 +414,19 @@ public class Block implements Cloneable {
 
     /**
      * 只匹配输入签名 并返回有用的key
+     * <p>
+     * Only depends on the block data, so it is computed once and may run ahead of import on a worker thread.
      */
     public List<SECPPublicKey> verifiedKeys() {
+        List<SECPPublicKey> res = this.verifiedKeys;
+        if (res == null) {
+            res = Collections.unmodifiableList(computeVerifiedKeys());
+            this.verifiedKeys = res;
+        }
+        return res;
+    }
+
+    private List<SECPPublicKey> computeVerifiedKeys() {
         List<SECPPublicKey> keys = getPubKeys();
         List<SECPPublicKey> res = Lists.newArrayList();
         Bytes digest;
@@ -412,9 +434,7 @@ public class Block implements Cloneable {
         for (SECPSignature sig : this.getInsigs().keySet()) {
             digest = getSubRawData(this.getInsigs().get(sig) - 1);
             for (SECPPublicKey publicKey : keys) {
-                // TODO： paulochen 是不是可以替换
-                byte[] pubkeyBytes = publicKey.asEcPoint(Sign.CURVE).getEncoded(true);
-                hash = Hash.hashTwice(Bytes.wrap(digest, Bytes.wrap(pubkeyBytes)));
+                hash = Hash.hashTwice(Bytes.wrap(digest, Keys.toCompressedBytes(publicKey)));
                 if (Sign.SECP256K1.verify(hash, sig, publicKey)) {
                     res.add(publicKey);
                 }
@@ -422,9 +442,7 @@ public class Block implements Cloneable {
         }
         digest = getSubRawData(getOutsigIndex() - 2);
         for (SECPPublicKey publicKey : keys) {
-            // TODO： paulochen 是不是可以替换
-            byte[] pubkeyBytes = publicKey.asEcPoint(Sign.CURVE).getEncoded(true);
-            hash = Hash.hashTwice(Bytes.wrap(digest, Bytes.wrap(pubkeyBytes)));
+            hash = Hash.hashTwice(Bytes.wrap(digest, Keys.toCompressedBytes(publicKey)));
             if (Sign.SECP256K1.verify(hash, this.getOutsig(), publicKey)) {
                 res.add(publicKey);
             }
@@ -504,8 +522,22 @@ public class Block implements Cloneable {
     /**
      * 根据length获取前length个字段的数据 主要用于签名*
      */
-    public MutableBytes getSubRawData(int length) {
-        Bytes data = getXdagBlock().getData();
+    public Bytes getSubRawData(int length) {
+        XdagBlock source = getXdagBlock();
+        SubRawData memo = this.subRawData;
+        if (memo == null || memo.source != source) {
+            memo = new SubRawData(source);
+            this.subRawData = memo;
+        }
+        Bytes res = memo.slots[length];
+        if (res == null) {
+            res = computeSubRawData(source.getData(), length);
+            memo.slots[length] = res;
+        }
+        return res;
+    }
+
+    private static Bytes computeSubRawData(Bytes data, int length) {
         MutableBytes res = MutableBytes.create(512);
         res.set(0, data.slice(0, (length + 1) * 32));
         for (int i = length + 1; i < 16; i++) {
@@ -516,7 +548,17 @@ public class Block implements Cloneable {
             }
             res.set((i) * 32, data.slice((i) * 32, 32));
         }
-        return res;
+        return res.copy();
+    }
+
+    private static final class SubRawData {
+
+        private final XdagBlock source;
+        private final Bytes[] slots = new Bytes[16];
+
+        private SubRawData(XdagBlock source) {
+            this.source = source;
+        }
     }
 
     private void setType(XdagField.FieldType type, int n) {
@@ -42,6 +42,10 @@ public class BlockWrapper implements Cloneable {
     private long time;
 
     private boolean isOld;
+    /**
+     * signatures and structure were checked ahead of import, see {@link Block#verifiedKeys()}
+     */
+    private volatile boolean verified;
 
     public BlockWrapper(Block block, int ttl, Peer remotePeer, boolean isOld) {
         this.block = block;
@@ -75,5 +75,9 @@ public interface Blockchain {
 
     List<TxHistory> getBlockTxHistoryByAddress(Bytes32 addressHashlow, int page, Object... parameters);
 
+    TxHistoryPage getBlockTxHistoryPage(Bytes32 addressHashlow, int page, String cursor, Object... parameters);
+
     XdagExtStats getXdagExtStats();
+
+    MemOrphanPool getMemOrphanPool();
 }
@@ -35,6 +35,7 @@ import io.xdag.crypto.Keys;
 import io.xdag.crypto.RandomX;
 import io.xdag.crypto.Sign;
 import io.xdag.db.*;
+import io.xdag.db.rocksdb.DatabaseFactory;
 import io.xdag.db.rocksdb.RocksdbKVSource;
 import io.xdag.db.rocksdb.SnapshotStoreImpl;
 import io.xdag.listener.BlockMessage;
@@ -64,6 +65,7 @@ import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Supplier;
 
 import static io.xdag.config.Constants.*;
 import static io.xdag.config.Constants.MessageType.NEW_LINK;
@@ -97,7 +99,7 @@ public class BlockchainImpl implements Blockchain {
      */
     private final OrphanBlockStore orphanBlockStore;
 
-    private final LinkedHashMap<Bytes, Block> memOrphanPool = new LinkedHashMap<>();
+    private final MemOrphanPool memOrphanPool;
     private final Map<Bytes, Integer> memOurBlocks = new ConcurrentHashMap<>();
     private final XdagStats xdagStats;
     private final Kernel kernel;
@@ -126,6 +128,8 @@ public class BlockchainImpl implements Blockchain {
         this.blockStore = kernel.getBlockStore();
         this.orphanBlockStore = kernel.getOrphanBlockStore();
         this.txHistoryStore = kernel.getTxHistoryStore();
+        this.memOrphanPool = new MemOrphanPool(kernel.getConfig().getNodeSpec().getExtraPoolMaxSize(),
+                kernel.getConfig().getNodeSpec().getExtraPoolMaxAge() * 1000L);
         snapshotHeight = kernel.getConfig().getSnapshotSpec().getSnapshotHeight();
 //        this.filter = new Filter(blockStore);
 
@@ -181,13 +185,15 @@ public class BlockchainImpl implements Blockchain {
         System.out.println("init snapshot...");
 
         RocksdbKVSource snapshotAddressSource = new RocksdbKVSource("SNAPSHOT/ADDRESS");
-        snapshotAddressStore = new SnapshotStoreImpl(snapshotAddressSource);
+        snapshotAddressStore = new SnapshotStoreImpl(snapshotAddressSource, kernel.getDbFactory(),
+                kernel.getConfig().getSnapshotSpec().getSnapshotImportThreads());
         snapshotAddressSource.setConfig(kernel.getConfig());
         snapshotAddressSource.init();
         snapshotAddressStore.saveAddress(this.blockStore, this.addressStore, this.txHistoryStore, kernel.getWallet().getAccounts(), kernel.getConfig().getSnapshotSpec().getSnapshotTime());
 
         RocksdbKVSource snapshotSource = new RocksdbKVSource("SNAPSHOT/BLOCKS");
-        snapshotStore = new SnapshotStoreImpl(snapshotSource);
+        snapshotStore = new SnapshotStoreImpl(snapshotSource, kernel.getDbFactory(),
+                kernel.getConfig().getSnapshotSpec().getSnapshotImportThreads());
         snapshotSource.setConfig(kernel.getConfig());
         snapshotStore.init();
         snapshotStore.saveSnapshotToIndex(this.blockStore, this.txHistoryStore, kernel.getWallet().getAccounts(), kernel.getConfig().getSnapshotSpec().getSnapshotTime());
@@ -229,6 +235,27 @@ public class BlockchainImpl implements Blockchain {
      */
     @Override
     public synchronized ImportResult tryToConnect(Block block) {
+        return executeInBatch(() -> connect(block));
+    }
+
+    /**
+     * Runs a unit of store writes as one batch that is discarded if the work throws. With
+     * {@code node.store.singleDb} the batch is also crash atomic, so a crash can not leave the index, balances
+     * and stats of a half-applied block behind.
+     */
+    private <T> T executeInBatch(Supplier<T> work) {
+        DatabaseFactory dbFactory = kernel.getDbFactory();
+        return dbFactory == null ? work.get() : dbFactory.executeInBatch(work);
+    }
+
+    private void executeInBatch(Runnable work) {
+        executeInBatch(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    private ImportResult connect(Block block) {
 
         // TODO: if current height is snapshot height, we need change logic to process new block
 
@@ -428,7 +455,7 @@ public class BlockchainImpl implements Blockchain {
             xdagStats.totalnblocks = Math.max(xdagStats.nblocks, xdagStats.totalnblocks);
 
             if ((block.getInfo().flags & BI_EXTRA) != 0) {
-                memOrphanPool.put(block.getHashLow(), block);
+                memOrphanPool.put(block);
                 xdagStats.nextra++;
 //                 TODO：设置为返回 IMPORTED_EXTRA
 //                result = ImportResult.IMPORTED_EXTRA;
@@ -512,16 +539,20 @@ public class BlockchainImpl implements Blockchain {
     }
 
     public List<TxHistory> getBlockTxHistoryByAddress(Bytes32 addressHashlow, int page, Object... parameters) {
-        List<TxHistory> txHistory = Lists.newArrayList();
+        return Lists.newArrayList(getBlockTxHistoryPage(addressHashlow, page, null, parameters).getTxHistories());
+    }
+
+    public TxHistoryPage getBlockTxHistoryPage(Bytes32 addressHashlow, int page, String cursor, Object... parameters) {
         if (txHistoryStore != null) {
             try {
-                txHistory.addAll(txHistoryStore.listTxHistoryByAddress(checkAddress(addressHashlow) ?
-                        BasicUtils.hash2PubAddress(addressHashlow) : BasicUtils.hash2Address(addressHashlow), page, parameters));
+                return txHistoryStore.listTxHistoryPage(checkAddress(addressHashlow) ?
+                        BasicUtils.hash2PubAddress(addressHashlow) : BasicUtils.hash2Address(addressHashlow), page,
+                        cursor, parameters);
             } catch (Exception e) {
                 log.error(e.getMessage(), e);
             }
         }
-        return txHistory;
+        return TxHistoryPage.EMPTY;
     }
 
     /**
@@ -589,17 +620,21 @@ public class BlockchainImpl implements Blockchain {
     }
 
     public void processExtraBlock() {
-        if (memOrphanPool.size() > MAX_ALLOWED_EXTRA) {
-            Block reuse = memOrphanPool.entrySet().iterator().next().getValue();
-            log.debug("Remove when extra too big");
-            removeOrphan(reuse.getHashLow(), OrphanRemoveActions.ORPHAN_REMOVE_REUSE);
+        memOrphanPool.evict(System.currentTimeMillis(), reuse -> {
+            log.debug("Remove when extra too big or too old");
+            // referenced or snapshot blocks stay, they keep their flags and are counted as before
+            if (!removeOrphan(reuse.getHashLow(), OrphanRemoveActions.ORPHAN_REMOVE_REUSE)
+                    || memOrphanPool.contains(reuse.getHashLow())) {
+                return false;
+            }
             xdagStats.nblocks--;
             xdagStats.totalnblocks = Math.max(xdagStats.nblocks, xdagStats.totalnblocks);
 
             if ((reuse.getInfo().flags & BI_OURS) != 0) {
                 removeOurBlock(reuse);
             }
-        }
+            return true;
+        });
     }
 
     protected void onNewPretop() {
@@ -882,26 +917,31 @@ public class BlockchainImpl implements Blockchain {
     public void setMain(Block block) {
 
         synchronized (this) {
-            // 设置奖励
-            long mainNumber = xdagStats.nmain + 1;
-            log.debug("mainNumber = {},hash = {}", mainNumber, Hex.toHexString(block.getInfo().getHash()));
-            XAmount reward = getReward(mainNumber);
-            block.getInfo().setHeight(mainNumber);
-            updateBlockFlag(block, BI_MAIN, true);
-
-            // 接收奖励
-            acceptAmount(block, reward);
-            xdagStats.nmain++;
-
-            // 递归执行主块引用的区块 并获取手续费
-            applyBlock(true, block);
-            // 主块REF指向自身
-            // TODO:补充手续费
-            updateBlockRef(block, new Address(block));
-
-            if (randomx != null) {
-                randomx.randomXSetForkTime(block);
-            }
+            executeInBatch(() -> {
+                // 设置奖励
+                long mainNumber = xdagStats.nmain + 1;
+                log.debug("mainNumber = {},hash = {}", mainNumber, Hex.toHexString(block.getInfo().getHash()));
+                XAmount reward = getReward(mainNumber);
+                block.getInfo().setHeight(mainNumber);
+                updateBlockFlag(block, BI_MAIN, true);
+
+                // 接收奖励
+                acceptAmount(block, reward);
+                xdagStats.nmain++;
+
+                // 递归执行主块引用的区块 并获取手续费
+                applyBlock(true, block);
+                // 主块REF指向自身
+                // TODO:补充手续费
+                updateBlockRef(block, new Address(block));
+                if ((block.getInfo().flags & BI_OURS) != 0) {
+                    blockStore.saveMinedBlock(mainNumber, block.getHashLow().toArray());
+                }
+
+                if (randomx != null) {
+                    randomx.randomXSetForkTime(block);
+                }
+            });
         }
 
     }
@@ -913,23 +953,26 @@ public class BlockchainImpl implements Blockchain {
     public void unSetMain(Block block) {
 
         synchronized (this) {
+            executeInBatch(() -> {
 
-            log.debug("UnSet main,{}, mainnumber = {}", block.getHash().toHexString(), xdagStats.nmain);
+                log.debug("UnSet main,{}, mainnumber = {}", block.getHash().toHexString(), xdagStats.nmain);
 
-            XAmount amount = block.getInfo().getAmount();// mainBlock's balance will have fee, subtract all balance.
-            block.getInfo().setFee(XAmount.ZERO);// set the mainBlock's zero.
-            updateBlockFlag(block, BI_MAIN, false);
+                XAmount amount = block.getInfo().getAmount();// mainBlock's balance will have fee, subtract all balance.
+                blockStore.removeMinedBlock(block.getInfo().getHeight());
+                block.getInfo().setFee(XAmount.ZERO);// set the mainBlock's zero.
+                updateBlockFlag(block, BI_MAIN, false);
 
-            xdagStats.nmain--;
+                xdagStats.nmain--;
 
-            // 去掉奖励和引用块的手续费
-            acceptAmount(block, XAmount.ZERO.subtract(amount));
-            acceptAmount(block, unApplyBlock(block));
+                // 去掉奖励和引用块的手续费
+                acceptAmount(block, XAmount.ZERO.subtract(amount));
+                acceptAmount(block, unApplyBlock(block));
 
-            if (randomx != null) {
-                randomx.randomXUnsetForkTime(block);
-            }
-            block.getInfo().setHeight(0);
+                if (randomx != null) {
+                    randomx.randomXUnsetForkTime(block);
+                }
+                block.getInfo().setHeight(0);
+            });
         }
     }
 
@@ -1255,11 +1298,14 @@ public class BlockchainImpl implements Blockchain {
         return null;
     }
 
-    public void removeOrphan(Bytes32 hashlow, OrphanRemoveActions action) {
+    /**
+     * @return true if the block was removed from the extra pool or the orphan store
+     */
+    public boolean removeOrphan(Bytes32 hashlow, OrphanRemoveActions action) {
         Block b = getBlockByHash(hashlow, false);
         // TODO: snapshot
         if (b != null && b.getInfo() != null && b.getInfo().isSnapshot()) {
-            return;
+            return false;
         }
         if (b != null && ((b.getInfo().flags & BI_REF) == 0) && (action != OrphanRemoveActions.ORPHAN_REMOVE_EXTRA
                 || (b.getInfo().flags & BI_EXTRA) != 0)) {
@@ -1269,8 +1315,7 @@ public class BlockchainImpl implements Blockchain {
                 // 那removeBlockInfo就是完整的
                 // 从MemOrphanPool中去除
                 Bytes key = b.getHashLow();
-                Block removeBlockRaw = memOrphanPool.get(key);
-                memOrphanPool.remove(key);
+                Block removeBlockRaw = memOrphanPool.remove(key);
                 if (action != OrphanRemoveActions.ORPHAN_REMOVE_REUSE) {
                     // 将区块保存
                     saveBlock(removeBlockRaw);
@@ -1292,7 +1337,9 @@ public class BlockchainImpl implements Blockchain {
             }
             // 更新这个块的flag
             updateBlockFlag(b, BI_REF, true);
+            return true;
         }
+        return false;
     }
 
     public void updateBlockFlag(Block block, byte flag, boolean direction) {
@@ -1397,7 +1444,7 @@ public class BlockchainImpl implements Blockchain {
             return verifySignatureFromSnapshot(in, publicKeys);
         } else {
             Block inBlock = getBlockByHash(in.getAddress(), true);
-            MutableBytes subdata = inBlock.getSubRawData(inBlock.getOutsigIndex() - 2);
+            Bytes subdata = inBlock.getSubRawData(inBlock.getOutsigIndex() - 2);
 //            log.debug("verify encoded:{}", Hex.toHexString(subdata));
             SECPSignature sig = inBlock.getOutsig();
             return verifySignature(subdata, sig, publicKeys, block.getInfo());
@@ -1426,7 +1473,7 @@ public class BlockchainImpl implements Blockchain {
             block.setXdagBlock(new XdagBlock(snapshotInfo.getData()));
             block.setParsed(false);
             block.parse();
-            MutableBytes subdata = block.getSubRawData(block.getOutsigIndex() - 2);
+            Bytes subdata = block.getSubRawData(block.getOutsigIndex() - 2);
             SECPSignature sig = block.getOutsig();
             return verifySignature(subdata, Sign.toCanonical(sig), publicKeys, blockInfo);
         }
@@ -1434,15 +1481,14 @@ public class BlockchainImpl implements Blockchain {
 
     }
 
-    private boolean verifySignature(MutableBytes subdata, SECPSignature sig, List<SECPPublicKey> publicKeys, BlockInfo blockInfo) {
+    private boolean verifySignature(Bytes subdata, SECPSignature sig, List<SECPPublicKey> publicKeys, BlockInfo blockInfo) {
         for (SECPPublicKey publicKey : publicKeys) {
-            byte[] publicKeyBytes = publicKey.asEcPoint(Sign.CURVE).getEncoded(true);
-            Bytes digest = Bytes.wrap(subdata, Bytes.wrap(publicKeyBytes));
+            Bytes digest = Bytes.wrap(subdata, Keys.toCompressedBytes(publicKey));
 //            log.debug("verify encoded:{}", Hex.toHexString(digest));
             Bytes32 hash = Hash.hashTwice(digest);
             if (Sign.SECP256K1.verify(hash, sig, publicKey)) {
                 SnapshotInfo snapshotInfo = blockInfo.getSnapshotInfo();
-                byte[] pubkeyBytes = publicKey.asEcPoint(Sign.CURVE).getEncoded(true);
+                byte[] pubkeyBytes = Keys.toCompressedBytes(publicKey).toArray();
                 if (snapshotInfo != null) {
                     snapshotInfo.setData(pubkeyBytes);
                     snapshotInfo.setType(true);
@@ -1463,9 +1509,8 @@ public class BlockchainImpl implements Blockchain {
         // 遍历所有key
         for (int i = 0; i < ourkeys.size(); i++) {
             KeyPair ecKey = ourkeys.get(i);
-            // TODO: 优化
-            byte[] publicKeyBytes = ecKey.getPublicKey().asEcPoint(Sign.CURVE).getEncoded(true);
-            Bytes digest = Bytes.wrap(block.getSubRawData(block.getOutsigIndex() - 2), Bytes.wrap(publicKeyBytes));
+            Bytes digest = Bytes.wrap(block.getSubRawData(block.getOutsigIndex() - 2),
+                    Keys.toCompressedBytes(ecKey.getPublicKey()));
             Bytes32 hash = Hash.hashTwice(Bytes.wrap(digest));
             // use hyperledger besu crypto native secp256k1
             if (Sign.SECP256K1.verify(hash, signature, ecKey.getPublicKey())) {
@@ -1570,12 +1615,11 @@ public class BlockchainImpl implements Blockchain {
 
     public SECPPublicKey getBlockPubKey(Block block) {
         List<SECPPublicKey> keys = block.verifiedKeys();
-        MutableBytes subData = block.getSubRawData(block.getOutsigIndex() - 2);
+        Bytes subData = block.getSubRawData(block.getOutsigIndex() - 2);
 //            log.debug("verify encoded:{}", Hex.toHexString(subdata));
         SECPSignature sig = block.getOutsig();
         for (SECPPublicKey publicKey : keys) {
-            byte[] publicKeyBytes = publicKey.asEcPoint(Sign.CURVE).getEncoded(true);
-            Bytes digest = Bytes.wrap(subData, Bytes.wrap(publicKeyBytes));
+            Bytes digest = Bytes.wrap(subData, Keys.toCompressedBytes(publicKey));
 //            log.debug("verify encoded:{}", Hex.toHexString(digest));
             Bytes32 hash = Hash.hashTwice(digest);
             if (Sign.SECP256K1.verify(hash, sig, publicKey)) {
@@ -1724,7 +1768,7 @@ public class BlockchainImpl implements Blockchain {
     }
 
     public boolean isExistInMem(Bytes32 hashlow) {
-        return memOrphanPool.containsKey(hashlow);
+        return memOrphanPool.contains(hashlow);
     }
 
     /**
@@ -1758,28 +1802,9 @@ public class BlockchainImpl implements Blockchain {
         return listMainBlocksByHeight(count);
     }
 
-    // TODO: 列出本矿池生成的主块，如果本矿池只在前期产块或者从未产块，会导致需要遍历所有的区块数据，这部分应该需要优化
     @Override
     public List<Block> listMinedBlocks(int count) {
-        Block temp = getBlockByHash(Bytes32.wrap(xdagTopStatus.getTop()), false);
-        if (temp == null) {
-            temp = getBlockByHash(Bytes32.wrap(xdagTopStatus.getPreTop()), false);
-        }
-        List<Block> res = Lists.newArrayList();
-        while (count > 0) {
-            if (temp == null) {
-                break;
-            }
-            if ((temp.getInfo().flags & BI_MAIN) != 0 && (temp.getInfo().flags & BI_OURS) != 0) {
-                count--;
-                res.add((Block) temp.clone());
-            }
-            if (temp.getInfo().getMaxDiffLink() == null) {
-                break;
-            }
-            temp = getBlockByHash(Bytes32.wrap(temp.getInfo().getMaxDiffLink()), false);
-        }
-        return res;
+        return blockStore.getMinedBlocks(count);
     }
 
     enum OrphanRemoveActions {
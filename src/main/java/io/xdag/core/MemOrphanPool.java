@@ -0,0 +1,209 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.core;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import lombok.Getter;
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * In-memory pool of extra blocks keyed by hashlow.
+ * <p>
+ * Lookups go straight to a {@link ConcurrentHashMap} so RPC threads never wait for the chain lock.
+ * Insertion order is kept in a skip list so the oldest entry can be found for FIFO eviction. The
+ * pool itself never drops blocks: eviction has to update block flags and stats, so
+ * {@link #evict(long, Predicate)} only picks the candidates and the chain removes them.
+ * <p>
+ * A lookup counts as a hit when the pool serves it and as a miss when it asks for a block the pool
+ * evicted recently, so the hit rate tells whether the pool is sized too small. Lookups for blocks
+ * that never were extra blocks are not counted.
+ */
+public class MemOrphanPool {
+
+    private static final long MAX_EVICTED_TRACKED = 1 << 16;
+
+    @Getter
+    private final long maxSize;
+    /**
+     * max age of an entry in milliseconds, 0 disables age based eviction
+     */
+    @Getter
+    private final long maxAge;
+
+    private final Map<Bytes, Entry> blocks = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Entry> order = new ConcurrentSkipListMap<>();
+    private final AtomicLong seq = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    /**
+     * hashlows of recently evicted blocks, for miss counting
+     */
+    private final Cache<Bytes, Boolean> evicted;
+
+    public MemOrphanPool(long maxSize, long maxAge) {
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+        this.evicted = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, Math.min(maxSize, MAX_EVICTED_TRACKED)))
+                .build();
+    }
+
+    public void put(Block block) {
+        put(block, System.currentTimeMillis());
+    }
+
+    public void put(Block block, long now) {
+        Entry entry = new Entry(block, seq.incrementAndGet(), now);
+        evicted.invalidate(block.getHashLow());
+        Entry old = blocks.put(block.getHashLow(), entry);
+        if (old != null) {
+            order.remove(old.seq, old);
+        }
+        order.put(entry.seq, entry);
+    }
+
+    public Block get(Bytes hashlow) {
+        Entry entry = blocks.get(hashlow);
+        if (entry == null) {
+            if (evicted.getIfPresent(hashlow) != null) {
+                misses.increment();
+            }
+            return null;
+        }
+        hits.increment();
+        return entry.block;
+    }
+
+    public boolean contains(Bytes hashlow) {
+        return blocks.containsKey(hashlow);
+    }
+
+    public Block remove(Bytes hashlow) {
+        Entry entry = blocks.remove(hashlow);
+        if (entry == null) {
+            return null;
+        }
+        order.remove(entry.seq, entry);
+        return entry.block;
+    }
+
+    public int size() {
+        return blocks.size();
+    }
+
+    /**
+     * Oldest block by insertion, or null when empty.
+     */
+    public Block oldest() {
+        Map.Entry<Long, Entry> first = order.firstEntry();
+        return first == null ? null : first.getValue().block;
+    }
+
+    /**
+     * Whether the oldest entry should go, either because the pool is over size or it is over age.
+     */
+    public boolean needEvict(long now) {
+        if (size() > maxSize) {
+            return true;
+        }
+        if (maxAge <= 0) {
+            return false;
+        }
+        Map.Entry<Long, Entry> first = order.firstEntry();
+        return first != null && now - first.getValue().addedAt > maxAge;
+    }
+
+    /**
+     * Offers blocks to {@code evictor} oldest first for as long as the pool is over size or the block is over age.
+     * The evictor removes the block from the pool and returns true, or returns false when it has to stay, e.g.
+     * because it got referenced meanwhile. Blocks that stay are skipped, so one pass always ends.
+     *
+     * @return number of blocks evicted
+     */
+    public int evict(long now, Predicate<Block> evictor) {
+        int count = 0;
+        for (Entry entry : order.values()) {
+            if (size() <= maxSize && (maxAge <= 0 || now - entry.addedAt <= maxAge)) {
+                break;
+            }
+            if (evictor.test(entry.block)) {
+                recordEviction(entry.block.getHashLow());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void recordEviction(Bytes hashlow) {
+        evictions.increment();
+        evicted.put(hashlow, Boolean.TRUE);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MemOrphanPool{size=%d, hits=%d, misses=%d, evictions=%d, hitRate=%.2f}", size(),
+                getHits(), getMisses(), getEvictions(), getHitRate());
+    }
+
+    private static final class Entry {
+
+        private final Block block;
+        private final long seq;
+        private final long addedAt;
+
+        private Entry(Block block, long seq, long addedAt) {
+            this.block = block;
+            this.seq = seq;
+            this.addedAt = addedAt;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.core;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of transaction history together with its paging state, so callers do not have to share it
+ * through static fields.
+ */
+@Getter
+public class TxHistoryPage {
+
+    public static final TxHistoryPage EMPTY = new TxHistoryPage(Collections.emptyList(), 1, null, false);
+
+    private final List<TxHistory> txHistories;
+    private final int totalPage;
+    /**
+     * Opaque token continuing after the last row of this page, null when there is no next page or the page
+     * was requested by offset.
+     */
+    private final String nextCursor;
+    /**
+     * True when the total was capped instead of counted exactly.
+     */
+    private final boolean approximate;
+
+    public TxHistoryPage(List<TxHistory> txHistories, int totalPage, String nextCursor, boolean approximate) {
+        this.txHistories = txHistories;
+        this.totalPage = totalPage;
+        this.nextCursor = nextCursor;
+        this.approximate = approximate;
+    }
+}
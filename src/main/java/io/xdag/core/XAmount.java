@@ -109,6 +109,13 @@ public class XAmount implements Comparable<XAmount> {
         return String.valueOf(nano);
     }
 
+    /**
+     * The amount in nano xdag.
+     */
+    public long toLong() {
+        return nano;
+    }
+
     public boolean greaterThan(XAmount other) {
         return nano > other.nano;
     }
@@ -24,6 +24,8 @@
 
 package io.xdag.crypto;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
@@ -47,6 +49,25 @@ public class Keys {
     public static final String PROVIDER = BouncyCastleProvider.PROVIDER_NAME;
     public static final String CURVE_NAME = "secp256k1";
 
+    /**
+     * bound of the per-key caches, comfortably above the number of distinct keys seen in a sync window
+     */
+    public static final int KEY_CACHE_SIZE = 8192;
+
+    /**
+     * compressed point encodings, decoding the point is the expensive part of getEncoded(true)
+     */
+    private static final Cache<SECPPublicKey, Bytes> COMPRESSED_KEYS = Caffeine.newBuilder()
+            .maximumSize(KEY_CACHE_SIZE)
+            .build();
+
+    /**
+     * sha256hash160 of the compressed encoding
+     */
+    private static final Cache<SECPPublicKey, Bytes> ADDRESSES = Caffeine.newBuilder()
+            .maximumSize(KEY_CACHE_SIZE)
+            .build();
+
     static {
         if (Security.getProvider(PROVIDER) == null) {
             Security.addProvider(new BouncyCastleProvider());
@@ -91,12 +112,19 @@ public class Keys {
         return KeyPair.generate(keyPairGenerator, ALGORITHM);
     }
 
+    /**
+     * 33 byte compressed encoding of the public key, cached per key.
+     */
+    public static Bytes toCompressedBytes(SECPPublicKey publicKey) {
+        return COMPRESSED_KEYS.get(publicKey, k -> Bytes.wrap(k.asEcPoint(Sign.CURVE).getEncoded(true)));
+    }
+
     public static byte[] toBytesAddress(KeyPair key) {
-        return Hash.sha256hash160(Bytes.wrap(key.getPublicKey().asEcPoint(Sign.CURVE).getEncoded(true)));
+        return toBytesAddress(key.getPublicKey());
     }
 
     public static byte[] toBytesAddress(SECPPublicKey publicKey){
-        return Hash.sha256hash160(Bytes.wrap(publicKey.asEcPoint(Sign.CURVE).getEncoded(true)));
+        return ADDRESSES.get(publicKey, k -> Bytes.wrap(Hash.sha256hash160(toCompressedBytes(k)))).toArray();
     }
 
 }
@@ -42,7 +42,6 @@ import org.apache.tuweni.bytes.Bytes32;
 import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.encoders.Hex;
 
-import com.sun.jna.Memory;
 import com.sun.jna.NativeLong;
 import com.sun.jna.Pointer;
 
@@ -53,7 +52,6 @@ import io.xdag.core.Blockchain;
 import io.xdag.crypto.randomx.NativeSize;
 import io.xdag.crypto.randomx.RandomXFlag;
 import io.xdag.crypto.randomx.RandomXJNA;
-import io.xdag.crypto.randomx.RandomXUtils;
 import io.xdag.utils.XdagTime;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -83,6 +81,9 @@ public class RandomX {
     protected boolean is_full_mem;
     protected boolean is_Large_pages;
 
+    // 每个seed的vm数量
+    protected int vmPoolSize = Runtime.getRuntime().availableProcessors();
+
 
     public RandomX(Config config) {
         this.config = config;
@@ -203,13 +204,11 @@ public class RandomX {
             readWriteLock = globalMemoryLock[(int) (randomXPoolMemIndex) & 1];
         }
 
-        readWriteLock.writeLock().lock();
+        readWriteLock.readLock().lock();
         try {
-            Pointer hashPointer = new Memory(RandomXUtils.HASH_SIZE);
-            RandomXJNA.INSTANCE.randomx_calculate_hash(memory.poolVm, bytesToPointer(data.toArray()), new NativeSize(dataSize), hashPointer);
-            hash = Bytes32.wrap(hashPointer.getByteArray(0, RandomXUtils.HASH_SIZE));
+            hash = Bytes32.wrap(memory.vmPool.calculateHash(data.toArrayUnsafe(), dataSize));
         } finally {
-            readWriteLock.writeLock().unlock();
+            readWriteLock.readLock().unlock();
         }
 
         return hash;
@@ -243,28 +242,32 @@ public class RandomX {
             }
         }
 
-        readWriteLock.writeLock().lock();
+        readWriteLock.readLock().lock();
         try {
-            log.debug("Use seed {}", Hex.toHexString(Arrays.reverse(memory.seed)));
-            Pointer hashPointer = new Memory(RandomXUtils.HASH_SIZE);
-            RandomXJNA.INSTANCE.randomx_calculate_hash(memory.blockVm, bytesToPointer(data), new NativeSize(dataSize), hashPointer);
-            hash = hashPointer.getByteArray(0, RandomXUtils.HASH_SIZE);
+            if (log.isDebugEnabled()) {
+                log.debug("Use seed {}", Hex.toHexString(Arrays.reverse(memory.seed)));
+            }
+            hash = memory.vmPool.calculateHash(data, dataSize);
         } finally {
-            readWriteLock.writeLock().unlock();
+            readWriteLock.readLock().unlock();
         }
 
         return hash;
     }
 
 
-    public Pointer randomXUpdateVm(RandomXMemory randomXMemory, boolean isPoolVm) {
-        if (isPoolVm) {
-            randomXMemory.poolVm = RandomXJNA.INSTANCE.randomx_create_vm(flags, randomXMemory.rxCache, randomXMemory.rxDataset);
-            return randomXMemory.poolVm;
-        } else {
-            randomXMemory.blockVm = RandomXJNA.INSTANCE.randomx_create_vm(flags, randomXMemory.rxCache, randomXMemory.rxDataset);
-            return randomXMemory.blockVm;
+    /**
+     * Replace the vms of a memory slot after its cache and dataset changed, caller holds the slot write lock.
+     */
+    public RandomXVmPool randomXUpdateVmPool(RandomXMemory randomXMemory) {
+        if (randomXMemory.vmPool != null) {
+            randomXMemory.vmPool.close();
         }
+        randomXMemory.vmPool = new RandomXVmPool(flags, randomXMemory.rxCache, randomXMemory.rxDataset, vmPoolSize);
+        if (!randomXMemory.vmPool.init()) {
+            randomXMemory.vmPool = null;
+        }
+        return randomXMemory.vmPool;
     }
 
 
@@ -296,16 +299,9 @@ public class RandomX {
 
             randomXPoolInitDataset(rx_memory.rxCache, rx_memory.rxDataset);
 
-            if (randomXUpdateVm(rx_memory, true) == null) {
-                // update failed
-                log.debug("Update pool vm failed");
-                return;
-            }
-
-            // update finished
-            if (randomXUpdateVm(rx_memory, false) == null) {
+            if (randomXUpdateVmPool(rx_memory) == null) {
                 // update failed
-                log.debug("Update block vm failed");
+                log.debug("Update vm pool failed");
             }
 
             // update finished
@@ -321,11 +317,8 @@ public class RandomX {
             globalMemoryLock[i].writeLock().lock();
             try {
                 RandomXMemory rx_memory = globalMemory[i];
-                if (rx_memory.poolVm != null) {
-                    RandomXJNA.INSTANCE.randomx_destroy_vm(rx_memory.poolVm);
-                }
-                if (rx_memory.blockVm != null) {
-                    RandomXJNA.INSTANCE.randomx_destroy_vm(rx_memory.blockVm);
+                if (rx_memory.vmPool != null) {
+                    rx_memory.vmPool.close();
                 }
                 if (rx_memory.rxCache != null) {
                     RandomXJNA.INSTANCE.randomx_release_cache(rx_memory.rxCache);
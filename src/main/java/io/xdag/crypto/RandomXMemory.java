@@ -40,8 +40,7 @@ public class RandomXMemory {
     protected int isSwitched;
     protected Pointer rxCache;
     protected Pointer rxDataset;
-    protected Pointer poolVm;
-    protected Pointer blockVm;
+    protected RandomXVmPool vmPool;
 
     public RandomXMemory() {
         this.switchTime = -1;
@@ -0,0 +1,143 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.crypto;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+import io.xdag.crypto.randomx.NativeSize;
+import io.xdag.crypto.randomx.RandomXJNA;
+import io.xdag.crypto.randomx.RandomXUtils;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * RandomX VMs bound to one seed's cache and dataset.
+ *
+ * <p>A VM is single threaded but the cache and dataset it reads are not modified while hashing, so each
+ * caller borrows its own VM and many hashes run in parallel. VMs are created lazily up to {@code size}.
+ * Callers hold the read lock of the owning memory slot, {@link #close()} is only called under its write lock.
+ */
+@Slf4j
+public class RandomXVmPool {
+
+    /**
+     * native input/output buffers reused per thread instead of a new Memory per hash
+     */
+    private static final ThreadLocal<Memory> INPUT = new ThreadLocal<>();
+    private static final ThreadLocal<Memory> OUTPUT = ThreadLocal.withInitial(() -> new Memory(RandomXUtils.HASH_SIZE));
+
+    private final int flags;
+    private final Pointer rxCache;
+    private final Pointer rxDataset;
+    private final int size;
+    private final BlockingQueue<Pointer> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger created = new AtomicInteger();
+
+    public RandomXVmPool(int flags, Pointer rxCache, Pointer rxDataset, int size) {
+        this.flags = flags;
+        this.rxCache = rxCache;
+        this.rxDataset = rxDataset;
+        this.size = Math.max(1, size);
+    }
+
+    /**
+     * Create the first VM eagerly so a bad cache/dataset is reported at seed switch time.
+     */
+    public boolean init() {
+        created.incrementAndGet();
+        Pointer vm = createVm();
+        if (vm == null) {
+            created.decrementAndGet();
+            return false;
+        }
+        idle.offer(vm);
+        return true;
+    }
+
+    public byte[] calculateHash(byte[] data, int dataSize) {
+        Pointer vm = borrow();
+        try {
+            Memory input = INPUT.get();
+            if (input == null || input.size() < dataSize) {
+                input = new Memory(Math.max(dataSize, 512));
+                INPUT.set(input);
+            }
+            input.write(0, data, 0, dataSize);
+            Memory output = OUTPUT.get();
+            RandomXJNA.INSTANCE.randomx_calculate_hash(vm, input, new NativeSize(dataSize), output);
+            return output.getByteArray(0, RandomXUtils.HASH_SIZE);
+        } finally {
+            idle.offer(vm);
+        }
+    }
+
+    public int getCreated() {
+        return created.get();
+    }
+
+    /**
+     * Destroy all VMs. No hash may be in flight.
+     */
+    public void close() {
+        Pointer vm;
+        while ((vm = idle.poll()) != null) {
+            RandomXJNA.INSTANCE.randomx_destroy_vm(vm);
+        }
+        created.set(0);
+    }
+
+    private Pointer borrow() {
+        Pointer vm = idle.poll();
+        if (vm != null) {
+            return vm;
+        }
+        if (created.getAndIncrement() < size) {
+            vm = createVm();
+            if (vm != null) {
+                return vm;
+            }
+            if (created.decrementAndGet() == 0) {
+                throw new IllegalStateException("Create randomx vm failed");
+            }
+            log.warn("Create randomx vm failed, waiting for an idle one");
+        } else {
+            created.decrementAndGet();
+        }
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a randomx vm", e);
+        }
+    }
+
+    private Pointer createVm() {
+        return RandomXJNA.INSTANCE.randomx_create_vm(flags, rxCache, rxDataset);
+    }
+}
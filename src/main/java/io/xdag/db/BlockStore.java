@@ -23,6 +23,7 @@
  */
 package io.xdag.db;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import io.xdag.core.*;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.tuweni.bytes.Bytes;
@@ -44,6 +45,9 @@ public interface BlockStore {
     byte BLOCK_HEIGHT = (byte) 0x80;
     byte SNAPSHOT_PRESEED = (byte) 0x90;
     byte TX_HISTORY = (byte) 0xa0;
+    byte BLOCK_INFO_VERSION = (byte) 0xb0;
+    byte OURS_BLOCK_KEY_INDEX = (byte) 0xc0;
+    byte MINED_BLOCK_HEIGHT = (byte) 0xd0;
     String SUM_FILE_NAME = "sums.dat";
 
     void init();
@@ -84,6 +88,8 @@ public interface BlockStore {
 
     Block getRawBlockByHash(Bytes32 hashlow);
 
+    CacheStats getBlockInfoCacheStats();
+
     Bytes getOurBlock(int index);
 
     int getKeyIndexByHash(Bytes32 hashlow);
@@ -92,6 +98,13 @@ public interface BlockStore {
 
     void fetchOurBlocks(Function<Pair<Integer, Block>, Boolean> function);
 
+    // main blocks mined by us, by height
+    void saveMinedBlock(long height, byte[] hashlow);
+
+    void removeMinedBlock(long height);
+
+    List<Block> getMinedBlocks(int count);
+
     // Snapshot Boot
     boolean isSnapshotBoot();
 
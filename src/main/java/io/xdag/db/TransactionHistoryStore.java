@@ -24,6 +24,7 @@
 package io.xdag.db;
 
 import io.xdag.core.TxHistory;
+import io.xdag.core.TxHistoryPage;
 
 import java.util.List;
 
@@ -33,6 +34,12 @@ public interface TransactionHistoryStore {
     boolean batchSaveTxHistory(TxHistory txHistory,int... cacheNum);
     List<TxHistory> listTxHistoryByAddress(String address, int page, Object... parameters);
 
+    /**
+     * Lists one page of history for the address. A null cursor pages by offset with an exact total, any other
+     * cursor (empty for the first page) continues after the last row of the previous page.
+     */
+    TxHistoryPage listTxHistoryPage(String address, int page, String cursor, Object... parameters);
+
     int getTxHistoryCount(String address);
 
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.db;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Page size and time bounds of a history query, parsed from the RPC parameters: none, a page size, a
+ * start and end time, or a start and end time followed by a page size. Times are either
+ * {@code yyyy-MM-dd HH:mm:ss} or milliseconds.
+ */
+@Getter
+public class TxHistoryQuery {
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    /**
+     * Cursor pages stop counting past this many rows and report an approximate total.
+     */
+    public static final int COUNT_LIMIT = 100_000;
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final int pageSize;
+    private final long start;
+    private final long end;
+    private final boolean timeBounded;
+
+    private TxHistoryQuery(int pageSize, long start, long end, boolean timeBounded) {
+        this.pageSize = pageSize;
+        this.start = start;
+        this.end = end;
+        this.timeBounded = timeBounded;
+    }
+
+    public static TxHistoryQuery of(long pageSizeLimit, Object... parameters) {
+        int pageSize = DEFAULT_PAGE_SIZE;
+        long start = 0;
+        long end = System.currentTimeMillis();
+        switch (parameters.length) {
+            case 0 -> {
+            }
+            case 1 -> pageSize = parsePageSize(parameters[0], pageSizeLimit);
+            case 2 -> {
+                start = parseTime(parameters[0]);
+                end = parseTime(parameters[1]);
+            }
+            case 3 -> {
+                start = parseTime(parameters[0]);
+                end = parseTime(parameters[1]);
+                pageSize = parsePageSize(parameters[2], pageSizeLimit);
+            }
+            default -> {
+            }
+        }
+        return new TxHistoryQuery(pageSize, start, end, parameters.length >= 2);
+    }
+
+    public static int totalPage(long totalCount, int pageSize) {
+        return totalCount < pageSize ? 1 : (int) Math.ceil((double) totalCount / pageSize);
+    }
+
+    private static int parsePageSize(Object parameter, long pageSizeLimit) {
+        int pageSize = Integer.parseInt(parameter.toString());
+        return (pageSize > 0 && pageSize <= pageSizeLimit) ? pageSize : DEFAULT_PAGE_SIZE;
+    }
+
+    private static long parseTime(Object parameter) {
+        try {
+            return LocalDateTime.parse(parameter.toString(), TIME_FORMATTER)
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return Long.parseLong(parameter.toString());
+        }
+    }
+}
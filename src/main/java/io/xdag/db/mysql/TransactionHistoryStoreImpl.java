@@ -26,21 +26,23 @@ package io.xdag.db.mysql;
 import com.google.common.collect.Lists;
 import io.xdag.core.*;
 import io.xdag.db.TransactionHistoryStore;
+import io.xdag.db.TxHistoryQuery;
 import io.xdag.utils.BasicUtils;
 import io.xdag.utils.DruidUtils;
 import io.xdag.utils.XdagTime;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.Base64;
 import java.util.List;
 
 import static io.xdag.config.Constants.MIN_GAS;
+import static io.xdag.db.TxHistoryQuery.COUNT_LIMIT;
+import static io.xdag.db.TxHistoryQuery.totalPage;
 import static io.xdag.core.XdagField.FieldType.XDAG_FIELD_INPUT;
 import static io.xdag.utils.BasicUtils.hash2Address;
 import static io.xdag.utils.BasicUtils.hash2byte;
@@ -50,31 +52,54 @@ import static io.xdag.utils.WalletUtils.toBase58;
 @Slf4j
 public class TransactionHistoryStoreImpl implements TransactionHistoryStore {
 
-    private static final String SQL_INSERT = "insert into t_transaction_history(faddress,faddresstype,fhash,famount," +
+    static final String SQL_INSERT = "insert into t_transaction_history(faddress,faddresstype,fhash,famount," +
             "ftype,fremark,ftime) values(?,?,?,?,?,?,?)";
 
-    private static final String SQL_QUERY_TXHISTORY_BY_ADDRESS_WITH_TIME = "select faddress,faddresstype,fhash," +
-            "famount,ftype,fremark,ftime from t_transaction_history where faddress= ? and ftime >= ? and ftime <= ? order by ftime desc limit ?,?";
+    private static final String SQL_SELECT_TXHISTORY = "select faddress,faddresstype,fhash,famount,ftype,fremark," +
+            "ftime,fid from t_transaction_history where faddress= ? and ftime >= ? and ftime <= ? ";
+
+    private static final String SQL_QUERY_TXHISTORY_BY_ADDRESS_WITH_TIME = SQL_SELECT_TXHISTORY +
+            "order by ftime desc, fid desc limit ?,?";
+
+    // keyset pages walk the (faddress, ftime, fid) index instead of skipping offset rows
+    private static final String SQL_QUERY_TXHISTORY_FIRST_PAGE = SQL_SELECT_TXHISTORY +
+            "order by ftime desc, fid desc limit ?";
+
+    private static final String SQL_QUERY_TXHISTORY_AFTER_CURSOR = SQL_SELECT_TXHISTORY +
+            "and (ftime < ? or (ftime = ? and fid < ?)) order by ftime desc, fid desc limit ?";
+
+    private static final String SQL_QUERY_TXHISTORY_COUNT_CAPPED = "select count(*) from (select 1 from " +
+            "t_transaction_history where faddress=? and ftime >=? and ftime <=? limit ?) t";
 
     private static final String SQL_QUERY_TXHISTORY_COUNT = "select count(*) from t_transaction_history where faddress=?";
 
     private static final String SQL_QUERY_TXHISTORY_COUNT_WITH_TIME = "select count(*) from t_transaction_history where faddress=? and ftime >=? and ftime <=?";
     private static final int BLOCK_ADDRESS_FLAG = 0;
     private static final int WALLET_ADDRESS_FLAG = 1;
-    private static final int DEFAULT_PAGE_SIZE = 100;
     private static final int DEFAULT_CACHE_SIZE = 50000;
     private final long TX_PAGE_SIZE_LIMIT;
+    private final TxHistoryWriter writer;
     private Connection connBatch = null;
     private PreparedStatement pstmtBatch = null;
     private int count = 0;
-    public static int totalPage = 1;
 
     public TransactionHistoryStoreImpl(long txPageSizeLimit) {
+        this(txPageSizeLimit, null);
+    }
+
+    /**
+     * With a writer, saves are queued and written asynchronously instead of opening a connection per insert.
+     */
+    public TransactionHistoryStoreImpl(long txPageSizeLimit, TxHistoryWriter writer) {
         this.TX_PAGE_SIZE_LIMIT = txPageSizeLimit;
+        this.writer = writer;
     }
 
     @Override
     public boolean saveTxHistory(TxHistory txHistory) {
+        if (writer != null) {
+            return writer.offer(toRow(txHistory));
+        }
         Connection conn = null;
         PreparedStatement pstmt = null;
 
@@ -83,18 +108,7 @@ public class TransactionHistoryStoreImpl implements TransactionHistoryStore {
             conn = DruidUtils.getConnection();
             if (conn != null) {
                 pstmt = conn.prepareStatement(SQL_INSERT);
-
-                Address address = txHistory.getAddress();
-                String addr = address.getIsAddress() ? toBase58(hash2byte(address.getAddress())) : hash2Address(address.getAddress());
-                pstmt.setString(1, addr);
-                pstmt.setInt(2, address.getIsAddress() ? WALLET_ADDRESS_FLAG : BLOCK_ADDRESS_FLAG);
-                pstmt.setString(3, txHistory.getHash());
-                pstmt.setBigDecimal(4, address.getType().equals(XDAG_FIELD_INPUT) ? address.getAmount().subtract(MIN_GAS).toDecimal(9, XUnit.XDAG) :
-                        address.getAmount().toDecimal(9, XUnit.XDAG));
-                pstmt.setInt(5, address.getType().asByte());
-                pstmt.setString(6, txHistory.getRemark() != null ? txHistory.getRemark().trim() : "");
-                pstmt.setTimestamp(7,
-                        new java.sql.Timestamp(XdagTime.xdagTimestampToMs(txHistory.getTimestamp())));
+                toRow(txHistory).bind(pstmt);
                 result = pstmt.executeUpdate() == 1;
             }
         } catch (Exception e) {
@@ -107,6 +121,10 @@ public class TransactionHistoryStoreImpl implements TransactionHistoryStore {
 
     @Override
     public boolean batchSaveTxHistory(TxHistory txHistory, int... cacheNum) {
+        if (writer != null) {
+            // the writer batches on its own, a null history marks the end of a batch and waits for it
+            return txHistory == null ? writer.flush() : writer.offer(toRow(txHistory));
+        }
         boolean result = false;
         try {
             if (connBatch == null) {
@@ -121,17 +139,7 @@ public class TransactionHistoryStoreImpl implements TransactionHistoryStore {
                 }
             }
             if (txHistory != null) {
-                Address address = txHistory.getAddress();
-                String addr = address.getIsAddress() ? toBase58(hash2byte(address.getAddress())) : hash2Address(address.getAddress());
-                pstmtBatch.setString(1, addr);
-                pstmtBatch.setInt(2, address.getIsAddress() ? WALLET_ADDRESS_FLAG : BLOCK_ADDRESS_FLAG);
-                pstmtBatch.setString(3, txHistory.getHash());
-                pstmtBatch.setBigDecimal(4, address.getType().equals(XDAG_FIELD_INPUT) ? address.getAmount().subtract(MIN_GAS).toDecimal(9, XUnit.XDAG) :
-                        address.getAmount().toDecimal(9, XUnit.XDAG));
-                pstmtBatch.setInt(5, address.getType().asByte());
-                pstmtBatch.setString(6, txHistory.getRemark() != null ? txHistory.getRemark().trim() : "");
-                pstmtBatch.setTimestamp(7,
-                        new java.sql.Timestamp(XdagTime.xdagTimestampToMs(txHistory.getTimestamp())));
+                toRow(txHistory).bind(pstmtBatch);
                 pstmtBatch.addBatch();
                 count++;
             }
@@ -166,89 +174,104 @@ public class TransactionHistoryStoreImpl implements TransactionHistoryStore {
 
     @Override
     public List<TxHistory> listTxHistoryByAddress(String address, int page, Object... parameters) {
+        return listTxHistoryPage(address, page, null, parameters).getTxHistories();
+    }
+
+    @Override
+    public TxHistoryPage listTxHistoryPage(String address, int page, String cursor, Object... parameters) {
+        TxHistoryQuery query = TxHistoryQuery.of(TX_PAGE_SIZE_LIMIT, parameters);
+        int pageSize = query.getPageSize();
+        long start = query.getStart();
+        long end = query.getEnd();
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
-        List<TxHistory> txHistoryList = Lists.newArrayList();
-        int totalcount = 0;
-        int PAGE_SIZE = DEFAULT_PAGE_SIZE;
-        long start = new Date(0).getTime();
-        long end = System.currentTimeMillis();
-        switch (parameters.length) {
-            case 0 -> {
-            }
-            case 1 -> {
-                int pageSize = Integer.parseInt(parameters[0].toString());
-                PAGE_SIZE = (pageSize > 0 && pageSize <= TX_PAGE_SIZE_LIMIT) ? pageSize : PAGE_SIZE;
-            }
-            case 2 -> {
-                try {
-                    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-                    start = sdf.parse(parameters[0].toString()).getTime();
-                    end = sdf.parse(parameters[1].toString()).getTime();
-                } catch (ParseException e) {
-                    start = Long.parseLong(parameters[0].toString());
-                    end = Long.parseLong(parameters[1].toString());
-                }
-            }
-            case 3 -> {
-                try {
-                    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-                    start = sdf.parse(parameters[0].toString()).getTime();
-                    end = sdf.parse(parameters[1].toString()).getTime();
-                } catch (ParseException e) {
-                    start = Long.parseLong(parameters[0].toString());
-                    end = Long.parseLong(parameters[1].toString());
-                }
-                int page_size = Integer.parseInt(parameters[2].toString());
-                PAGE_SIZE = (page_size > 0 && page_size <= TX_PAGE_SIZE_LIMIT) ? page_size : PAGE_SIZE;
-            }
-            default -> {
-            }
-        }
         try {
             conn = DruidUtils.getConnection();
-            if (conn != null) {
+            if (conn == null) {
+                return TxHistoryPage.EMPTY;
+            }
+            if (cursor == null) {
                 pstmt = conn.prepareStatement(SQL_QUERY_TXHISTORY_COUNT_WITH_TIME);
                 pstmt.setString(1, address);
                 pstmt.setTimestamp(2, new java.sql.Timestamp(start));
                 pstmt.setTimestamp(3, new java.sql.Timestamp(end));
                 rs = pstmt.executeQuery();
-                if (rs.next()) {
-                    totalcount = rs.getInt(1);
-                }
-                totalPage = totalcount < PAGE_SIZE ? 1 : (int) Math.ceil((double) totalcount / PAGE_SIZE);
+                int totalCount = rs.next() ? rs.getInt(1) : 0;
+                rs.close();
+                pstmt.close();
 
                 pstmt = conn.prepareStatement(SQL_QUERY_TXHISTORY_BY_ADDRESS_WITH_TIME);
                 pstmt.setString(1, address);
                 pstmt.setTimestamp(2, new java.sql.Timestamp(start));
                 pstmt.setTimestamp(3, new java.sql.Timestamp(end));
-                pstmt.setInt(4, (page - 1) * PAGE_SIZE);
-                pstmt.setInt(5, PAGE_SIZE);
+                pstmt.setInt(4, (page - 1) * pageSize);
+                pstmt.setInt(5, pageSize);
                 rs = pstmt.executeQuery();
+                List<TxHistory> txHistoryList = Lists.newArrayList();
                 while (rs.next()) {
-                    TxHistory txHistory = new TxHistory();
-                    // Bytes32 addr = BasicUtils.address2Hash(rs.getString(1));
-                    String hash = rs.getString(3);
-                    txHistory.setHash(hash);
-                    XAmount amount = XAmount.of(rs.getBigDecimal(4), XUnit.XDAG);
-                    int fType = rs.getInt(5);
-                    Address addrObj =
-                            new Address(checkAddress(hash) ? BasicUtils.pubAddress2Hash(hash) :
-                                    BasicUtils.address2Hash(hash),
-                                    XdagField.FieldType.fromByte((byte) fType), amount, checkAddress(hash));
-                    txHistory.setAddress(addrObj);
-                    txHistory.setRemark(rs.getString(6));
-                    txHistory.setTimestamp(rs.getTimestamp(7).getTime());
-                    txHistoryList.add(txHistory);
+                    txHistoryList.add(readTxHistory(rs));
                 }
+                return new TxHistoryPage(txHistoryList, totalPage(totalCount, pageSize), null, false);
             }
+
+            Cursor from = Cursor.decode(cursor);
+            int totalPage;
+            boolean approximate;
+            if (from == null) {
+                // first page, the total is counted once and then carried in the cursor
+                pstmt = conn.prepareStatement(SQL_QUERY_TXHISTORY_COUNT_CAPPED);
+                pstmt.setString(1, address);
+                pstmt.setTimestamp(2, new java.sql.Timestamp(start));
+                pstmt.setTimestamp(3, new java.sql.Timestamp(end));
+                pstmt.setInt(4, COUNT_LIMIT + 1);
+                rs = pstmt.executeQuery();
+                int totalCount = rs.next() ? rs.getInt(1) : 0;
+                rs.close();
+                pstmt.close();
+                approximate = totalCount > COUNT_LIMIT;
+                totalPage = totalPage(Math.min(totalCount, COUNT_LIMIT), pageSize);
+            } else {
+                totalPage = from.totalPage;
+                approximate = from.approximate;
+            }
+
+            pstmt = conn.prepareStatement(from == null ? SQL_QUERY_TXHISTORY_FIRST_PAGE : SQL_QUERY_TXHISTORY_AFTER_CURSOR);
+            pstmt.setString(1, address);
+            pstmt.setTimestamp(2, new java.sql.Timestamp(start));
+            pstmt.setTimestamp(3, new java.sql.Timestamp(end));
+            int index = 4;
+            if (from != null) {
+                pstmt.setTimestamp(index++, new java.sql.Timestamp(from.time));
+                pstmt.setTimestamp(index++, new java.sql.Timestamp(from.time));
+                pstmt.setLong(index++, from.id);
+            }
+            // one extra row tells whether a next page exists
+            pstmt.setInt(index, pageSize + 1);
+            rs = pstmt.executeQuery();
+            List<TxHistory> txHistoryList = Lists.newArrayList();
+            long lastTime = 0;
+            long lastId = 0;
+            boolean hasMore = false;
+            while (rs.next()) {
+                if (txHistoryList.size() == pageSize) {
+                    hasMore = true;
+                    break;
+                }
+                txHistoryList.add(readTxHistory(rs));
+                lastTime = rs.getTimestamp(7).getTime();
+                lastId = rs.getLong(8);
+            }
+            String next = hasMore ? new Cursor(lastTime, lastId, totalPage, approximate).encode() : null;
+            return new TxHistoryPage(txHistoryList, totalPage, next, approximate);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid tx history cursor: {}", cursor);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
         } finally {
             DruidUtils.close(conn, pstmt, rs);
         }
-        return txHistoryList;
+        return TxHistoryPage.EMPTY;
     }
 
     @Override
@@ -276,4 +299,74 @@ public class TransactionHistoryStoreImpl implements TransactionHistoryStore {
         return count;
     }
 
+    private static TxHistory readTxHistory(ResultSet rs) throws SQLException {
+        TxHistory txHistory = new TxHistory();
+        String hash = rs.getString(3);
+        txHistory.setHash(hash);
+        XAmount amount = XAmount.of(rs.getBigDecimal(4), XUnit.XDAG);
+        int fType = rs.getInt(5);
+        Address addrObj =
+                new Address(checkAddress(hash) ? BasicUtils.pubAddress2Hash(hash) :
+                        BasicUtils.address2Hash(hash),
+                        XdagField.FieldType.fromByte((byte) fType), amount, checkAddress(hash));
+        txHistory.setAddress(addrObj);
+        txHistory.setRemark(rs.getString(6));
+        txHistory.setTimestamp(rs.getTimestamp(7).getTime());
+        return txHistory;
+    }
+
+    /**
+     * Position after the last row of a keyset page. The total of the first page is carried along so later
+     * pages never count again.
+     */
+    static final class Cursor {
+        private static final int SIZE = 8 + 8 + 4 + 1;
+
+        final long time;
+        final long id;
+        final int totalPage;
+        final boolean approximate;
+
+        Cursor(long time, long id, int totalPage, boolean approximate) {
+            this.time = time;
+            this.id = id;
+            this.totalPage = totalPage;
+            this.approximate = approximate;
+        }
+
+        String encode() {
+            ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+            buffer.putLong(time).putLong(id).putInt(totalPage).put((byte) (approximate ? 1 : 0));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+        }
+
+        /**
+         * Returns null for an empty token, i.e. the first page.
+         */
+        static Cursor decode(String token) {
+            if (token.isEmpty()) {
+                return null;
+            }
+            byte[] bytes = Base64.getUrlDecoder().decode(token);
+            if (bytes.length != SIZE) {
+                throw new IllegalArgumentException("Invalid cursor length " + bytes.length);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new Cursor(buffer.getLong(), buffer.getLong(), buffer.getInt(), buffer.get() == 1);
+        }
+    }
+
+    private static TxHistoryWriter.Row toRow(TxHistory txHistory) {
+        Address address = txHistory.getAddress();
+        String addr = address.getIsAddress() ? toBase58(hash2byte(address.getAddress())) : hash2Address(address.getAddress());
+        return new TxHistoryWriter.Row(addr,
+                address.getIsAddress() ? WALLET_ADDRESS_FLAG : BLOCK_ADDRESS_FLAG,
+                txHistory.getHash(),
+                address.getType().equals(XDAG_FIELD_INPUT) ? address.getAmount().subtract(MIN_GAS).toDecimal(9, XUnit.XDAG) :
+                        address.getAmount().toDecimal(9, XUnit.XDAG),
+                address.getType().asByte(),
+                txHistory.getRemark() != null ? txHistory.getRemark().trim() : "",
+                XdagTime.xdagTimestampToMs(txHistory.getTimestamp()));
+    }
+
 }
@@ -0,0 +1,422 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.db.mysql;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Writes transaction history rows to MySQL off the block import path.
+ * <p>
+ * Rows are queued in memory and a single writer thread inserts them with JDBC batches, flushing when
+ * {@code batchSize} rows are pending or {@code flushInterval} has elapsed. When the database cannot be
+ * reached (or the queue is full) rows are appended to a local spool file, which is replayed before any
+ * new rows once the database is back.
+ */
+@Slf4j
+public class TxHistoryWriter {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 100_000;
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+    public static final long DEFAULT_RETRY_INTERVAL = 5000;
+
+    private static final long FLUSH_TIMEOUT = 60_000;
+    private static final Object STOP = new Object();
+
+    private final Supplier<Connection> connectionSupplier;
+    private final Path spool;
+    private final Path replay;
+    private final int batchSize;
+    private final long flushInterval;
+    private final long retryInterval;
+    private final BlockingQueue<Object> queue;
+    private final Object spoolLock = new Object();
+    private final Thread thread;
+
+    private volatile boolean running = true;
+    private long nextRetry = 0;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong spooled = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong totalFlushMillis = new AtomicLong();
+    private volatile long lastFlushMillis = 0;
+
+    public TxHistoryWriter(Supplier<Connection> connectionSupplier, Path spool) {
+        this(connectionSupplier, spool, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL,
+                DEFAULT_RETRY_INTERVAL);
+    }
+
+    public TxHistoryWriter(Supplier<Connection> connectionSupplier, Path spool, int queueCapacity, int batchSize,
+            long flushInterval, long retryInterval) {
+        this.connectionSupplier = connectionSupplier;
+        this.spool = spool;
+        this.replay = spool.resolveSibling(spool.getFileName() + ".replay");
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.retryInterval = retryInterval;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.thread = new Thread(this::run, "txhistory-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues a row without blocking. A full queue spills the row straight to the spool file.
+     */
+    public boolean offer(Row row) {
+        if (!running) {
+            return false;
+        }
+        if (queue.offer(row)) {
+            return true;
+        }
+        log.warn("Tx history queue is full, spooling row {}", row.hash);
+        return spool(List.of(row));
+    }
+
+    /**
+     * Blocks until every row queued before this call is either in the database or in the spool file.
+     */
+    public boolean flush() {
+        if (!running) {
+            return false;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            if (!queue.offer(latch, FLUSH_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            return latch.await(FLUSH_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Stops accepting rows, drains the queue and waits for the writer thread to finish.
+     */
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            queue.put(STOP);
+            thread.join(FLUSH_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Tx history writer closed, written:{}, spooled:{}, replayed:{}", written.get(), spooled.get(),
+                replayed.get());
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getLastFlushMillis() {
+        return lastFlushMillis;
+    }
+
+    public long getAverageFlushMillis() {
+        long n = flushes.get();
+        return n == 0 ? 0 : totalFlushMillis.get() / n;
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getSpooled() {
+        return spooled.get();
+    }
+
+    public long getReplayed() {
+        return replayed.get();
+    }
+
+    public boolean hasSpool() {
+        return nonEmpty(spool) || nonEmpty(replay);
+    }
+
+    private void run() {
+        List<Row> batch = new ArrayList<>(batchSize);
+        List<CountDownLatch> waiters = new ArrayList<>();
+        boolean stop = false;
+        while (!stop) {
+            long deadline = System.currentTimeMillis() + flushInterval;
+            try {
+                while (batch.size() < batchSize && waiters.isEmpty()) {
+                    long wait = deadline - System.currentTimeMillis();
+                    Object o = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll();
+                    if (o == null) {
+                        break;
+                    } else if (o == STOP) {
+                        stop = true;
+                        break;
+                    } else if (o instanceof CountDownLatch latch) {
+                        waiters.add(latch);
+                    } else {
+                        batch.add((Row) o);
+                    }
+                }
+            } catch (InterruptedException e) {
+                stop = true;
+            }
+            if (stop) {
+                // drain whatever is left so close() never loses rows
+                List<Object> rest = new ArrayList<>();
+                queue.drainTo(rest);
+                for (Object o : rest) {
+                    if (o instanceof Row row) {
+                        batch.add(row);
+                    } else if (o instanceof CountDownLatch latch) {
+                        waiters.add(latch);
+                    }
+                }
+            }
+            try {
+                write(batch);
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
+            batch.clear();
+            waiters.forEach(CountDownLatch::countDown);
+            waiters.clear();
+        }
+    }
+
+    private void write(List<Row> batch) {
+        long now = System.currentTimeMillis();
+        if (now < nextRetry) {
+            spool(batch);
+            return;
+        }
+        if (hasSpool() && !replaySpool()) {
+            nextRetry = now + retryInterval;
+            spool(batch);
+            return;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        if (insert(batch)) {
+            long cost = System.currentTimeMillis() - start;
+            lastFlushMillis = cost;
+            totalFlushMillis.addAndGet(cost);
+            flushes.incrementAndGet();
+            written.addAndGet(batch.size());
+        } else {
+            nextRetry = now + retryInterval;
+            spool(batch);
+        }
+    }
+
+    private boolean insert(List<Row> rows) {
+        Connection conn = null;
+        try {
+            conn = connectionSupplier.get();
+            if (conn == null) {
+                return false;
+            }
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(TransactionHistoryStoreImpl.SQL_INSERT)) {
+                for (Row row : rows) {
+                    row.bind(pstmt);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            return true;
+        } catch (Exception e) {
+            log.warn("Tx history batch insert failed: {}", e.getMessage());
+            return false;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    log.error(e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private boolean spool(List<Row> rows) {
+        if (rows.isEmpty()) {
+            return true;
+        }
+        synchronized (spoolLock) {
+            try (BufferedWriter writer = Files.newBufferedWriter(spool, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (Row row : rows) {
+                    writer.write(row.encode());
+                    writer.newLine();
+                }
+            } catch (IOException e) {
+                log.error("Tx history spool write failed, {} rows lost", rows.size(), e);
+                return false;
+            }
+        }
+        spooled.addAndGet(rows.size());
+        return true;
+    }
+
+    /**
+     * Moves the spool aside and inserts it chunk by chunk. On failure the rows not yet committed are written
+     * back to the replay file, so a later attempt (or a restart) resumes where this one stopped.
+     */
+    private boolean replaySpool() {
+        try {
+            if (!nonEmpty(replay)) {
+                synchronized (spoolLock) {
+                    if (!nonEmpty(spool)) {
+                        return true;
+                    }
+                    Files.move(spool, replay, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            List<String> lines = Files.readAllLines(replay, StandardCharsets.UTF_8);
+            for (int i = 0; i < lines.size(); i += batchSize) {
+                List<String> chunk = lines.subList(i, Math.min(i + batchSize, lines.size()));
+                List<Row> rows = new ArrayList<>(chunk.size());
+                for (String line : chunk) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        rows.add(Row.decode(line));
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Skip malformed tx history spool line: {}", line);
+                    }
+                }
+                if (!insert(rows)) {
+                    Path tmp = replay.resolveSibling(replay.getFileName() + ".tmp");
+                    Files.write(tmp, lines.subList(i, lines.size()), StandardCharsets.UTF_8);
+                    Files.move(tmp, replay, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    return false;
+                }
+                replayed.addAndGet(rows.size());
+                written.addAndGet(rows.size());
+            }
+            Files.delete(replay);
+            log.info("Tx history spool replayed, {} rows", lines.size());
+            return !nonEmpty(spool) || replaySpool();
+        } catch (IOException e) {
+            log.error("Tx history spool replay failed", e);
+            return false;
+        }
+    }
+
+    private static boolean nonEmpty(Path path) {
+        try {
+            return Files.exists(path) && Files.size(path) > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * One row of t_transaction_history, already converted to column values.
+     */
+    public static final class Row {
+        final String address;
+        final int addressType;
+        final String hash;
+        final BigDecimal amount;
+        final int type;
+        final String remark;
+        final long time;
+
+        public Row(String address, int addressType, String hash, BigDecimal amount, int type, String remark,
+                long time) {
+            this.address = address;
+            this.addressType = addressType;
+            this.hash = hash;
+            this.amount = amount;
+            this.type = type;
+            this.remark = remark == null ? "" : remark;
+            this.time = time;
+        }
+
+        void bind(PreparedStatement pstmt) throws SQLException {
+            pstmt.setString(1, address);
+            pstmt.setInt(2, addressType);
+            pstmt.setString(3, hash);
+            pstmt.setBigDecimal(4, amount);
+            pstmt.setInt(5, type);
+            pstmt.setString(6, remark);
+            pstmt.setTimestamp(7, new Timestamp(time));
+        }
+
+        /**
+         * Tab separated spool line, the free-form remark is base64 encoded.
+         */
+        String encode() {
+            return address + '\t' + addressType + '\t' + hash + '\t' + amount.toPlainString() + '\t' + type + '\t'
+                    + Base64.getEncoder().encodeToString(remark.getBytes(StandardCharsets.UTF_8)) + '\t' + time;
+        }
+
+        static Row decode(String line) {
+            String[] f = line.split("\t", -1);
+            if (f.length != 7) {
+                throw new IllegalArgumentException("Invalid tx history spool line: " + line);
+            }
+            return new Row(f[0], Integer.parseInt(f[1]), f[2], new BigDecimal(f[3]), Integer.parseInt(f[4]),
+                    new String(Base64.getDecoder().decode(f[5]), StandardCharsets.UTF_8), Long.parseLong(f[6]));
+        }
+    }
+}
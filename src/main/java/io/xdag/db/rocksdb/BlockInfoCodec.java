@@ -0,0 +1,203 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.db.rocksdb;
+
+import io.xdag.core.BlockInfo;
+import io.xdag.core.SnapshotInfo;
+import io.xdag.core.XAmount;
+import io.xdag.db.execption.DeserializationException;
+import io.xdag.db.execption.SerializationException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Versioned binary layout of {@link BlockInfo} as stored in the index, readable without Kryo.
+ * <p>
+ * Every scalar and hash lives at a fixed offset, variable sized fields follow the fixed part:
+ *
+ * <pre>
+ * 0   magic        1
+ * 1   version      1
+ * 2   flags        4
+ * 6   presence     1   bit set of the nullable fields below
+ * 7   type         8
+ * 15  height       8
+ * 23  timestamp    8
+ * 31  amount       8   nano xdag
+ * 39  fee          8   nano xdag
+ * 47  ref          32
+ * 79  maxDiffLink  32
+ * 111 hash         32
+ * 143 hashlow      32
+ * 175 difficulty   1 + n
+ *     remark       2 + n
+ *     snapshotInfo 1 + 4 + n
+ * </pre>
+ */
+public final class BlockInfoCodec {
+
+    public static final byte MAGIC = (byte) 0xb1;
+    public static final byte VERSION = 1;
+
+    private static final int FLAGS_OFFSET = 2;
+    private static final int PRESENCE_OFFSET = 6;
+    private static final int FIXED_SIZE = 175;
+    private static final int HASH_SIZE = 32;
+
+    private static final int HAS_REF = 1;
+    private static final int HAS_MAX_DIFF_LINK = 1 << 1;
+    private static final int HAS_HASH = 1 << 2;
+    private static final int HAS_HASHLOW = 1 << 3;
+    private static final int HAS_DIFFICULTY = 1 << 4;
+    private static final int HAS_REMARK = 1 << 5;
+    private static final int IS_SNAPSHOT = 1 << 6;
+    private static final int HAS_SNAPSHOT_INFO = 1 << 7;
+
+    private BlockInfoCodec() {
+    }
+
+    /**
+     * Whether the value was written by this codec. Legacy values are Kryo {@code writeObject} output with no
+     * header. Their first byte belongs to the first serialized field, a null marker or small registration id,
+     * and is never {@link #MAGIC}.
+     */
+    public static boolean isEncoded(byte[] value) {
+        return value != null && value.length >= FIXED_SIZE && value[0] == MAGIC;
+    }
+
+    public static byte[] encode(BlockInfo info) throws SerializationException {
+        byte[] difficulty = info.getDifficulty() == null ? null : info.getDifficulty().toByteArray();
+        byte[] remark = info.getRemark();
+        SnapshotInfo snapshotInfo = info.getSnapshotInfo();
+        byte[] snapshotData = snapshotInfo == null || snapshotInfo.getData() == null ? new byte[0] : snapshotInfo.getData();
+        if (difficulty != null && difficulty.length > 0xff) {
+            throw new SerializationException("difficulty too large: " + difficulty.length + " bytes", null);
+        }
+        if (remark != null && remark.length > 0xffff) {
+            throw new SerializationException("remark too large: " + remark.length + " bytes", null);
+        }
+
+        int size = FIXED_SIZE
+                + (difficulty == null ? 0 : 1 + difficulty.length)
+                + (remark == null ? 0 : 2 + remark.length)
+                + (snapshotInfo == null ? 0 : 1 + 4 + snapshotData.length);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        int presence = (info.getRef() != null ? HAS_REF : 0)
+                | (info.getMaxDiffLink() != null ? HAS_MAX_DIFF_LINK : 0)
+                | (info.getHash() != null ? HAS_HASH : 0)
+                | (info.getHashlow() != null ? HAS_HASHLOW : 0)
+                | (difficulty != null ? HAS_DIFFICULTY : 0)
+                | (remark != null ? HAS_REMARK : 0)
+                | (info.isSnapshot() ? IS_SNAPSHOT : 0)
+                | (snapshotInfo != null ? HAS_SNAPSHOT_INFO : 0);
+        buffer.put(MAGIC)
+                .put(VERSION)
+                .putInt(info.getFlags())
+                .put((byte) presence)
+                .putLong(info.getType())
+                .putLong(info.getHeight())
+                .putLong(info.getTimestamp())
+                .putLong(info.getAmount() == null ? 0 : info.getAmount().toLong())
+                .putLong(info.getFee() == null ? 0 : info.getFee().toLong());
+        putHash(buffer, info.getRef());
+        putHash(buffer, info.getMaxDiffLink());
+        putHash(buffer, info.getHash());
+        putHash(buffer, info.getHashlow());
+        if (difficulty != null) {
+            buffer.put((byte) difficulty.length).put(difficulty);
+        }
+        if (remark != null) {
+            buffer.putShort((short) remark.length).put(remark);
+        }
+        if (snapshotInfo != null) {
+            buffer.put((byte) (snapshotInfo.getType() ? 1 : 0)).putInt(snapshotData.length).put(snapshotData);
+        }
+        return buffer.array();
+    }
+
+    public static BlockInfo decode(byte[] value) throws DeserializationException {
+        if (!isEncoded(value)) {
+            throw new DeserializationException("not a block info value", null);
+        }
+        if (value[1] != VERSION) {
+            throw new DeserializationException("unsupported block info version " + value[1], null);
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(value, FLAGS_OFFSET, value.length - FLAGS_OFFSET);
+            BlockInfo info = new BlockInfo();
+            info.setFlags(buffer.getInt());
+            int presence = buffer.get() & 0xff;
+            info.setType(buffer.getLong());
+            info.setHeight(buffer.getLong());
+            info.setTimestamp(buffer.getLong());
+            info.setAmount(XAmount.of(buffer.getLong()));
+            info.setFee(XAmount.of(buffer.getLong()));
+            info.setRef(getHash(buffer, (presence & HAS_REF) != 0));
+            info.setMaxDiffLink(getHash(buffer, (presence & HAS_MAX_DIFF_LINK) != 0));
+            info.setHash(getHash(buffer, (presence & HAS_HASH) != 0));
+            info.setHashlow(getHash(buffer, (presence & HAS_HASHLOW) != 0));
+            if ((presence & HAS_DIFFICULTY) != 0) {
+                byte[] difficulty = new byte[buffer.get() & 0xff];
+                buffer.get(difficulty);
+                info.setDifficulty(new BigInteger(difficulty));
+            }
+            if ((presence & HAS_REMARK) != 0) {
+                byte[] remark = new byte[buffer.getShort() & 0xffff];
+                buffer.get(remark);
+                info.setRemark(remark);
+            }
+            info.setSnapshot((presence & IS_SNAPSHOT) != 0);
+            if ((presence & HAS_SNAPSHOT_INFO) != 0) {
+                boolean type = buffer.get() != 0;
+                byte[] data = new byte[buffer.getInt()];
+                buffer.get(data);
+                info.setSnapshotInfo(new SnapshotInfo(type, data));
+            }
+            return info;
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new DeserializationException("truncated block info value", e);
+        }
+    }
+
+    private static void putHash(ByteBuffer buffer, byte[] hash) throws SerializationException {
+        if (hash == null) {
+            buffer.position(buffer.position() + HASH_SIZE);
+        } else if (hash.length != HASH_SIZE) {
+            throw new SerializationException("expected " + HASH_SIZE + " bytes, got " + hash.length, null);
+        } else {
+            buffer.put(hash);
+        }
+    }
+
+    private static byte[] getHash(ByteBuffer buffer, boolean present) {
+        if (!present) {
+            buffer.position(buffer.position() + HASH_SIZE);
+            return null;
+        }
+        byte[] hash = new byte[HASH_SIZE];
+        buffer.get(hash);
+        return hash;
+    }
+}
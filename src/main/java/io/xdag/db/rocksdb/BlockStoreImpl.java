@@ -24,11 +24,9 @@
 
 package io.xdag.db.rocksdb;
 
-import com.esotericsoftware.kryo.Kryo;
-import com.esotericsoftware.kryo.KryoException;
-import com.esotericsoftware.kryo.io.Input;
-import com.esotericsoftware.kryo.io.Output;
-import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.google.common.collect.Lists;
 import io.xdag.core.*;
 import io.xdag.db.BlockStore;
@@ -46,26 +44,48 @@ import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.bytes.MutableBytes;
 import org.apache.tuweni.units.bigints.UInt64;
 import org.bouncycastle.util.encoders.Hex;
-import org.objenesis.strategy.StdInstantiatorStrategy;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.math.BigInteger;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
-import static io.xdag.utils.BytesUtils.equalBytes;
+import static io.xdag.config.Constants.BI_MAIN;
+import static io.xdag.config.Constants.BI_OURS;
 
 @Slf4j
 public class BlockStoreImpl implements BlockStore {
 
-    private final Kryo kryo;
+    /**
+     * default weight limit of the BlockInfo cache, in bytes
+     */
+    public static final long DEFAULT_BLOCK_INFO_CACHE_SIZE = 64L * 1024 * 1024;
+
+    private final KryoCodec codec;
+
+    /**
+     * <hashlow,serialized BlockInfo> of committed block infos, updated by saveBlockInfo once its write is committed
+     */
+    private final Cache<Bytes32, byte[]> blockInfoCache;
+
+    /**
+     * <hashlow,serialized BlockInfo or null if deleted> saved by the open unit of work of the calling thread, written
+     * once right before the unit commits
+     */
+    private final ThreadLocal<Map<Bytes32, byte[]>> pendingBlockInfos = new ThreadLocal<>();
+
+    /**
+     * <hashlow,keyIndex> of our blocks, loaded in init and kept in sync with the OURS_BLOCK_KEY_INDEX keys
+     */
+    private final Map<Bytes32, Integer> ourKeyIndex = new ConcurrentHashMap<>();
 
     /**
      * <prefix-hash,value> eg:<diff-hash,blockDiff>
@@ -86,53 +106,34 @@ public class BlockStoreImpl implements BlockStore {
             KVSource<byte[], byte[]> time,
             KVSource<byte[], byte[]> block,
             KVSource<byte[], byte[]> txHistory) {
+        this(index, time, block, txHistory, DEFAULT_BLOCK_INFO_CACHE_SIZE);
+    }
+
+    public BlockStoreImpl(
+            KVSource<byte[], byte[]> index,
+            KVSource<byte[], byte[]> time,
+            KVSource<byte[], byte[]> block,
+            KVSource<byte[], byte[]> txHistory,
+            long blockInfoCacheSize) {
         this.indexSource = index;
         this.timeSource = time;
         this.blockSource = block;
         this.txHistorySource = txHistory;
-        this.kryo = new Kryo();
-        kryoRegister();
-    }
-
-    private void kryoRegister() {
-        kryo.setReferences(false);
-        kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
-        kryo.register(BigInteger.class);
-        kryo.register(byte[].class);
-        kryo.register(BlockInfo.class);
-        kryo.register(XdagStats.class);
-        kryo.register(XdagTopStatus.class);
-        kryo.register(SnapshotInfo.class);
-        kryo.register(UInt64.class);
-        kryo.register(XAmount.class);
+        this.codec = new KryoCodec(BigInteger.class, byte[].class, BlockInfo.class, XdagStats.class,
+                XdagTopStatus.class, SnapshotInfo.class, UInt64.class, XAmount.class);
+        this.blockInfoCache = Caffeine.newBuilder()
+                .maximumWeight(blockInfoCacheSize)
+                .weigher((Bytes32 key, byte[] value) -> key.size() + value.length)
+                .recordStats()
+                .build();
     }
 
     private byte[] serialize(final Object obj) throws SerializationException {
-        synchronized (kryo) {
-            try {
-                final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                final Output output = new Output(outputStream);
-                kryo.writeObject(output, obj);
-                output.flush();
-                output.close();
-                return outputStream.toByteArray();
-            } catch (final IllegalArgumentException | KryoException exception) {
-                throw new SerializationException(exception.getMessage(), exception);
-            }
-        }
+        return codec.serialize(obj);
     }
 
     private Object deserialize(final byte[] bytes, Class<?> type) throws DeserializationException {
-        synchronized (kryo) {
-            try {
-                final ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);
-                final Input input = new Input(inputStream);
-                return kryo.readObject(input, type);
-            } catch (final IllegalArgumentException | KryoException | NullPointerException exception) {
-                log.debug("Deserialize data:{}", Hex.toHexString(bytes));
-                throw new DeserializationException(exception.getMessage(), exception);
-            }
-        }
+        return codec.deserialize(bytes, type);
     }
 
     public void init() {
@@ -140,9 +141,86 @@ public class BlockStoreImpl implements BlockStore {
         timeSource.init();
         blockSource.init();
         txHistorySource.init();
+        migrateBlockInfoFormat();
+        loadOurKeyIndex();
+        buildMinedBlockIndex();
+    }
+
+    /**
+     * Fills the mined block index from the main chain once, for stores created before it existed.
+     */
+    private void buildMinedBlockIndex() {
+        byte[] built = new byte[]{MINED_BLOCK_HEIGHT};
+        if (indexSource.get(built) != null) {
+            return;
+        }
+        AtomicInteger count = new AtomicInteger();
+        indexSource.fetchPrefix(new byte[]{BLOCK_HEIGHT}, pair -> {
+            long height = BytesUtils.bytesToLong(pair.getKey(), 1, false);
+            Block block = height > 0 ? getBlockInfoByHash(Bytes32.wrap(pair.getValue())) : null;
+            if (block != null && block.getInfo().getHeight() == height
+                    && (block.getInfo().flags & BI_MAIN) != 0 && (block.getInfo().flags & BI_OURS) != 0) {
+                saveMinedBlock(height, pair.getValue());
+                count.incrementAndGet();
+            }
+            return Boolean.FALSE;
+        });
+        indexSource.put(built, new byte[]{1});
+        log.info("Indexed {} mined blocks", count.get());
+    }
+
+    /**
+     * Builds the hashlow to key index lookup from the OURS_BLOCK_INFO keys, writing reverse keys missing
+     * in stores created before they existed.
+     */
+    private void loadOurKeyIndex() {
+        ourKeyIndex.clear();
+        indexSource.fetchPrefix(new byte[]{OURS_BLOCK_INFO}, pair -> {
+            byte[] hashlow = BlockUtils.getOurHash(pair.getKey());
+            if (hashlow != null) {
+                int index = BlockUtils.getOurIndex(pair.getKey());
+                // keep the lowest key index like the former scan did
+                if (ourKeyIndex.putIfAbsent(Bytes32.wrap(hashlow), index) == null
+                        && indexSource.get(BlockUtils.getOurKeyIndexKey(hashlow)) == null) {
+                    indexSource.put(BlockUtils.getOurKeyIndexKey(hashlow), BytesUtils.intToBytes(index, false));
+                }
+            }
+            return Boolean.FALSE;
+        });
+        log.debug("Loaded {} our blocks", ourKeyIndex.size());
+    }
+
+    /**
+     * Rewrites block infos still stored by Kryo into the {@link BlockInfoCodec} layout, once per index.
+     */
+    private void migrateBlockInfoFormat() {
+        byte[] version = indexSource.get(new byte[]{BLOCK_INFO_VERSION});
+        if (version != null && version[0] >= BlockInfoCodec.VERSION) {
+            return;
+        }
+        AtomicInteger count = new AtomicInteger();
+        indexSource.fetchPrefix(new byte[]{HASH_BLOCK_INFO}, pair -> {
+            byte[] value = pair.getValue();
+            if (value != null && !BlockInfoCodec.isEncoded(value)) {
+                try {
+                    BlockInfo blockInfo = (BlockInfo) deserialize(value, BlockInfo.class);
+                    indexSource.put(pair.getKey(), BlockInfoCodec.encode(blockInfo));
+                    count.incrementAndGet();
+                } catch (DeserializationException | SerializationException e) {
+                    log.error("can't migrate block info:{}", Hex.toHexString(pair.getKey()), e);
+                }
+            }
+            return false;
+        });
+        indexSource.put(new byte[]{BLOCK_INFO_VERSION}, new byte[]{BlockInfoCodec.VERSION});
+        if (count.get() > 0) {
+            log.info("Migrated {} block infos to format version {}", count.get(), BlockInfoCodec.VERSION);
+        }
     }
 
     public void reset() {
+        blockInfoCache.invalidateAll();
+        ourKeyIndex.clear();
         indexSource.reset();
         timeSource.reset();
         blockSource.reset();
@@ -184,9 +262,8 @@ public class BlockStoreImpl implements BlockStore {
 
     public List<TxHistory> getAllTxHistoryFromRocksdb() {
         List<TxHistory> res = Lists.newArrayList();
-        Set<byte[]> Keys = txHistorySource.keys();
-        for (byte[] key : Keys) {
-            byte[] txHistoryBytes = txHistorySource.get(key);
+        // one prefix iteration instead of listing every key and reading each value back
+        for (byte[] txHistoryBytes : txHistorySource.prefixValueLookup(new byte[]{TX_HISTORY})) {
             byte type = BytesUtils.subArray(txHistoryBytes, 0, 1)[0];
             boolean isAddress = BytesUtils.subArray(txHistoryBytes, 1, 1)[0] == 1;
             XdagField.FieldType fieldType = XdagField.FieldType.fromByte(type);
@@ -209,7 +286,7 @@ public class BlockStoreImpl implements BlockStore {
     }
 
     public void deleteAllTxHistoryFromRocksdb() {
-        for (byte[] key : txHistorySource.keys()) {
+        for (byte[] key : txHistorySource.prefixKeyLookup(new byte[]{TX_HISTORY})) {
             try {
                 txHistorySource.delete(key);
             } catch (Exception e) {
@@ -270,20 +347,22 @@ public class BlockStoreImpl implements BlockStore {
     }
 
     public void saveOurBlock(int index, byte[] hashlow) {
+        Integer old = ourKeyIndex.put(Bytes32.wrap(hashlow).copy(), index);
+        if (old != null && old != index) {
+            indexSource.delete(BlockUtils.getOurKey(old, hashlow));
+        }
         indexSource.put(BlockUtils.getOurKey(index, hashlow), new byte[]{0});
+        indexSource.put(BlockUtils.getOurKeyIndexKey(hashlow), BytesUtils.intToBytes(index, false));
     }
 
     public Bytes getOurBlock(int index) {
         AtomicReference<Bytes> blockHashLow = new AtomicReference<>(Bytes.of(0));
-        fetchOurBlocks(pair -> {
-            int keyIndex = pair.getKey();
-            if (keyIndex == index) {
-                if (pair.getValue() != null && pair.getValue().getHashLow() != null) {
-                    blockHashLow.set(pair.getValue().getHashLow());
-                    return Boolean.TRUE;
-                } else {
-                    return Boolean.FALSE;
-                }
+        byte[] prefix = BytesUtils.merge(OURS_BLOCK_INFO, BytesUtils.intToBytes(index, false));
+        indexSource.fetchPrefix(prefix, pair -> {
+            byte[] hashlow = BlockUtils.getOurHash(pair.getKey());
+            if (hashlow != null && hasBlockInfo(Bytes32.wrap(hashlow))) {
+                blockHashLow.set(Bytes32.wrap(hashlow));
+                return Boolean.TRUE;
             }
             return Boolean.FALSE;
         });
@@ -291,29 +370,48 @@ public class BlockStoreImpl implements BlockStore {
     }
 
     public int getKeyIndexByHash(Bytes32 hashlow) {
-        AtomicInteger keyIndex = new AtomicInteger(-1);
-        fetchOurBlocks(pair -> {
-            Block block = pair.getValue();
-            if (hashlow.equals(block.getHashLow())) {
-                int index = pair.getKey();
-                keyIndex.set(index);
-                return Boolean.TRUE;
-            }
-            return Boolean.FALSE;
-        });
-        return keyIndex.get();
+        Integer index = ourKeyIndex.get(hashlow);
+        if (index != null) {
+            return index;
+        }
+        byte[] value = indexSource.get(BlockUtils.getOurKeyIndexKey(hashlow.toArray()));
+        return value == null ? -1 : BytesUtils.bytesToInt(value, 0, false);
     }
 
     public void removeOurBlock(byte[] hashlow) {
-        fetchOurBlocks(pair -> {
-            Block block = pair.getValue();
-            if (equalBytes(hashlow, block.getHashLow().toArray())) {
-                int index = pair.getKey();
-                indexSource.delete(BlockUtils.getOurKey(index, hashlow));
-                return Boolean.TRUE;
+        int index = getKeyIndexByHash(Bytes32.wrap(hashlow));
+        if (index < 0) {
+            return;
+        }
+        ourKeyIndex.remove(Bytes32.wrap(hashlow));
+        indexSource.delete(BlockUtils.getOurKey(index, hashlow));
+        indexSource.delete(BlockUtils.getOurKeyIndexKey(hashlow));
+    }
+
+    public void saveMinedBlock(long height, byte[] hashlow) {
+        indexSource.put(BlockUtils.getMinedBlockKey(height), hashlow);
+    }
+
+    public void removeMinedBlock(long height) {
+        indexSource.delete(BlockUtils.getMinedBlockKey(height));
+    }
+
+    public List<Block> getMinedBlocks(int count) {
+        List<Block> blocks = Lists.newArrayList();
+        if (count <= 0) {
+            return blocks;
+        }
+        indexSource.fetchPrefix(new byte[]{MINED_BLOCK_HEIGHT}, pair -> {
+            // skip the marker key written when the index was built
+            if (pair.getKey().length > 1) {
+                Block block = getBlockInfoByHash(Bytes32.wrap(pair.getValue()));
+                if (block != null) {
+                    blocks.add(block);
+                }
             }
-            return Boolean.FALSE;
+            return blocks.size() >= count;
         });
+        return blocks;
     }
 
     public void fetchOurBlocks(Function<Pair<Integer, Block>, Boolean> function) {
@@ -454,11 +552,17 @@ public class BlockStoreImpl implements BlockStore {
     public void saveBlockInfo(BlockInfo blockInfo) {
         byte[] value = null;
         try {
-            value = serialize(blockInfo);
+            value = BlockInfoCodec.encode(blockInfo);
         } catch (SerializationException e) {
             log.error(e.getMessage(), e);
         }
-        indexSource.put(BytesUtils.merge(HASH_BLOCK_INFO, blockInfo.getHashlow()), value);
+        Bytes32 hashlow = Bytes32.wrap(blockInfo.getHashlow());
+        if (indexSource.isInBatch()) {
+            unitBlockInfos().put(hashlow, value);
+        } else {
+            writeBlockInfo(hashlow, value);
+            updateCache(hashlow, value, true);
+        }
         // 如果区块是主块的话顺便保存对应的高度信息
         // TODO: paulochen 如果回滚了，对应高度的键值对该怎么更新(直接让其height=0的区块覆盖)
 //        if (blockInfo.getHeight() > 0) {
@@ -468,11 +572,54 @@ public class BlockStoreImpl implements BlockStore {
 //        }
     }
 
+    /**
+     * The block infos saved by the open unit of work of the calling thread. A block info whose flags or ref
+     * change several times during the unit is written once, with its last value, and cached once the unit is
+     * committed. Until then only the saving thread sees it.
+     */
+    private Map<Bytes32, byte[]> unitBlockInfos() {
+        Map<Bytes32, byte[]> pending = pendingBlockInfos.get();
+        if (pending == null) {
+            Map<Bytes32, byte[]> saved = new HashMap<>();
+            pendingBlockInfos.set(saved);
+            indexSource.beforeCommit(() -> saved.forEach(this::writeBlockInfo));
+            indexSource.afterCompletion(committed -> {
+                pendingBlockInfos.remove();
+                saved.forEach((k, v) -> updateCache(k, v, committed));
+            });
+            pending = saved;
+        }
+        return pending;
+    }
+
+    private void writeBlockInfo(Bytes32 hashlow, byte[] value) {
+        // flag updates often end where they started, the cache holds the committed value to compare with
+        if (value == null || !Arrays.equals(value, blockInfoCache.asMap().get(hashlow))) {
+            indexSource.put(BytesUtils.merge(HASH_BLOCK_INFO, hashlow.toArray()), value);
+        }
+    }
+
+    private void updateCache(Bytes32 hashlow, byte[] value, boolean committed) {
+        if (committed && value != null) {
+            // waits for a concurrent load of this key, so the loaded value never replaces ours
+            blockInfoCache.put(hashlow, value);
+        } else {
+            blockInfoCache.invalidate(hashlow);
+        }
+    }
+
     public boolean hasBlock(Bytes32 hashlow) {
         return blockSource.get(hashlow.toArray()) != null;
     }
 
     public boolean hasBlockInfo(Bytes32 hashlow) {
+        Map<Bytes32, byte[]> pending = pendingBlockInfos.get();
+        if (pending != null && pending.containsKey(hashlow)) {
+            return pending.get(hashlow) != null;
+        }
+        if (blockInfoCache.getIfPresent(hashlow) != null) {
+            return true;
+        }
         return indexSource.get(BytesUtils.merge(HASH_BLOCK_INFO, hashlow.toArray())) != null;
     }
 
@@ -539,25 +686,35 @@ public class BlockStoreImpl implements BlockStore {
     }
 
     public Block getBlockInfoByHash(Bytes32 hashlow) {
-        if (!hasBlockInfo(hashlow)) {
-            return null;
-        }
         BlockInfo blockInfo = null;
-        byte[] value = indexSource.get(BytesUtils.merge(HASH_BLOCK_INFO, hashlow.toArray()));
+        byte[] value;
+        Map<Bytes32, byte[]> pending = pendingBlockInfos.get();
+        if (pending != null && pending.containsKey(hashlow)) {
+            value = pending.get(hashlow);
+        } else {
+            // a saveBlockInfo committed during the load puts its value after the load, never before it
+            value = blockInfoCache.get(hashlow.copy(),
+                    k -> indexSource.get(BytesUtils.merge(HASH_BLOCK_INFO, k.toArray())));
+        }
         if (value == null) {
             return null;
-        } else {
-            try {
-                blockInfo = (BlockInfo) deserialize(value, BlockInfo.class);
-            } catch (DeserializationException e) {
-                log.error("hash low:" + hashlow.toHexString());
-                log.error("can't deserialize data:{}", Hex.toHexString(value));
-                log.error(e.getMessage(), e);
-            }
+        }
+        try {
+            blockInfo = BlockInfoCodec.isEncoded(value)
+                    ? BlockInfoCodec.decode(value)
+                    : (BlockInfo) deserialize(value, BlockInfo.class);
+        } catch (DeserializationException e) {
+            log.error("hash low:" + hashlow.toHexString());
+            log.error("can't deserialize data:{}", Hex.toHexString(value));
+            log.error(e.getMessage(), e);
         }
         return new Block(blockInfo);
     }
 
+    public CacheStats getBlockInfoCacheStats() {
+        return blockInfoCache.stats();
+    }
+
     public boolean isSnapshotBoot() {
         byte[] data = indexSource.get(new byte[]{SNAPSHOT_BOOT});
         if (data == null) {
@@ -24,10 +24,26 @@
 
 package io.xdag.db.rocksdb;
 
+import java.util.function.Supplier;
+
 public interface DatabaseFactory {
 
     KVSource<byte[], byte[]> getDB(DatabaseName name);
 
+    /**
+     * Runs {@code work} as one unit of work: all puts and deletes the calling thread issues through
+     * the sources of this factory are buffered and written once when the outermost unit returns, or
+     * discarded when it throws. Nested calls join the enclosing unit.
+     */
+    <T> T executeInBatch(Supplier<T> work);
+
+    default void executeInBatch(Runnable work) {
+        executeInBatch(() -> {
+            work.run();
+            return null;
+        });
+    }
+
     /**
      * Close all opened resources.
      */
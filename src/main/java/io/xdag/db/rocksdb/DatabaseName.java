@@ -50,5 +50,10 @@ public enum DatabaseName {
 
     ADDRESS,
 
-    TXHISTORY
+    TXHISTORY,
+
+    /**
+     * Embedded transaction history, keyed by address and inverted time.
+     */
+    TXINDEX
 }
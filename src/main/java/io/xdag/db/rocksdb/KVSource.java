@@ -26,6 +26,7 @@ package io.xdag.db.rocksdb;
 
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -55,8 +56,44 @@ public interface KVSource<K, V> {
 
     void fetchPrefix(byte[] key, Function<Pair<K, V>, Boolean> func);
 
+    /**
+     * Like {@link #fetchPrefix(byte[], Function)} but starts at the first key not less than {@code start}.
+     */
+    void fetchPrefix(byte[] prefix, byte[] start, Function<Pair<K, V>, Boolean> func);
+
     List<V> prefixValueLookup(byte[] key);
 
     List<Pair<byte[], byte[]>> prefixKeyAndValueLookup(byte[] key);
 
+    /**
+     * @return true if writes of the calling thread are buffered in an open unit of work
+     */
+    default boolean isInBatch() {
+        return false;
+    }
+
+    /**
+     * Runs {@code action} right before the open unit of work of the calling thread commits, or right away. Writes
+     * of the action are part of the unit.
+     */
+    default void beforeCommit(Runnable action) {
+        action.run();
+    }
+
+    /**
+     * Runs {@code action} once the writes the calling thread issued so far are durable: right away, or when its
+     * unit of work commits. Dropped if the unit of work is discarded.
+     */
+    default void afterCommit(Runnable action) {
+        action.run();
+    }
+
+    /**
+     * Like {@link #afterCommit(Runnable)}, but also calls {@code action} with false if the unit of work is
+     * discarded or fails to commit.
+     */
+    default void afterCompletion(Consumer<Boolean> action) {
+        action.accept(true);
+    }
+
 }
@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.db.rocksdb;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
+import com.esotericsoftware.kryo.util.Pool;
+import io.xdag.db.execption.DeserializationException;
+import io.xdag.db.execption.SerializationException;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.util.encoders.Hex;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+
+/**
+ * Thread safe Kryo serialization. Kryo instances and their Output/Input buffers are pooled, so concurrent
+ * readers do not contend on a single monitor and decoding reads the value bytes directly.
+ * <p>
+ * Types are registered in the given order on every pooled instance, the order defines the wire format
+ * and must not change for data already on disk.
+ */
+@Slf4j
+public class KryoCodec {
+
+    private static final int POOL_CAPACITY = 64;
+    private static final int OUTPUT_BUFFER_SIZE = 512;
+    /**
+     * Output buffers grown beyond this are dropped instead of being kept in the pool.
+     */
+    private static final int MAX_POOLED_OUTPUT_SIZE = 64 * 1024;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Pool<Kryo> kryoPool;
+    private final Pool<Output> outputPool;
+    private final Pool<Input> inputPool;
+
+    public KryoCodec(Class<?>... types) {
+        this.kryoPool = new Pool<>(true, false, POOL_CAPACITY) {
+            @Override
+            protected Kryo create() {
+                Kryo kryo = new Kryo();
+                kryo.setReferences(false);
+                kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+                for (Class<?> type : types) {
+                    kryo.register(type);
+                }
+                return kryo;
+            }
+        };
+        this.outputPool = new Pool<>(true, false, POOL_CAPACITY) {
+            @Override
+            protected Output create() {
+                return new Output(OUTPUT_BUFFER_SIZE, -1);
+            }
+        };
+        this.inputPool = new Pool<>(true, false, POOL_CAPACITY) {
+            @Override
+            protected Input create() {
+                return new Input();
+            }
+        };
+    }
+
+    public byte[] serialize(final Object obj) throws SerializationException {
+        Kryo kryo = kryoPool.obtain();
+        Output output = outputPool.obtain();
+        try {
+            output.reset();
+            kryo.writeObject(output, obj);
+            return output.toBytes();
+        } catch (final IllegalArgumentException | KryoException exception) {
+            throw new SerializationException(exception.getMessage(), exception);
+        } finally {
+            if (output.getBuffer().length <= MAX_POOLED_OUTPUT_SIZE) {
+                outputPool.free(output);
+            }
+            kryoPool.free(kryo);
+        }
+    }
+
+    public <T> T deserialize(final byte[] bytes, Class<T> type) throws DeserializationException {
+        Kryo kryo = kryoPool.obtain();
+        Input input = inputPool.obtain();
+        try {
+            input.setBuffer(bytes);
+            return kryo.readObject(input, type);
+        } catch (final IllegalArgumentException | KryoException | NullPointerException exception) {
+            log.debug("Deserialize data:{}", bytes == null ? null : Hex.toHexString(bytes));
+            throw new DeserializationException(exception.getMessage(), exception);
+        } finally {
+            // do not keep the value alive through the pool
+            input.setBuffer(EMPTY);
+            inputPool.free(input);
+            kryoPool.free(kryo);
+        }
+    }
+}
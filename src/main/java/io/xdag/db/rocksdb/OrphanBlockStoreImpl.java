@@ -29,12 +29,13 @@ import io.xdag.core.Block;
 import io.xdag.core.XdagField;
 import io.xdag.db.OrphanBlockStore;
 import io.xdag.utils.BytesUtils;
-import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.tuweni.bytes.Bytes32;
-import org.bouncycastle.util.encoders.Hex;
 
 import com.google.common.collect.Lists;
 
@@ -45,80 +46,130 @@ public class OrphanBlockStoreImpl implements OrphanBlockStore {
     // <hash,nexthash>
     private final KVSource<byte[], byte[]> orphanSource;
 
+    /**
+     * orphans ordered by timestamp then hashlow, mirrors the ORPHAN_PREFEX keys
+     */
+    private final ConcurrentSkipListSet<Orphan> orphanIndex = new ConcurrentSkipListSet<>();
+    private final ConcurrentHashMap<Bytes32, Long> orphanTimes = new ConcurrentHashMap<>();
+    private final AtomicLong orphanSize = new AtomicLong();
+
     public OrphanBlockStoreImpl(KVSource<byte[], byte[]> orphan) {
         this.orphanSource = orphan;
     }
 
     public void init() {
         this.orphanSource.init();
-        if (orphanSource.get(ORPHAN_SIZE) == null) {
-            this.orphanSource.put(ORPHAN_SIZE, BytesUtils.longToBytes(0, false));
-        }
+        loadIndex();
     }
 
     public void reset() {
         this.orphanSource.reset();
+        orphanIndex.clear();
+        orphanTimes.clear();
+        orphanSize.set(0);
         this.orphanSource.put(ORPHAN_SIZE, BytesUtils.longToBytes(0, false));
     }
 
+    /**
+     * Build the time index from the stored orphans, once at startup.
+     */
+    private void loadIndex() {
+        orphanIndex.clear();
+        orphanTimes.clear();
+        List<Pair<byte[], byte[]>> ans = orphanSource.prefixKeyAndValueLookup(BytesUtils.of(ORPHAN_PREFEX));
+        for (Pair<byte[], byte[]> an : ans) {
+            // skip anything that is not prefix + hashlow
+            if (an.getKey().length != 33 || an.getValue() == null) {
+                continue;
+            }
+            Bytes32 hashlow = Bytes32.wrap(an.getKey(), 1);
+            long time = BytesUtils.bytesToLong(an.getValue(), 0, true);
+            orphanTimes.put(hashlow, time);
+            orphanIndex.add(new Orphan(time, hashlow));
+        }
+        orphanSize.set(orphanTimes.size());
+        byte[] stored = orphanSource.get(ORPHAN_SIZE);
+        if (stored == null || BytesUtils.bytesToLong(stored, 0, false) != orphanSize.get()) {
+            this.orphanSource.put(ORPHAN_SIZE, BytesUtils.longToBytes(orphanSize.get(), false));
+        }
+        log.debug("orphan index loaded, size:{}", orphanSize.get());
+    }
+
     public List<Address> getOrphan(long num, long[] sendtime) {
         List<Address> res = Lists.newArrayList();
-        if (orphanSource.get(ORPHAN_SIZE) == null || getOrphanSize() == 0) {
+        if (orphanSize.get() <= 0) {
             return null;
-        } else {
-            long orphanSize = getOrphanSize();
-            long addNum = Math.min(orphanSize, num);
-            byte[] key = BytesUtils.of(ORPHAN_PREFEX);
-            List<Pair<byte[],byte[]>> ans = orphanSource.prefixKeyAndValueLookup(key);
-            ans.sort(Comparator.comparingLong(a -> BytesUtils.bytesToLong(a.getValue(), 0, true)));
-            for (Pair<byte[],byte[]> an : ans) {
-                if (addNum == 0) {
-                    break;
-                }
-                // TODO:判断时间，这里出现过orphanSource获取key时为空的情况
-                if (an.getValue() == null) {
-                    continue;
-                }
-                long time =  BytesUtils.bytesToLong(an.getValue(), 0, true);
-                if (time <= sendtime[0]) {
-                    addNum--;
-                    res.add(new Address(Bytes32.wrap(an.getKey(), 1), XdagField.FieldType.XDAG_FIELD_OUT,false));
-                    sendtime[1] = Math.max(sendtime[1],time);
-//                    Bytes32 blockHashLow = Bytes32.wrap(an.getKey(),1);
-//                    if(filter.filterOurLinkBlock(blockHashLow)){
-//                        addNum--;
-//                        //TODO:通过address 获取区块 遍历连接块是否都是output如果是 则为链接块 判断是否是自己的是才链接
-//                        res.add(new Address(blockHashLow, XdagField.FieldType.XDAG_FIELD_OUT,false));
-//                        sendtime[1] = Math.max(sendtime[1],time);
-//                    }
-                }
+        }
+        long addNum = Math.min(orphanSize.get(), num);
+        for (Orphan orphan : orphanIndex) {
+            // oldest first, nothing after this one is old enough
+            if (addNum == 0 || orphan.time > sendtime[0]) {
+                break;
             }
-            sendtime[1] = Math.min(sendtime[1]+1,sendtime[0]);
-            return res;
+            addNum--;
+            res.add(new Address(orphan.hashlow, XdagField.FieldType.XDAG_FIELD_OUT, false));
+            sendtime[1] = Math.max(sendtime[1], orphan.time);
         }
+        sendtime[1] = Math.min(sendtime[1] + 1, sendtime[0]);
+        return res;
     }
 
     public void deleteByHash(byte[] hashlow) {
         log.debug("deleteByhash");
         orphanSource.delete(BytesUtils.merge(ORPHAN_PREFEX, hashlow));
-        long currentsize = BytesUtils.bytesToLong(orphanSource.get(ORPHAN_SIZE), 0, false);
-        orphanSource.put(ORPHAN_SIZE, BytesUtils.longToBytes(currentsize - 1, false));
+        Bytes32 key = Bytes32.wrap(hashlow);
+        Long time = orphanTimes.remove(key);
+        if (time != null) {
+            orphanIndex.remove(new Orphan(time, key));
+            orphanSource.put(ORPHAN_SIZE, BytesUtils.longToBytes(orphanSize.decrementAndGet(), false));
+        }
     }
 
     public void addOrphan(Block block) {
-        orphanSource.put(BytesUtils.merge(ORPHAN_PREFEX, block.getHashLow().toArray()),
-                BytesUtils.longToBytes(block.getTimestamp(), true));
-        long currentsize = BytesUtils.bytesToLong(orphanSource.get(ORPHAN_SIZE), 0, false);
-        log.debug("orphan current size:" + currentsize);
-//        log.debug(":" + Hex.toHexString(orphanSource.get(ORPHAN_SIZE)));
-        orphanSource.put(ORPHAN_SIZE, BytesUtils.longToBytes(currentsize + 1, false));
+        Bytes32 hashlow = Bytes32.wrap(block.getHashLow().toArray());
+        long time = block.getTimestamp();
+        orphanSource.put(BytesUtils.merge(ORPHAN_PREFEX, hashlow.toArray()), BytesUtils.longToBytes(time, true));
+        Long old = orphanTimes.put(hashlow, time);
+        if (old != null) {
+            orphanIndex.remove(new Orphan(old, hashlow));
+        }
+        orphanIndex.add(new Orphan(time, hashlow));
+        if (old == null) {
+            long currentsize = orphanSize.incrementAndGet();
+            log.debug("orphan current size:" + currentsize);
+            orphanSource.put(ORPHAN_SIZE, BytesUtils.longToBytes(currentsize, false));
+        }
     }
 
     public long getOrphanSize() {
-        long currentsize = BytesUtils.bytesToLong(orphanSource.get(ORPHAN_SIZE), 0, false);
-        log.debug("current orphan size:" + currentsize);
-        log.debug("Hex:" + Hex.toHexString(orphanSource.get(ORPHAN_SIZE)));
-        return currentsize;
+        return orphanSize.get();
+    }
+
+    private static final class Orphan implements Comparable<Orphan> {
+
+        private final long time;
+        private final Bytes32 hashlow;
+
+        private Orphan(long time, Bytes32 hashlow) {
+            this.time = time;
+            this.hashlow = hashlow;
+        }
+
+        @Override
+        public int compareTo(Orphan o) {
+            int res = Long.compare(time, o.time);
+            return res != 0 ? res : hashlow.compareTo(o.hashlow);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Orphan other && time == other.time && hashlow.equals(other.hashlow);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashlow.hashCode();
+        }
     }
 
 }
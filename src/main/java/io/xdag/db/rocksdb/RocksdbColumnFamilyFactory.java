@@ -0,0 +1,325 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.db.rocksdb;
+
+import io.xdag.config.Config;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.CompressionType;
+import org.rocksdb.DBOptions;
+import org.rocksdb.LRUCache;
+import org.rocksdb.Options;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteBufferManager;
+import org.rocksdb.WriteOptions;
+
+/**
+ * Keeps every {@link DatabaseName} as a column family of one RocksDB instance, so a unit of work
+ * spanning several stores is committed with a single atomic write. All families share one block cache
+ * and one write buffer budget, so the memory used by the stores is bounded by the node config instead
+ * of growing with the number of stores.
+ * <p>
+ * Opt-in through {@code node.store.singleDb}, since restoring from a backup is not supported yet.
+ */
+@Slf4j
+public class RocksdbColumnFamilyFactory implements DatabaseFactory {
+
+    public static final String DB_NAME = "XDAGDB";
+
+    private static final byte[] LEGACY_MIGRATED = "legacy-migrated".getBytes(StandardCharsets.UTF_8);
+    private static final int MIGRATION_BATCH_SIZE = 10000;
+
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    private final EnumMap<DatabaseName, KVSource<byte[], byte[]>> databases = new EnumMap<>(DatabaseName.class);
+    private final EnumMap<DatabaseName, ColumnFamilyHandle> columnFamilies = new EnumMap<>(DatabaseName.class);
+    private final EnumMap<DatabaseName, ColumnFamilyOptions> columnFamilyOptions = new EnumMap<>(DatabaseName.class);
+    private final RocksdbUnitOfWork unitOfWork = new RocksdbUnitOfWork();
+
+    protected Config config;
+
+    @Getter
+    private RocksDB db;
+    private DBOptions dbOptions;
+    private LRUCache blockCache;
+    private WriteBufferManager writeBufferManager;
+    private ColumnFamilyHandle defaultColumnFamily;
+
+    public RocksdbColumnFamilyFactory(Config config) {
+        this.config = config;
+    }
+
+    @Override
+    public synchronized KVSource<byte[], byte[]> getDB(DatabaseName name) {
+        return databases.computeIfAbsent(
+                name, k -> {
+                    RocksdbColumnFamilySource dataSource = new RocksdbColumnFamilySource(name, this);
+                    dataSource.setConfig(config);
+                    dataSource.setUnitOfWork(unitOfWork);
+                    return dataSource;
+                });
+    }
+
+    @Override
+    public <T> T executeInBatch(Supplier<T> work) {
+        return unitOfWork.execute(work);
+    }
+
+    /**
+     * Opens the shared database with one column family per {@link DatabaseName}, creating missing ones.
+     */
+    public synchronized void open() {
+        if (db != null) {
+            return;
+        }
+        if (config.getNodeSpec().isStoreFromBackup()) {
+            log.warn("Restoring from backup is only supported with node.store.singleDb = false, ignored");
+        }
+        blockCache = new LRUCache(config.getNodeSpec().getStoreBlockCacheSize());
+        // memtables are charged to the block cache, so both together stay within the configured sizes
+        writeBufferManager = new WriteBufferManager(config.getNodeSpec().getStoreWriteBufferSize(), blockCache);
+        dbOptions = new DBOptions()
+                .setCreateIfMissing(true)
+                .setCreateMissingColumnFamilies(true)
+                .setMaxOpenFiles(config.getNodeSpec().getStoreMaxOpenFiles())
+                .setIncreaseParallelism(config.getNodeSpec().getStoreMaxThreads())
+                .setWriteBufferManager(writeBufferManager);
+
+        List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+        descriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY));
+        for (DatabaseName name : DatabaseName.values()) {
+            descriptors.add(new ColumnFamilyDescriptor(columnFamilyName(name), columnFamilyOptions(name)));
+        }
+
+        List<ColumnFamilyHandle> handles = new ArrayList<>();
+        try {
+            Path dbPath = getPath();
+            if (!Files.isSymbolicLink(dbPath.getParent())) {
+                Files.createDirectories(dbPath.getParent());
+            }
+            log.debug("Opening column family database: '{}'", dbPath);
+            db = RocksDB.open(dbOptions, dbPath.toString(), descriptors, handles);
+        } catch (RocksDBException | IOException e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("Failed to initialize database", e);
+        }
+
+        defaultColumnFamily = handles.get(0);
+        DatabaseName[] names = DatabaseName.values();
+        for (int i = 0; i < names.length; i++) {
+            columnFamilies.put(names[i], handles.get(i + 1));
+        }
+        migrateLegacyDatabases();
+    }
+
+    /**
+     * Copies the stores of the one-database-per-store layout into their column families. Runs once, the
+     * legacy directories are left in place so switching singleDb off again still finds them.
+     */
+    private void migrateLegacyDatabases() {
+        try {
+            if (db.get(defaultColumnFamily, LEGACY_MIGRATED) != null) {
+                return;
+            }
+            List<Path> migrated = new ArrayList<>();
+            for (DatabaseName name : DatabaseName.values()) {
+                Path legacyPath = Paths.get(config.getNodeSpec().getStoreDir(), name.toString());
+                if (!Files.exists(legacyPath.resolve("CURRENT"))) {
+                    continue;
+                }
+                log.info("Migrating legacy database '{}' into column family {}", legacyPath, name);
+                long count = copyLegacyDatabase(legacyPath, columnFamilies.get(name));
+                log.info("Migrated {} entries of {}", count, name);
+                migrated.add(legacyPath);
+            }
+            db.put(defaultColumnFamily, LEGACY_MIGRATED, new byte[]{1});
+            if (!migrated.isEmpty()) {
+                log.warn("Copied {} legacy databases into '{}'. The originals were kept and now take the same space"
+                        + " again, remove them once the node runs fine with node.store.singleDb = true: {}",
+                        migrated.size(), getPath(), migrated);
+            }
+        } catch (RocksDBException e) {
+            log.error("Failed to migrate legacy databases", e);
+            throw new RuntimeException("Failed to migrate legacy databases", e);
+        }
+    }
+
+    private long copyLegacyDatabase(Path legacyPath, ColumnFamilyHandle columnFamily) throws RocksDBException {
+        long count = 0;
+        try (Options options = new Options();
+                RocksDB legacy = RocksDB.openReadOnly(options, legacyPath.toString());
+                ReadOptions readOptions = new ReadOptions().setTotalOrderSeek(true).setFillCache(false);
+                RocksIterator it = legacy.newIterator(readOptions);
+                WriteOptions writeOptions = new WriteOptions()) {
+            WriteBatch batch = new WriteBatch();
+            try {
+                for (it.seekToFirst(); it.isValid(); it.next()) {
+                    batch.put(columnFamily, it.key(), it.value());
+                    if (++count % MIGRATION_BATCH_SIZE == 0) {
+                        db.write(writeOptions, batch);
+                        batch.close();
+                        batch = new WriteBatch();
+                    }
+                }
+                db.write(writeOptions, batch);
+            } finally {
+                batch.close();
+            }
+        }
+        return count;
+    }
+
+    public synchronized ColumnFamilyHandle getColumnFamily(DatabaseName name) {
+        return columnFamilies.get(name);
+    }
+
+    /**
+     * Drops all data of one store by recreating its column family.
+     */
+    public synchronized ColumnFamilyHandle resetColumnFamily(DatabaseName name) {
+        try {
+            ColumnFamilyHandle old = columnFamilies.get(name);
+            db.dropColumnFamily(old);
+            old.close();
+            ColumnFamilyHandle handle = db.createColumnFamily(
+                    new ColumnFamilyDescriptor(columnFamilyName(name), columnFamilyOptions(name)));
+            columnFamilies.put(name, handle);
+            return handle;
+        } catch (RocksDBException e) {
+            log.error("Failed to reset column family '{}'", name, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private ColumnFamilyOptions columnFamilyOptions(DatabaseName name) {
+        return columnFamilyOptions.computeIfAbsent(name, k -> {
+            ColumnFamilyOptions options = new ColumnFamilyOptions();
+            options.setLevelCompactionDynamicLevelBytes(true);
+
+            BlockBasedTableConfig tableCfg = new BlockBasedTableConfig();
+            tableCfg.setBlockCache(blockCache);
+            tableCfg.setCacheIndexAndFilterBlocks(true);
+            tableCfg.setPinL0FilterAndIndexBlocksInCache(true);
+            tableCfg.setFilterPolicy(new BloomFilter(10, false));
+
+            switch (name) {
+                case INDEX -> {
+                    // every index key starts with its type byte, the prefix bloom lets scans by type skip files
+                    options.useFixedLengthPrefixExtractor(1);
+                    options.setMemtablePrefixBloomSizeRatio(0.1);
+                    options.setCompressionType(CompressionType.LZ4_COMPRESSION);
+                    options.setBottommostCompressionType(CompressionType.LZ4_COMPRESSION);
+                    tableCfg.setBlockSize(16 * 1024);
+                }
+                case TIME -> {
+                    // time data source must set fixed prefix length
+                    options.useFixedLengthPrefixExtractor(9);
+                    options.setMemtablePrefixBloomSizeRatio(0.1);
+                    options.setCompressionType(CompressionType.LZ4_COMPRESSION);
+                    options.setBottommostCompressionType(CompressionType.LZ4_COMPRESSION);
+                    tableCfg.setBlockSize(16 * 1024);
+                }
+                case TXINDEX -> {
+                    // history pages never leave one address, so the prefix bloom covers type byte + address
+                    options.useFixedLengthPrefixExtractor(TxHistoryIndexStoreImpl.PREFIX_LENGTH);
+                    options.setMemtablePrefixBloomSizeRatio(0.1);
+                    options.setCompressionType(CompressionType.LZ4_COMPRESSION);
+                    options.setBottommostCompressionType(CompressionType.LZ4_COMPRESSION);
+                    tableCfg.setBlockSize(16 * 1024);
+                }
+                case BLOCK -> {
+                    // raw blocks are large, write once and read by exact key
+                    options.setCompressionType(CompressionType.LZ4_COMPRESSION);
+                    options.setBottommostCompressionType(CompressionType.ZSTD_COMPRESSION);
+                    options.setOptimizeFiltersForHits(true);
+                    tableCfg.setBlockSize(64 * 1024);
+                }
+                default -> {
+                    options.useFixedLengthPrefixExtractor(0);
+                    options.setCompressionType(CompressionType.LZ4_COMPRESSION);
+                    options.setBottommostCompressionType(CompressionType.LZ4_COMPRESSION);
+                    tableCfg.setBlockSize(16 * 1024);
+                }
+            }
+            options.setTableFormatConfig(tableCfg);
+            return options;
+        });
+    }
+
+    private static byte[] columnFamilyName(DatabaseName name) {
+        return name.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Path getPath() {
+        return Paths.get(config.getNodeSpec().getStoreDir(), DB_NAME);
+    }
+
+    @Override
+    public void close() {
+        // sources take their own lock before the factory's, so close them outside of it
+        List<KVSource<byte[], byte[]>> sources;
+        synchronized (this) {
+            sources = new ArrayList<>(databases.values());
+            databases.clear();
+        }
+        sources.forEach(KVSource::close);
+
+        synchronized (this) {
+            if (db == null) {
+                return;
+            }
+            columnFamilies.values().forEach(ColumnFamilyHandle::close);
+            columnFamilies.clear();
+            defaultColumnFamily.close();
+            db.close();
+            db = null;
+            dbOptions.close();
+            columnFamilyOptions.values().forEach(ColumnFamilyOptions::close);
+            columnFamilyOptions.clear();
+            writeBufferManager.close();
+            blockCache.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.db.rocksdb;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.ReadOptions;
+
+/**
+ * A {@link KVSource} backed by one column family of the database shared through
+ * {@link RocksdbColumnFamilyFactory}. Closing it only detaches it, the database itself is closed by
+ * the factory.
+ */
+@Slf4j
+public class RocksdbColumnFamilySource extends RocksdbKVSource {
+
+    private final DatabaseName databaseName;
+    private final RocksdbColumnFamilyFactory factory;
+
+    public RocksdbColumnFamilySource(DatabaseName databaseName, RocksdbColumnFamilyFactory factory) {
+        super(databaseName.toString());
+        this.databaseName = databaseName;
+        this.factory = factory;
+    }
+
+    @Override
+    public void init() {
+        getResetDbLock().writeLock().lock();
+        try {
+            if (isAlive()) {
+                return;
+            }
+            log.debug("~> RocksdbColumnFamilySource.init(): " + getName());
+            factory.open();
+            setDb(factory.getDb());
+            setColumnFamily(factory.getColumnFamily(databaseName));
+            setReadOpts(new ReadOptions().setPrefixSameAsStart(true).setVerifyChecksums(false));
+            setAlive(true);
+        } finally {
+            getResetDbLock().writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        getResetDbLock().writeLock().lock();
+        try {
+            if (!isAlive()) {
+                return;
+            }
+            log.debug("Close column family: {}", getName());
+            getReadOpts().close();
+            setAlive(false);
+        } finally {
+            getResetDbLock().writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void reset() {
+        init();
+        getResetDbLock().writeLock().lock();
+        try {
+            setColumnFamily(factory.resetColumnFamily(databaseName));
+        } finally {
+            getResetDbLock().writeLock().unlock();
+        }
+    }
+}
@@ -26,11 +26,13 @@ package io.xdag.db.rocksdb;
 
 import io.xdag.config.Config;
 import java.util.EnumMap;
+import java.util.function.Supplier;
 import org.apache.commons.lang3.StringUtils;
 
 public class RocksdbFactory implements DatabaseFactory {
 
     private final EnumMap<DatabaseName, KVSource<byte[], byte[]>> databases = new EnumMap<>(DatabaseName.class);
+    private final RocksdbUnitOfWork unitOfWork = new RocksdbUnitOfWork();
 
     protected Config config;
 
@@ -46,14 +48,25 @@ public class RocksdbFactory implements DatabaseFactory {
                     // time data source must set fixed prefix length
                     if (StringUtils.equals(DatabaseName.TIME.toString(), name.toString())) {
                         dataSource = new RocksdbKVSource(name.toString(), 9);
+                    } else if (name == DatabaseName.TXINDEX) {
+                        dataSource = new RocksdbKVSource(name.toString(), TxHistoryIndexStoreImpl.PREFIX_LENGTH);
                     } else {
                         dataSource = new RocksdbKVSource(name.toString());
                     }
                     dataSource.setConfig(config);
+                    dataSource.setUnitOfWork(unitOfWork);
                     return dataSource;
                 });
     }
 
+    /**
+     * Every store is a separate database here, so the unit of work is atomic per store only.
+     */
+    @Override
+    public <T> T executeInBatch(Supplier<T> work) {
+        return unitOfWork.execute(work);
+    }
+
     @Override
     public void close() {
         for (KVSource<byte[], byte[]> db : databases.values()) {
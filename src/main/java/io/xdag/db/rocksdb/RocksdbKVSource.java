@@ -37,6 +37,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import lombok.Getter;
 import lombok.Setter;
@@ -48,6 +49,7 @@ import org.rocksdb.BackupEngine;
 import org.rocksdb.BackupEngineOptions;
 import org.rocksdb.BlockBasedTableConfig;
 import org.rocksdb.BloomFilter;
+import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.CompressionType;
 import org.rocksdb.Env;
 import org.rocksdb.LRUCache;
@@ -57,6 +59,7 @@ import org.rocksdb.RestoreOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteBatchWithIndex;
 
 @Slf4j
 @Setter
@@ -77,9 +80,14 @@ public class RocksdbKVSource implements KVSource<byte[], byte[]> {
     private Config config;
     private String name;
     private RocksDB db;
+    private ColumnFamilyHandle columnFamily;
     private ReadOptions readOpts;
     private boolean alive;
     private int prefixSeekLength;
+    /**
+     * optional, routes writes of the calling thread into its open write batch
+     */
+    private RocksdbUnitOfWork unitOfWork;
 
     public RocksdbKVSource(String name) {
         this.name = name;
@@ -159,6 +167,7 @@ public class RocksdbKVSource implements KVSource<byte[], byte[]> {
                     log.debug("Initializing new or existing database: '{}'", name);
                     try {
                         db = RocksDB.open(options, dbPath.toString());
+                        columnFamily = db.getDefaultColumnFamily();
                     } catch (RocksDBException e) {
                         log.error(e.getMessage(), e);
                         throw new RuntimeException("Failed to initialize database", e);
@@ -215,14 +224,19 @@ public class RocksdbKVSource implements KVSource<byte[], byte[]> {
                                 + ", "
                                 + (val == null ? "null" : val.length));
             }
+            WriteBatchWithIndex batch = pendingBatch();
             if (val != null) {
                 if (db == null) {
                     log.error("db is null");
+                } else if (batch != null) {
+                    batch.put(columnFamily, key, val);
                 } else {
-                    db.put(key, val);
+                    db.put(columnFamily, key, val);
                 }
+            } else if (batch != null) {
+                batch.delete(columnFamily, key);
             } else {
-                db.delete(key);
+                db.delete(columnFamily, key);
             }
             if (log.isTraceEnabled()) {
                 log.trace(
@@ -249,7 +263,10 @@ public class RocksdbKVSource implements KVSource<byte[], byte[]> {
             if (log.isTraceEnabled()) {
                 log.trace("~> RocksdbKVSource.get(): " + name + ", key: " + Hex.encodeHexString(key));
             }
-            byte[] ret = db.get(readOpts, key);
+            WriteBatchWithIndex batch = pendingBatch();
+            byte[] ret = batch != null
+                    ? batch.getFromBatchAndDB(db, columnFamily, readOpts, key)
+                    : db.get(columnFamily, readOpts, key);
             if (log.isTraceEnabled()) {
                 log.trace(
                         "<~ RocksdbKVSource.get(): "
@@ -276,7 +293,12 @@ public class RocksdbKVSource implements KVSource<byte[], byte[]> {
             if (log.isTraceEnabled()) {
                 log.trace("~> RocksdbKVSource.delete(): " + name + ", key: " + Hex.encodeHexString(key));
             }
-            db.delete(key);
+            WriteBatchWithIndex batch = pendingBatch();
+            if (batch != null) {
+                batch.delete(columnFamily, key);
+            } else {
+                db.delete(columnFamily, key);
+            }
             if (log.isTraceEnabled()) {
                 log.trace("<~ RocksdbKVSource.delete(): " + name + ", key: " + Hex.encodeHexString(key));
             }
@@ -295,7 +317,7 @@ public class RocksdbKVSource implements KVSource<byte[], byte[]> {
             if (log.isTraceEnabled()) {
                 log.trace("~> RocksdbKVSource.keys(): " + name);
             }
-            try (RocksIterator iterator = db.newIterator()) {
+            try (RocksIterator iterator = newIterator(null)) {
                 Set<byte[]> result = new HashSet<>();
                 for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
                     result.add(iterator.key());
@@ -347,9 +369,14 @@ public class RocksdbKVSource implements KVSource<byte[], byte[]> {
 
     @Override
     public void fetchPrefix(byte[] key, Function<Pair<byte[], byte[]>, Boolean> func) {
+        fetchPrefix(key, key, func);
+    }
+
+    @Override
+    public void fetchPrefix(byte[] key, byte[] start, Function<Pair<byte[], byte[]>, Boolean> func) {
         resetDbLock.readLock().lock();
-        try (RocksIterator it = db.newIterator(readOpts)) {
-            for (it.seek(key); it.isValid(); it.next()) {
+        try (RocksIterator it = newIterator(readOpts)) {
+            for (it.seek(start); it.isValid(); it.next()) {
                 if (BytesUtils.keyStartsWith(it.key(), key)) {
                     if (func.apply(Pair.of(it.key(), it.value()))) {
                         return;
@@ -367,6 +394,55 @@ public class RocksdbKVSource implements KVSource<byte[], byte[]> {
         }
     }
 
+    /**
+     * Iterates the committed content of this source, e.g. for bulk export.
+     */
+    public RocksIterator newIterator() {
+        return db.newIterator(columnFamily);
+    }
+
+    private RocksIterator newIterator(ReadOptions options) {
+        RocksIterator base = options == null ? db.newIterator(columnFamily) : db.newIterator(columnFamily, options);
+        WriteBatchWithIndex batch = pendingBatch();
+        return batch != null ? batch.newIteratorWithBase(columnFamily, base) : base;
+    }
+
+    @Override
+    public boolean isInBatch() {
+        return unitOfWork != null && unitOfWork.isActive();
+    }
+
+    @Override
+    public void beforeCommit(Runnable action) {
+        if (unitOfWork == null) {
+            action.run();
+        } else {
+            unitOfWork.beforeCommit(action);
+        }
+    }
+
+    @Override
+    public void afterCommit(Runnable action) {
+        if (unitOfWork == null) {
+            action.run();
+        } else {
+            unitOfWork.afterCommit(action);
+        }
+    }
+
+    @Override
+    public void afterCompletion(Consumer<Boolean> action) {
+        if (unitOfWork == null) {
+            action.accept(true);
+        } else {
+            unitOfWork.afterCompletion(action);
+        }
+    }
+
+    private WriteBatchWithIndex pendingBatch() {
+        return unitOfWork == null ? null : unitOfWork.batchFor(db);
+    }
+
     @Override
     public void close() {
         resetDbLock.writeLock().lock();
@@ -0,0 +1,190 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.db.rocksdb;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatchWithIndex;
+import org.rocksdb.WriteOptions;
+
+/**
+ * Groups the writes a thread issues through a set of {@link RocksdbKVSource}s into one
+ * {@link WriteBatchWithIndex} per underlying {@link RocksDB}, and applies them when the outermost
+ * unit of work returns. If the outermost unit throws, its writes are discarded. Nested units join the
+ * enclosing one, so a failure an enclosing unit catches does not discard anything. While a unit is open,
+ * reads issued by the same thread see its pending writes; other threads keep reading the committed state.
+ * <p>
+ * The batches are written one database after the other, so only a factory that keeps every store in one
+ * database ({@code node.store.singleDb}) commits a unit atomically. With one database per store a crash
+ * between two batches leaves the stores written so far ahead of the others.
+ */
+@Slf4j
+public class RocksdbUnitOfWork {
+
+    private final ThreadLocal<Pending> current = new ThreadLocal<>();
+
+    public <T> T execute(Supplier<T> work) {
+        Pending pending = current.get();
+        if (pending == null) {
+            pending = new Pending();
+            current.set(pending);
+        }
+        pending.depth++;
+        boolean done = false;
+        try {
+            T result = work.get();
+            if (pending.depth == 1) {
+                // still open, so writes of the callbacks join the batches
+                pending.beforeCommit();
+            }
+            done = true;
+            return result;
+        } finally {
+            if (--pending.depth == 0) {
+                current.remove();
+                if (done) {
+                    pending.commit();
+                } else {
+                    pending.discard();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the calling thread has a unit of work open
+     */
+    public boolean isActive() {
+        return current.get() != null;
+    }
+
+    /**
+     * Runs {@code action} when the outermost unit of work of the calling thread has returned, before its
+     * batches are committed, or right away when no unit is open. Writes of the action join the batches.
+     */
+    public void beforeCommit(Runnable action) {
+        Pending pending = current.get();
+        if (pending == null) {
+            action.run();
+        } else {
+            pending.beforeCommit.add(action);
+        }
+    }
+
+    /**
+     * Runs {@code action} after the unit of work of the calling thread is committed, or right away when no
+     * unit is open. The action is dropped if the unit is discarded.
+     */
+    public void afterCommit(Runnable action) {
+        afterCompletion(committed -> {
+            if (committed) {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Calls {@code action} with true after the unit of work of the calling thread is committed, or with false
+     * if it is discarded or its commit fails. Called with true right away when no unit is open.
+     */
+    public void afterCompletion(Consumer<Boolean> action) {
+        Pending pending = current.get();
+        if (pending == null) {
+            action.accept(true);
+        } else {
+            pending.afterCompletion.add(action);
+        }
+    }
+
+    /**
+     * @return the batch collecting writes to {@code db} for the calling thread, or null when no unit
+     * of work is open
+     */
+    public WriteBatchWithIndex batchFor(RocksDB db) {
+        Pending pending = current.get();
+        if (pending == null) {
+            return null;
+        }
+        return pending.batches.computeIfAbsent(db, k -> new WriteBatchWithIndex(true));
+    }
+
+    private static class Pending {
+
+        private final Map<RocksDB, WriteBatchWithIndex> batches = new IdentityHashMap<>();
+        private final List<Runnable> beforeCommit = new ArrayList<>();
+        private final List<Consumer<Boolean>> afterCompletion = new ArrayList<>();
+        private int depth;
+
+        private void beforeCommit() {
+            // callbacks may register more callbacks
+            for (int i = 0; i < beforeCommit.size(); i++) {
+                beforeCommit.get(i).run();
+            }
+        }
+
+        private void commit() {
+            boolean committed = false;
+            try (WriteOptions writeOptions = new WriteOptions()) {
+                for (Map.Entry<RocksDB, WriteBatchWithIndex> entry : batches.entrySet()) {
+                    if (entry.getValue().count() > 0) {
+                        entry.getKey().write(writeOptions, entry.getValue());
+                    }
+                }
+                committed = true;
+            } catch (RocksDBException e) {
+                log.error("Failed to commit write batch", e);
+                throw new RuntimeException(e);
+            } finally {
+                close();
+                complete(committed);
+            }
+        }
+
+        private void discard() {
+            int count = batches.values().stream().mapToInt(WriteBatchWithIndex::count).sum();
+            if (count > 0) {
+                log.warn("Discarded {} writes of a failed unit of work", count);
+            }
+            close();
+            complete(false);
+        }
+
+        private void complete(boolean committed) {
+            afterCompletion.forEach(action -> action.accept(committed));
+        }
+
+        private void close() {
+            batches.values().forEach(WriteBatchWithIndex::close);
+            batches.clear();
+        }
+    }
+}
@@ -23,13 +23,9 @@
  */
 package io.xdag.db.rocksdb;
 
-import com.esotericsoftware.kryo.Kryo;
-import com.esotericsoftware.kryo.KryoException;
-import com.esotericsoftware.kryo.io.Input;
-import com.esotericsoftware.kryo.io.Output;
-import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
 import io.xdag.core.*;
 import io.xdag.crypto.Hash;
+import io.xdag.crypto.Keys;
 import io.xdag.crypto.Sign;
 import io.xdag.db.AddressStore;
 import io.xdag.db.BlockStore;
@@ -47,17 +43,22 @@ import org.apache.tuweni.units.bigints.UInt64;
 import org.bouncycastle.util.encoders.Hex;
 import org.hyperledger.besu.crypto.KeyPair;
 import org.hyperledger.besu.crypto.SECPSignature;
-import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.rocksdb.RocksIterator;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static io.xdag.config.Constants.BI_MAIN;
 import static io.xdag.config.Constants.BI_OURS;
+import static io.xdag.db.AddressStore.ADDRESS;
 import static io.xdag.db.AddressStore.ADDRESS_SIZE;
 import static io.xdag.db.BlockStore.*;
 import static io.xdag.utils.BasicUtils.compareAmountTo;
@@ -67,7 +68,34 @@ public class SnapshotStoreImpl implements SnapshotStore {
 
     private final RocksdbKVSource snapshotSource;
 
-    private final Kryo kryo;
+    /**
+     * snapshot keys are imported in this many ranges
+     */
+    public static final int IMPORT_RANGES = 16;
+    /**
+     * block info keys are prefix | hashlow and the first 8 bytes of a hashlow are always zero, so they are split on
+     * the first hash byte after them
+     */
+    static final int BLOCK_INFO_SPLIT_OFFSET = 9;
+    /**
+     * address keys are prefix | address, split on the first address byte
+     */
+    static final int ADDRESS_SPLIT_OFFSET = 1;
+    /**
+     * entries written per batch and checkpoint
+     */
+    public static final int CHECKPOINT_INTERVAL = 4096;
+    /**
+     * <SNAPSHOT_CHECKPOINT range, progress> of an import that has not finished
+     */
+    public static final byte SNAPSHOT_CHECKPOINT = (byte) 0xf0;
+
+    private final KryoCodec codec;
+    /**
+     * optional, gives each imported chunk one write batch
+     */
+    private final DatabaseFactory dbFactory;
+    private final int importThreads;
     @Getter
     private XAmount ourBalance = XAmount.ZERO;
     @Getter
@@ -79,9 +107,15 @@ public class SnapshotStoreImpl implements SnapshotStore {
 
 
     public SnapshotStoreImpl(RocksdbKVSource snapshotSource) {
+        this(snapshotSource, null, Runtime.getRuntime().availableProcessors());
+    }
+
+    public SnapshotStoreImpl(RocksdbKVSource snapshotSource, DatabaseFactory dbFactory, int importThreads) {
         this.snapshotSource = snapshotSource;
-        this.kryo = new Kryo();
-        kryoRegister();
+        this.dbFactory = dbFactory;
+        this.importThreads = Math.max(1, importThreads);
+        this.codec = new KryoCodec(BigInteger.class, byte[].class, BlockInfo.class, XdagStats.class,
+                XdagTopStatus.class, SnapshotInfo.class, UInt64.class, XAmount.class, PreBlockInfo.class);
     }
 
     @Override
@@ -112,7 +146,7 @@ public class SnapshotStoreImpl implements SnapshotStore {
     }
 
     public void makeSnapshot(RocksdbKVSource blockSource, RocksdbKVSource indexSource, boolean b) {
-        try (RocksIterator iter = indexSource.getDb().newIterator()) {
+        try (RocksIterator iter = indexSource.newIterator()) {
             for (iter.seek(new byte[]{HASH_BLOCK_INFO}); iter.isValid() && iter.key()[0] < SUMS_BLOCK_INFO; iter.next()) {
                 PreBlockInfo preBlockInfo;
                 BlockInfo blockInfo = new BlockInfo();
@@ -122,7 +156,7 @@ public class SnapshotStoreImpl implements SnapshotStore {
                             preBlockInfo = (PreBlockInfo) deserialize(iter.value(), PreBlockInfo.class);
                             setBlockInfo(blockInfo, preBlockInfo);
                         } else {
-                            blockInfo = (BlockInfo) deserialize(iter.value(), BlockInfo.class);
+                            blockInfo = deserializeBlockInfo(iter.value());
                         }
                     } catch (DeserializationException e) {
 //                        log.error("hash low:{}", Hex.toHexString(blockInfo.getHashlow()));
@@ -163,127 +197,272 @@ public class SnapshotStoreImpl implements SnapshotStore {
     }
 
     public void saveSnapshotToIndex(BlockStore blockStore, TransactionHistoryStore txHistoryStore, List<KeyPair> keys,long snapshotTime) {
-        try (RocksIterator iter = snapshotSource.getDb().newIterator()) {
-            for (iter.seekToFirst(); iter.isValid(); iter.next()) {
-                if (iter.key()[0] == HASH_BLOCK_INFO) {
-                    BlockInfo blockInfo = new BlockInfo();
-                    if (iter.value() != null) {
-                        try {
-                            blockInfo = (BlockInfo) deserialize(iter.value(), BlockInfo.class);
-                        } catch (DeserializationException e) {
-                            log.error("hash low:" + Hex.toHexString(blockInfo.getHashlow()));
-                            log.error("can't deserialize data:{}", Hex.toHexString(iter.value()));
-                            log.error(e.getMessage(), e);
-                        }
-                        int flag = blockInfo.getFlags();
-                        int keyIndex = -1;
-                        //Determine if it is your own address
-                        SnapshotInfo snapshotInfo = blockInfo.getSnapshotInfo();
-                        if (blockInfo.getSnapshotInfo() != null) {
-                            //public key exists
-                            if (snapshotInfo.getType()) {
-                                byte[] ecKeyPair = snapshotInfo.getData();
-                                for (int i = 0; i < keys.size(); i++) {
-                                    KeyPair key = keys.get(i);
-                                    if (Bytes.wrap(key.getPublicKey().asEcPoint(Sign.CURVE).getEncoded(true)).compareTo(Bytes.wrap(ecKeyPair)) == 0) {
-                                        flag |= BI_OURS;
-                                        keyIndex = i;
-                                        ourBalance = ourBalance.add(blockInfo.getAmount());
-                                        break;
-                                    }
-                                }
-                            } else {    //Verify signature
-                                Block block = new Block(new XdagBlock(snapshotInfo.getData()));
-                                SECPSignature outSig = block.getOutsig();
-                                for (int i = 0; i < keys.size(); i++) {
-                                    KeyPair keyPair = keys.get(i);
-                                    byte[] publicKeyBytes = keyPair.getPublicKey().asEcPoint(Sign.CURVE).getEncoded(true);
-                                    Bytes digest = Bytes
-                                            .wrap(block.getSubRawData(block.getOutsigIndex() - 2), Bytes.wrap(publicKeyBytes));
-                                    Bytes32 hash = Hash.hashTwice(Bytes.wrap(digest));
-                                    if (Sign.SECP256K1.verify(hash, Sign.toCanonical(outSig), keyPair.getPublicKey())) {
-                                        flag |= BI_OURS;
-                                        keyIndex = i;
-                                        ourBalance = ourBalance.add(blockInfo.getAmount());
-                                        break;
-                                    }
-                                }
-                            }
-                        }
-                        blockInfo.setFlags(flag);
-                        if ((flag & BI_OURS) != 0 && keyIndex > -1) {
-                            blockStore.saveOurBlock(keyIndex, blockInfo.getHashlow());
-                        }
-                        allBalance = allBalance.add(blockInfo.getAmount());
-                        blockStore.saveBlockInfo(blockInfo);
-
-                        if(txHistoryStore != null) {
-                            XdagField.FieldType fieldType = XdagField.FieldType.XDAG_FIELD_SNAPSHOT;
-                            Address address = new Address(Bytes32.wrap(blockInfo.getHashlow()), fieldType, blockInfo.getAmount(),false);
-
-                            TxHistory txHistory = new TxHistory();
-                            txHistory.setAddress(address);
-                            txHistory.setHash(BasicUtils.hash2Address(address.getAddress()));
-                            if(blockInfo.getRemark() != null) {
-                                txHistory.setRemark(new String(blockInfo.getRemark(), StandardCharsets.UTF_8));
-                            }
-                            txHistory.setTimestamp(snapshotTime);
-                            txHistoryStore.batchSaveTxHistory(txHistory);
-                        }
-                    }
-                } else if (iter.key()[0] == SNAPSHOT_PRESEED) {
-                    blockStore.savePreSeed(iter.value());
-                }
+        try {
+            byte[] preSeed = snapshotSource.get(new byte[]{SNAPSHOT_PRESEED});
+            if (preSeed != null) {
+                blockStore.savePreSeed(preSeed);
             }
+            importRanges(HASH_BLOCK_INFO, BLOCK_INFO_SPLIT_OFFSET, txHistoryStore,
+                    (key, value, progress) -> saveBlockInfo(blockStore, keys, snapshotTime, value, progress));
             System.out.println("amount in blocks: " + allBalance.toDecimal(9, XUnit.XDAG).toPlainString());
-            if (txHistoryStore != null) {
-                txHistoryStore.batchSaveTxHistory(null);
-            }
         } catch (Exception e) {
             log.error(e.getMessage(), e);
         }
     }
 
+    private void saveBlockInfo(BlockStore blockStore, List<KeyPair> keys, long snapshotTime, byte[] value,
+            RangeProgress progress) {
+        BlockInfo blockInfo = new BlockInfo();
+        if (value == null) {
+            return;
+        }
+        try {
+            blockInfo = deserializeBlockInfo(value);
+        } catch (DeserializationException e) {
+            log.error("hash low:" + Hex.toHexString(blockInfo.getHashlow()));
+            log.error("can't deserialize data:{}", Hex.toHexString(value));
+            log.error(e.getMessage(), e);
+        }
+        int flag = blockInfo.getFlags();
+        int keyIndex = -1;
+        //Determine if it is your own address
+        SnapshotInfo snapshotInfo = blockInfo.getSnapshotInfo();
+        if (blockInfo.getSnapshotInfo() != null) {
+            //public key exists
+            if (snapshotInfo.getType()) {
+                byte[] ecKeyPair = snapshotInfo.getData();
+                for (int i = 0; i < keys.size(); i++) {
+                    KeyPair key = keys.get(i);
+                    if (Keys.toCompressedBytes(key.getPublicKey()).compareTo(Bytes.wrap(ecKeyPair)) == 0) {
+                        flag |= BI_OURS;
+                        keyIndex = i;
+                        progress.ours = progress.ours.add(blockInfo.getAmount());
+                        break;
+                    }
+                }
+            } else {    //Verify signature
+                Block block = new Block(new XdagBlock(snapshotInfo.getData()));
+                SECPSignature outSig = block.getOutsig();
+                for (int i = 0; i < keys.size(); i++) {
+                    KeyPair keyPair = keys.get(i);
+                    Bytes digest = Bytes
+                            .wrap(block.getSubRawData(block.getOutsigIndex() - 2),
+                                    Keys.toCompressedBytes(keyPair.getPublicKey()));
+                    Bytes32 hash = Hash.hashTwice(Bytes.wrap(digest));
+                    if (Sign.SECP256K1.verify(hash, Sign.toCanonical(outSig), keyPair.getPublicKey())) {
+                        flag |= BI_OURS;
+                        keyIndex = i;
+                        progress.ours = progress.ours.add(blockInfo.getAmount());
+                        break;
+                    }
+                }
+            }
+        }
+        blockInfo.setFlags(flag);
+        if ((flag & BI_OURS) != 0 && keyIndex > -1) {
+            blockStore.saveOurBlock(keyIndex, blockInfo.getHashlow());
+            // the mined block index is marked as built before the import, fill it for our main blocks here
+            if ((flag & BI_MAIN) != 0 && blockInfo.getHeight() > 0) {
+                blockStore.saveMinedBlock(blockInfo.getHeight(), blockInfo.getHashlow());
+            }
+        }
+        progress.all = progress.all.add(blockInfo.getAmount());
+        blockStore.saveBlockInfo(blockInfo);
+
+        XdagField.FieldType fieldType = XdagField.FieldType.XDAG_FIELD_SNAPSHOT;
+        Address address = new Address(Bytes32.wrap(blockInfo.getHashlow()), fieldType, blockInfo.getAmount(),false);
+
+        TxHistory txHistory = new TxHistory();
+        txHistory.setAddress(address);
+        txHistory.setHash(BasicUtils.hash2Address(address.getAddress()));
+        if(blockInfo.getRemark() != null) {
+            txHistory.setRemark(new String(blockInfo.getRemark(), StandardCharsets.UTF_8));
+        }
+        txHistory.setTimestamp(snapshotTime);
+        progress.txHistories.add(txHistory);
+    }
+
 
     @Override
     public void saveAddress(BlockStore blockStore, AddressStore addressStore, TransactionHistoryStore txHistoryStore, List<KeyPair> keys, long snapshotTime) {
-        try (RocksIterator iter = snapshotSource.getDb().newIterator()) {
-            for (iter.seekToFirst(); iter.isValid(); iter.next()) {
-                if (iter.key().length < 20) {
-                    if (iter.key()[0] == ADDRESS_SIZE) {
-                        addressStore.saveAddressSize(iter.value());
-                    }
-                } else {
-                    byte[] address = iter.key();
-                    XAmount balance = XAmount.ofXAmount(UInt64.fromBytes(Bytes.wrap(iter.value())).toLong());
-                    for (KeyPair keyPair : keys) {
-                        byte[] publicKeyBytes = keyPair.getPublicKey().asEcPoint(Sign.CURVE).getEncoded(true);
-                        byte[] myAddress = Hash.sha256hash160(Bytes.wrap(publicKeyBytes));
-                        if (BytesUtils.compareTo(address, 1, 20, myAddress, 0, 20) == 0) {
-                            ourBalance = ourBalance.add(balance);
-                        }
-                    }
-                    allBalance = allBalance.add(balance); //calculate the address balance
-                    addressStore.snapshotAddress(address, balance);
-                    if (txHistoryStore != null) {
-                        XdagField.FieldType fieldType = XdagField.FieldType.XDAG_FIELD_SNAPSHOT;
-                        Address addr = new Address(BytesUtils.arrayToByte32(Arrays.copyOfRange(address, 1, 21)),
-                                fieldType, balance, true);
-                        TxHistory txHistory = new TxHistory();
-                        txHistory.setAddress(addr);
-                        txHistory.setHash(BasicUtils.hash2PubAddress(addr.getAddress()));
-                        txHistory.setRemark("snapshot");
-                        txHistory.setTimestamp(snapshotTime);
-                        txHistoryStore.saveTxHistory(txHistory);
-                    }
+        byte[] addressSize = snapshotSource.get(new byte[]{ADDRESS_SIZE});
+        if (addressSize != null) {
+            addressStore.saveAddressSize(addressSize);
+        }
+        importRanges(ADDRESS, ADDRESS_SPLIT_OFFSET, txHistoryStore, (address, value, progress) -> {
+            XAmount balance = XAmount.ofXAmount(UInt64.fromBytes(Bytes.wrap(value)).toLong());
+            for (KeyPair keyPair : keys) {
+                byte[] myAddress = Keys.toBytesAddress(keyPair);
+                if (BytesUtils.compareTo(address, 1, 20, myAddress, 0, 20) == 0) {
+                    progress.ours = progress.ours.add(balance);
                 }
             }
-            System.out.println("amount in address: " + allBalance.toDecimal(9, XUnit.XDAG).toPlainString());
-            //sava Address all Balance as AMOUNT_SUM
-            addressStore.savaAmountSum(allBalance);
+            progress.all = progress.all.add(balance); //calculate the address balance
+            addressStore.snapshotAddress(address, balance);
+            XdagField.FieldType fieldType = XdagField.FieldType.XDAG_FIELD_SNAPSHOT;
+            Address addr = new Address(BytesUtils.arrayToByte32(Arrays.copyOfRange(address, 1, 21)),
+                    fieldType, balance, true);
+            TxHistory txHistory = new TxHistory();
+            txHistory.setAddress(addr);
+            txHistory.setHash(BasicUtils.hash2PubAddress(addr.getAddress()));
+            txHistory.setRemark("snapshot");
+            txHistory.setTimestamp(snapshotTime);
+            progress.txHistories.add(txHistory);
+        });
+        System.out.println("amount in address: " + allBalance.toDecimal(9, XUnit.XDAG).toPlainString());
+        //sava Address all Balance as AMOUNT_SUM
+        addressStore.savaAmountSum(allBalance);
+    }
+
+    /**
+     * Imports all {@code prefix} keys of the snapshot, split into {@link #IMPORT_RANGES} ranges by the key byte at
+     * {@code splitOffset}. The bytes between the prefix and {@code splitOffset} must be the same for every key, so
+     * that each range is one run in key order. Ranges run in parallel. Each range is written in chunks of
+     * {@link #CHECKPOINT_INTERVAL} entries, one write batch per chunk, followed by a checkpoint so an interrupted
+     * import resumes after the last finished chunk. The checkpoints are removed once every range is done.
+     */
+    void importRanges(byte prefix, int splitOffset, TransactionHistoryStore txHistoryStore,
+            EntryImporter importer) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(importThreads, IMPORT_RANGES),
+                new BasicThreadFactory.Builder().namingPattern("snapshot-import-%d").daemon(true).build());
+        try {
+            List<Future<RangeProgress>> futures = new ArrayList<>(IMPORT_RANGES);
+            for (int i = 0; i < IMPORT_RANGES; i++) {
+                int range = i;
+                futures.add(executor.submit(() -> importRange(prefix, splitOffset, range, txHistoryStore, importer)));
+            }
+            for (Future<RangeProgress> future : futures) {
+                RangeProgress progress = future.get();
+                ourBalance = ourBalance.add(progress.ours);
+                allBalance = allBalance.add(progress.all);
+            }
+            for (int i = 0; i < IMPORT_RANGES; i++) {
+                snapshotSource.delete(checkpointKey(i));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
     }
 
+    private RangeProgress importRange(byte prefix, int splitOffset, int range,
+            TransactionHistoryStore txHistoryStore, EntryImporter importer) {
+        RangeProgress progress = loadCheckpoint(range);
+        if (progress.done) {
+            log.info("Snapshot range {} of {} already imported", range, Hex.toHexString(new byte[]{prefix}));
+            return progress;
+        }
+        try (RocksIterator iter = snapshotSource.newIterator()) {
+            if (progress.lastKey != null) {
+                iter.seek(progress.lastKey);
+                if (iter.isValid() && Arrays.equals(iter.key(), progress.lastKey)) {
+                    iter.next();
+                }
+            } else {
+                byte[] start = new byte[splitOffset + 1];
+                start[0] = prefix;
+                start[start.length - 1] = (byte) (range * (256 / IMPORT_RANGES));
+                iter.seek(start);
+            }
+            while (!progress.done) {
+                executeInBatch(() -> {
+                    for (int n = 0; n < CHECKPOINT_INTERVAL && inRange(iter, prefix, splitOffset, range);
+                            n++, iter.next()) {
+                        byte[] key = iter.key();
+                        importer.accept(key, iter.value(), progress);
+                        progress.lastKey = key;
+                    }
+                });
+                progress.done = !inRange(iter, prefix, splitOffset, range);
+                saveTxHistories(txHistoryStore, progress.txHistories);
+                progress.txHistories.clear();
+                saveCheckpoint(range, progress);
+            }
+        }
+        return progress;
+    }
+
+    private static boolean inRange(RocksIterator iter, byte prefix, int splitOffset, int range) {
+        if (!iter.isValid()) {
+            return false;
+        }
+        byte[] key = iter.key();
+        return key[0] == prefix && rangeOf(key, splitOffset) == range;
+    }
+
+    private static int rangeOf(byte[] key, int splitOffset) {
+        return key.length > splitOffset ? (key[splitOffset] & 0xff) / (256 / IMPORT_RANGES) : 0;
+    }
+
+    private void executeInBatch(Runnable work) {
+        if (dbFactory == null) {
+            work.run();
+        } else {
+            dbFactory.executeInBatch(work);
+        }
+    }
+
+    private void saveTxHistories(TransactionHistoryStore txHistoryStore, List<TxHistory> txHistories) {
+        if (txHistoryStore == null || txHistories.isEmpty()) {
+            return;
+        }
+        // the mysql batch writer keeps one statement, ranges take turns
+        synchronized (txHistoryStore) {
+            for (TxHistory txHistory : txHistories) {
+                txHistoryStore.batchSaveTxHistory(txHistory);
+            }
+            txHistoryStore.batchSaveTxHistory(null);
+        }
+    }
+
+    private static byte[] checkpointKey(int range) {
+        return new byte[]{SNAPSHOT_CHECKPOINT, (byte) range};
+    }
+
+    /**
+     * done flag, our balance, all balance, last imported key
+     */
+    void saveCheckpoint(int range, RangeProgress progress) {
+        byte[] value = BytesUtils.merge(new byte[]{(byte) (progress.done ? 1 : 0)},
+                BytesUtils.longToBytes(progress.ours.toXAmount().toLong(), false),
+                BytesUtils.longToBytes(progress.all.toXAmount().toLong(), false),
+                progress.lastKey == null ? new byte[0] : progress.lastKey);
+        snapshotSource.put(checkpointKey(range), value);
+    }
+
+    private RangeProgress loadCheckpoint(int range) {
+        RangeProgress progress = new RangeProgress();
+        byte[] value = snapshotSource.get(checkpointKey(range));
+        if (value != null && value.length >= 17) {
+            progress.done = value[0] == 1;
+            progress.ours = XAmount.ofXAmount(BytesUtils.bytesToLong(value, 1, false));
+            progress.all = XAmount.ofXAmount(BytesUtils.bytesToLong(value, 9, false));
+            progress.lastKey = value.length > 17 ? Arrays.copyOfRange(value, 17, value.length) : null;
+        }
+        return progress;
+    }
+
+    interface EntryImporter {
+
+        void accept(byte[] key, byte[] value, RangeProgress progress);
+    }
+
+    /**
+     * What one range has imported so far.
+     */
+    static class RangeProgress {
+
+        XAmount ours = XAmount.ZERO;
+        XAmount all = XAmount.ZERO;
+        byte[] lastKey;
+        boolean done;
+        final List<TxHistory> txHistories = new ArrayList<>();
+    }
+
     public void save(RocksIterator iter, BlockInfo blockInfo) {
         byte[] value = null;
         try {
@@ -294,45 +473,17 @@ public class SnapshotStoreImpl implements SnapshotStore {
         snapshotSource.put(iter.key(), value);
     }
 
-    public Object deserialize(final byte[] bytes, Class<?> type) throws DeserializationException {
-        synchronized (kryo) {
-            try {
-                final ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);
-                final Input input = new Input(inputStream);
-                return kryo.readObject(input, type);
-            } catch (final IllegalArgumentException | KryoException | NullPointerException exception) {
-                log.debug("Deserialize data:{}", Hex.toHexString(bytes));
-                throw new DeserializationException(exception.getMessage(), exception);
-            }
-        }
+    private BlockInfo deserializeBlockInfo(final byte[] bytes) throws DeserializationException {
+        // the node index stores block infos in the fixed layout, snapshot files still use kryo
+        return BlockInfoCodec.isEncoded(bytes) ? BlockInfoCodec.decode(bytes) : codec.deserialize(bytes, BlockInfo.class);
     }
 
-    public byte[] serialize(final Object obj) throws SerializationException {
-        synchronized (kryo) {
-            try {
-                final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                final Output output = new Output(outputStream);
-                kryo.writeObject(output, obj);
-                output.flush();
-                output.close();
-                return outputStream.toByteArray();
-            } catch (final IllegalArgumentException | KryoException exception) {
-                throw new SerializationException(exception.getMessage(), exception);
-            }
-        }
+    public Object deserialize(final byte[] bytes, Class<?> type) throws DeserializationException {
+        return codec.deserialize(bytes, type);
     }
 
-    private void kryoRegister() {
-        kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
-        kryo.register(BigInteger.class);
-        kryo.register(byte[].class);
-        kryo.register(BlockInfo.class);
-        kryo.register(XdagStats.class);
-        kryo.register(XdagTopStatus.class);
-        kryo.register(SnapshotInfo.class);
-        kryo.register(UInt64.class);
-        kryo.register(XAmount.class);
-        kryo.register(PreBlockInfo.class);
+    public byte[] serialize(final Object obj) throws SerializationException {
+        return codec.serialize(obj);
     }
 
 }
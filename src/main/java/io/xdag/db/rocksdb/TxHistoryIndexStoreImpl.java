@@ -0,0 +1,309 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.db.rocksdb;
+
+import com.google.common.collect.Lists;
+import io.xdag.core.Address;
+import io.xdag.core.TxHistory;
+import io.xdag.core.TxHistoryPage;
+import io.xdag.core.XAmount;
+import io.xdag.core.XdagField;
+import io.xdag.db.TransactionHistoryStore;
+import io.xdag.db.TxHistoryQuery;
+import io.xdag.utils.BasicUtils;
+import io.xdag.utils.XdagTime;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tuweni.bytes.Bytes32;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static io.xdag.config.Constants.MIN_GAS;
+import static io.xdag.core.XdagField.FieldType.XDAG_FIELD_INPUT;
+import static io.xdag.db.TxHistoryQuery.COUNT_LIMIT;
+import static io.xdag.db.TxHistoryQuery.totalPage;
+import static io.xdag.utils.BasicUtils.hash2Address;
+import static io.xdag.utils.BasicUtils.hash2byte;
+import static io.xdag.utils.WalletUtils.checkAddress;
+import static io.xdag.utils.WalletUtils.toBase58;
+
+/**
+ * Transaction history kept in RocksDB instead of MySQL.
+ * <p>
+ * Entries are keyed {@code 0x01 | address | Long.MAX_VALUE - time | hash | seq}, so the history of an address
+ * is one contiguous range, newest first, and a time bounded page is a single seek plus a short iteration.
+ * A per address counter under {@code 0x02 | address} answers unbounded totals without scanning. Writes go
+ * through the source, so inside {@link DatabaseFactory#executeInBatch} they join the block import batch.
+ */
+@Slf4j
+public class TxHistoryIndexStoreImpl implements TransactionHistoryStore {
+
+    static final byte HISTORY = 0x01;
+    static final byte COUNT = 0x02;
+    /**
+     * Type byte plus address, the fixed prefix every lookup stays within.
+     */
+    public static final int PREFIX_LENGTH = 1 + 32;
+    private static final int SUFFIX_LENGTH = 8 + 32 + 1;
+    private static final int MAX_SEQ = 0xff;
+
+    private final KVSource<byte[], byte[]> txIndexSource;
+    private final long txPageSizeLimit;
+
+    public TxHistoryIndexStoreImpl(KVSource<byte[], byte[]> txIndexSource, long txPageSizeLimit) {
+        this.txIndexSource = txIndexSource;
+        this.txPageSizeLimit = txPageSizeLimit;
+    }
+
+    public void init() {
+        txIndexSource.init();
+    }
+
+    public void reset() {
+        txIndexSource.reset();
+    }
+
+    @Override
+    public synchronized boolean saveTxHistory(TxHistory txHistory) {
+        try {
+            Address address = txHistory.getAddress();
+            byte[] owner = ownerOf(address.getIsAddress() ? toBase58(hash2byte(address.getAddress()))
+                    : hash2Address(address.getAddress()));
+            long time = XdagTime.xdagTimestampToMs(txHistory.getTimestamp());
+            boolean pubHash = checkAddress(txHistory.getHash());
+            Bytes32 hash = pubHash ? BasicUtils.pubAddress2Hash(txHistory.getHash())
+                    : BasicUtils.address2Hash(txHistory.getHash());
+
+            // the same block may touch one address more than once, keep every entry
+            byte[] key = ByteBuffer.allocate(PREFIX_LENGTH + SUFFIX_LENGTH)
+                    .put(prefix(HISTORY, owner)).putLong(Long.MAX_VALUE - time).put(hash.toArray()).put((byte) 0)
+                    .array();
+            int seq = 0;
+            while (txIndexSource.get(key) != null) {
+                if (++seq > MAX_SEQ) {
+                    log.warn("Too many tx history entries for {} in one block", txHistory.getHash());
+                    return false;
+                }
+                key[key.length - 1] = (byte) seq;
+            }
+
+            XAmount amount = address.getType().equals(XDAG_FIELD_INPUT) ? address.getAmount().subtract(MIN_GAS)
+                    : address.getAmount();
+            byte[] remark = txHistory.getRemark() != null
+                    ? txHistory.getRemark().trim().getBytes(StandardCharsets.UTF_8) : new byte[0];
+            byte[] value = ByteBuffer.allocate(1 + 1 + 8 + remark.length)
+                    .put(address.getType().asByte()).put((byte) (pubHash ? 1 : 0)).putLong(amount.toLong())
+                    .put(remark).array();
+            txIndexSource.put(key, value);
+
+            byte[] countKey = prefix(COUNT, owner);
+            txIndexSource.put(countKey, ByteBuffer.allocate(8).putLong(count(countKey) + 1).array());
+            return true;
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Entries are written as they come, there is nothing to flush.
+     */
+    @Override
+    public boolean batchSaveTxHistory(TxHistory txHistory, int... cacheNum) {
+        return txHistory == null || saveTxHistory(txHistory);
+    }
+
+    @Override
+    public List<TxHistory> listTxHistoryByAddress(String address, int page, Object... parameters) {
+        return listTxHistoryPage(address, page, null, parameters).getTxHistories();
+    }
+
+    @Override
+    public TxHistoryPage listTxHistoryPage(String address, int page, String cursor, Object... parameters) {
+        TxHistoryQuery query = TxHistoryQuery.of(txPageSizeLimit, parameters);
+        int pageSize = query.getPageSize();
+        byte[] owner = ownerOf(address);
+        byte[] prefix = prefix(HISTORY, owner);
+        byte[] first = ByteBuffer.allocate(PREFIX_LENGTH + 8).put(prefix).putLong(Long.MAX_VALUE - query.getEnd())
+                .array();
+        long last = Long.MAX_VALUE - query.getStart();
+
+        try {
+            if (cursor == null) {
+                long total = query.isTimeBounded() ? countRange(prefix, first, last, Long.MAX_VALUE)
+                        : count(prefix(COUNT, owner));
+                List<TxHistory> txHistories = Lists.newArrayList();
+                long skip = (long) (page - 1) * pageSize;
+                long[] seen = {0};
+                txIndexSource.fetchPrefix(prefix, first, pair -> {
+                    if (invertedTime(pair.getKey()) > last) {
+                        return true;
+                    }
+                    if (seen[0]++ >= skip) {
+                        txHistories.add(toTxHistory(pair.getKey(), pair.getValue()));
+                    }
+                    return txHistories.size() == pageSize;
+                });
+                return new TxHistoryPage(txHistories, totalPage(total, pageSize), null, false);
+            }
+
+            Cursor from = Cursor.decode(cursor);
+            int totalPage;
+            boolean approximate;
+            byte[] start;
+            if (from == null) {
+                long total = query.isTimeBounded() ? countRange(prefix, first, last, COUNT_LIMIT + 1)
+                        : count(prefix(COUNT, owner));
+                approximate = query.isTimeBounded() && total > COUNT_LIMIT;
+                totalPage = totalPage(approximate ? COUNT_LIMIT : total, pageSize);
+                start = first;
+            } else {
+                totalPage = from.totalPage;
+                approximate = from.approximate;
+                // the smallest key after the last one returned
+                start = ByteBuffer.allocate(PREFIX_LENGTH + SUFFIX_LENGTH + 1).put(prefix).put(from.suffix)
+                        .put((byte) 0).array();
+            }
+
+            List<TxHistory> txHistories = Lists.newArrayList();
+            byte[][] lastKey = {null};
+            boolean[] hasMore = {false};
+            txIndexSource.fetchPrefix(prefix, start, pair -> {
+                if (invertedTime(pair.getKey()) > last) {
+                    return true;
+                }
+                if (txHistories.size() == pageSize) {
+                    hasMore[0] = true;
+                    return true;
+                }
+                txHistories.add(toTxHistory(pair.getKey(), pair.getValue()));
+                lastKey[0] = pair.getKey();
+                return false;
+            });
+            String next = hasMore[0]
+                    ? new Cursor(Arrays.copyOfRange(lastKey[0], PREFIX_LENGTH, lastKey[0].length), totalPage,
+                    approximate).encode()
+                    : null;
+            return new TxHistoryPage(txHistories, totalPage, next, approximate);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid tx history cursor: {}", cursor);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+        return TxHistoryPage.EMPTY;
+    }
+
+    @Override
+    public int getTxHistoryCount(String address) {
+        return (int) count(prefix(COUNT, ownerOf(address)));
+    }
+
+    private long count(byte[] countKey) {
+        byte[] value = txIndexSource.get(countKey);
+        return value == null ? 0 : ByteBuffer.wrap(value).getLong();
+    }
+
+    private long countRange(byte[] prefix, byte[] first, long last, long limit) {
+        long[] count = {0};
+        txIndexSource.fetchPrefix(prefix, first, pair -> invertedTime(pair.getKey()) > last || ++count[0] >= limit);
+        return count[0];
+    }
+
+    private static TxHistory toTxHistory(byte[] key, byte[] value) {
+        ByteBuffer k = ByteBuffer.wrap(key, PREFIX_LENGTH, SUFFIX_LENGTH);
+        long time = Long.MAX_VALUE - k.getLong();
+        byte[] hash = new byte[32];
+        k.get(hash);
+
+        ByteBuffer v = ByteBuffer.wrap(value);
+        XdagField.FieldType type = XdagField.FieldType.fromByte(v.get());
+        boolean pubHash = v.get() == 1;
+        XAmount amount = XAmount.of(v.getLong());
+        String remark = new String(value, v.position(), v.remaining(), StandardCharsets.UTF_8);
+
+        Bytes32 hashlow = Bytes32.wrap(hash);
+        TxHistory txHistory = new TxHistory();
+        txHistory.setHash(pubHash ? BasicUtils.hash2PubAddress(hashlow) : hash2Address(hashlow));
+        txHistory.setAddress(new Address(hashlow, type, amount, pubHash));
+        txHistory.setRemark(remark);
+        txHistory.setTimestamp(time);
+        return txHistory;
+    }
+
+    private static long invertedTime(byte[] key) {
+        return ByteBuffer.wrap(key, PREFIX_LENGTH, 8).getLong();
+    }
+
+    private static byte[] ownerOf(String address) {
+        return (checkAddress(address) ? BasicUtils.pubAddress2Hash(address) : BasicUtils.address2Hash(address))
+                .toArray();
+    }
+
+    private static byte[] prefix(byte type, byte[] owner) {
+        return ByteBuffer.allocate(PREFIX_LENGTH).put(type).put(owner).array();
+    }
+
+    /**
+     * Position after the last entry of a page, with the total of the first page carried along.
+     */
+    static final class Cursor {
+        private static final int SIZE = SUFFIX_LENGTH + 4 + 1;
+
+        final byte[] suffix;
+        final int totalPage;
+        final boolean approximate;
+
+        Cursor(byte[] suffix, int totalPage, boolean approximate) {
+            this.suffix = suffix;
+            this.totalPage = totalPage;
+            this.approximate = approximate;
+        }
+
+        String encode() {
+            ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+            buffer.put(suffix).putInt(totalPage).put((byte) (approximate ? 1 : 0));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+        }
+
+        /**
+         * Returns null for an empty token, i.e. the first page.
+         */
+        static Cursor decode(String token) {
+            if (token.isEmpty()) {
+                return null;
+            }
+            byte[] bytes = Base64.getUrlDecoder().decode(token);
+            if (bytes.length != SIZE) {
+                throw new IllegalArgumentException("Invalid cursor length " + bytes.length);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            byte[] suffix = new byte[SUFFIX_LENGTH];
+            buffer.get(suffix);
+            return new Cursor(suffix, buffer.getInt(), buffer.get() == 1);
+        }
+    }
+}
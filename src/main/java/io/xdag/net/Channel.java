@@ -32,7 +32,9 @@ import io.xdag.net.message.MessageQueue;
 import io.xdag.net.node.Node;
 import java.net.InetSocketAddress;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -50,6 +52,11 @@ public class Channel {
     private MessageQueue msgQueue;
     private boolean isActive;
     private XdagP2pHandler p2pHandler;
+    /**
+     * blocks received from this peer and not yet imported
+     */
+    @Setter(AccessLevel.NONE)
+    private final AtomicInteger pendingImports = new AtomicInteger();
 
     /**
      * Creates a new channel instance.
@@ -84,6 +91,30 @@ public class Channel {
         socket.close();
     }
 
+    /**
+     * Count a block queued for import, reading from the peer pauses once {@code limit} blocks are pending.
+     */
+    public void importQueued(int limit) {
+        if (pendingImports.incrementAndGet() >= limit) {
+            setAutoRead(false);
+        }
+    }
+
+    /**
+     * Count a block leaving the import queue, reading resumes once half of {@code limit} has drained.
+     */
+    public void importDone(int limit) {
+        if (pendingImports.decrementAndGet() <= limit / 2) {
+            setAutoRead(true);
+        }
+    }
+
+    private void setAutoRead(boolean autoRead) {
+        if (socket != null && socket.config().isAutoRead() != autoRead) {
+            socket.config().setAutoRead(autoRead);
+        }
+    }
+
     public MessageQueue getMessageQueue() {
         return msgQueue;
     }
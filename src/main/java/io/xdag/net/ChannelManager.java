@@ -28,6 +28,7 @@ import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import io.xdag.Kernel;
 import io.xdag.core.BlockWrapper;
+import io.xdag.net.message.consensus.NewBlockMessage;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -220,13 +221,15 @@ public class ChannelManager {
 //            Channel channel = activeChannels.get(blockWrapper.getRemotePeer().getPeerId());
 //            receive = channel != null ? new Node(channel.getRemoteIp(), channel.getRemotePort()) : null;
 //        }
+        // encoded and compressed once, then shared by every channel
+        NewBlockMessage msg = new NewBlockMessage(blockWrapper.getBlock(), blockWrapper.getTtl());
         for (Channel channel : activeChannels.values()) {
 //            Peer remotePeer = channel.getRemotePeer();
 //            if (StringUtils.equals(remotePeer.getIp(), receive.getIp()) && remotePeer.getPort() == receive.getPort()) {
 //                log.debug("not send to sender node");
 //                continue;
 //            }
-            channel.getP2pHandler().sendNewBlock(blockWrapper.getBlock(), blockWrapper.getTtl());
+            channel.getP2pHandler().sendNewBlock(msg);
         }
     }
 
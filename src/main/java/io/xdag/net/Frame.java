@@ -52,10 +52,13 @@ public class Frame {
     protected final int packetSize;    /* packet size,   4 bytes */
     protected final int bodySize;      /* body size,     4 bytes */
 
-    protected byte[] body;
+    /**
+     * body as a slice of the received or encoded buffer, released by whoever consumes the frame
+     */
+    protected ByteBuf body;
 
     public Frame(short version, byte compressType, byte packetType, int packetId, int packetSize, int bodySize,
-            byte[] body) {
+            ByteBuf body) {
         this.version = version;
         this.compressType = compressType;
         this.packetType = packetType;
@@ -73,6 +76,15 @@ public class Frame {
         return bodySize != packetSize;
     }
 
+    /**
+     * Releases the body, if any.
+     */
+    public void release() {
+        if (body != null && body.refCnt() > 0) {
+            body.release();
+        }
+    }
+
     /**
      * Writes frame header into the buffer.
      *
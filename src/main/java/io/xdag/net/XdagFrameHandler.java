@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.util.List;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageCodec;
 import io.xdag.config.Config;
@@ -46,6 +47,7 @@ public class XdagFrameHandler extends ByteToMessageCodec<Frame>  {
         // check version
         if (frame.getVersion() != Frame.VERSION) {
             log.error("Invalid frame version: {}", frame.getVersion());
+            frame.release();
             return;
         }
 
@@ -53,13 +55,15 @@ public class XdagFrameHandler extends ByteToMessageCodec<Frame>  {
         int bodySize = frame.getBodySize();
         if (bodySize < 0 || bodySize > config.getNodeSpec().getNetMaxFrameBodySize()) {
             log.error("Invalid frame body size: {}", bodySize);
+            frame.release();
             return;
         }
 
-        // create a buffer
-        ByteBuf buf = out.alloc().buffer(Frame.HEADER_SIZE + bodySize);
-        frame.writeHeader(buf);
-        buf.writeBytes(frame.getBody());
+        // header from the pooled allocator, body is added as a component instead of copied
+        ByteBuf header = ctx.alloc().buffer(Frame.HEADER_SIZE);
+        frame.writeHeader(header);
+        CompositeByteBuf buf = ctx.alloc().compositeBuffer(2);
+        buf.addComponents(true, header, frame.getBody());
 
         // NOTE: write() operation does not flush automatically
 
@@ -92,10 +96,8 @@ public class XdagFrameHandler extends ByteToMessageCodec<Frame>  {
             // reset reader index if not available
             in.readerIndex(readerIndex);
         } else {
-            // read body
-            byte[] body = new byte[bodySize];
-            in.readBytes(body);
-            frame.setBody(body);
+            // read body, a retained slice of the inbound buffer released by XdagMessageHandler
+            frame.setBody(in.readRetainedSlice(bodySize));
 
             // deliver
             out.add(frame);
@@ -34,7 +34,13 @@ import org.xerial.snappy.Snappy;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageCodec;
 import io.xdag.config.Config;
@@ -50,7 +56,14 @@ public class XdagMessageHandler extends MessageToMessageCodec<Frame, Message>  {
     private static final byte COMPRESS_TYPE = Frame.COMPRESS_SNAPPY;
 
     private final Cache<Integer, Pair<List<Frame>, AtomicInteger>> incompletePackets = Caffeine.newBuilder()
-            .maximumSize(MAX_PACKETS).build();
+            .maximumSize(MAX_PACKETS)
+            .executor(Runnable::run)
+            .removalListener((Integer packetId, Pair<List<Frame>, AtomicInteger> pair, RemovalCause cause) -> {
+                if (pair != null) {
+                    pair.getLeft().forEach(Frame::release);
+                }
+            })
+            .build();
 
     private final Config config;
 
@@ -73,7 +86,7 @@ public class XdagMessageHandler extends MessageToMessageCodec<Frame, Message>  {
 
         switch (COMPRESS_TYPE) {
         case Frame.COMPRESS_SNAPPY:
-            dataCompressed = Snappy.compress(data);
+            dataCompressed = msg.getCompressedBody();
             break;
         case Frame.COMPRESS_NONE:
             break;
@@ -91,13 +104,15 @@ public class XdagMessageHandler extends MessageToMessageCodec<Frame, Message>  {
             return;
         }
 
+        // frames wrap the shared compressed array, chunks are views instead of copies
         int limit = config.getNodeSpec().getNetMaxFrameBodySize();
         int total = (dataCompressed.length - 1) / limit + 1;
         for (int i = 0; i < total; i++) {
-            byte[] body = new byte[(i < total - 1) ? limit : dataCompressed.length % limit];
-            System.arraycopy(dataCompressed, i * limit, body, 0, body.length);
+            int offset = i * limit;
+            int bodySize = Math.min(limit, dataCompressed.length - offset);
+            ByteBuf body = Unpooled.wrappedBuffer(dataCompressed, offset, bodySize);
 
-            out.add(new Frame(Frame.VERSION, COMPRESS_TYPE, packetType, packetId, packetSize, body.length, body));
+            out.add(new Frame(Frame.VERSION, COMPRESS_TYPE, packetType, packetId, packetSize, bodySize, body));
         }
     }
 
@@ -112,6 +127,7 @@ public class XdagMessageHandler extends MessageToMessageCodec<Frame, Message>  {
                 if (pair == null) {
                     int packetSize = frame.getPacketSize();
                     if (packetSize < 0 || packetSize > netMaxPacketSize) {
+                        frame.release();
                         // this will kill the connection
                         throw new IOException("Invalid packet size: " + packetSize);
                     }
@@ -120,19 +136,27 @@ public class XdagMessageHandler extends MessageToMessageCodec<Frame, Message>  {
                     incompletePackets.put(packetId, pair);
                 }
 
+                // released with the packet when it completes or is evicted
                 pair.getLeft().add(frame);
                 int remaining = pair.getRight().addAndGet(-frame.getBodySize());
                 if (remaining == 0) {
-                    decodedMsg = decodeMessage(pair.getLeft());
-
-                    // remove complete packets from cache
-                    incompletePackets.invalidate(packetId);
+                    try {
+                        decodedMsg = decodeMessage(pair.getLeft());
+                    } finally {
+                        // remove complete packets from cache
+                        incompletePackets.invalidate(packetId);
+                    }
                 } else if (remaining < 0) {
+                    incompletePackets.invalidate(packetId);
                     throw new IOException("Packet remaining size went to negative");
                 }
             }
         } else {
-            decodedMsg = decodeMessage(Collections.singletonList(frame));
+            try {
+                decodedMsg = decodeMessage(Collections.singletonList(frame));
+            } finally {
+                frame.release();
+            }
         }
 
         if (decodedMsg != null) {
@@ -140,6 +164,15 @@ public class XdagMessageHandler extends MessageToMessageCodec<Frame, Message>  {
         }
     }
 
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        incompletePackets.invalidateAll();
+        super.handlerRemoved(ctx);
+    }
+
+    /**
+     * Decodes a message from its frames. The frames stay owned by the caller.
+     */
     protected Message decodeMessage(List<Frame> frames) throws MessageException {
         if (frames == null || frames.isEmpty()) {
             throw new MessageException("Frames can't be null or empty");
@@ -149,32 +182,63 @@ public class XdagMessageHandler extends MessageToMessageCodec<Frame, Message>  {
         byte packetType = head.getPacketType();
         int packetSize = head.getPacketSize();
 
-        byte[] data = new byte[packetSize];
-        int pos = 0;
-        for (Frame frame : frames) {
-            System.arraycopy(frame.getBody(), 0, data, pos, frame.getBodySize());
-            pos += frame.getBodySize();
+        ByteBuf packet;
+        if (frames.size() == 1) {
+            packet = head.getBody().retainedDuplicate();
+        } else {
+            CompositeByteBuf composite = PooledByteBufAllocator.DEFAULT.compositeBuffer(frames.size());
+            for (Frame frame : frames) {
+                composite.addComponent(true, frame.getBody().retainedDuplicate());
+            }
+            packet = composite;
         }
 
-        switch (head.getCompressType()) {
-        case Frame.COMPRESS_SNAPPY:
-            try {
-                // check uncompressed length to avoid OOM vulnerability
-                int length = Snappy.uncompressedLength(data);
-                if (length > netMaxPacketSize) {
-                    throw new MessageException("Uncompressed data length is too big: " + length);
-                }
-                data = Snappy.uncompress(data);
-            } catch (IOException e) {
-                throw new MessageException(e);
+        byte[] data;
+        try {
+            if (packet.readableBytes() != packetSize) {
+                throw new MessageException("Packet size mismatch, expected " + packetSize + ", got " + packet.readableBytes());
             }
-            break;
-        case Frame.COMPRESS_NONE:
-            break;
-        default:
-            throw new MessageException("Unsupported compress type: " + head.getCompressType());
+            data = switch (head.getCompressType()) {
+                case Frame.COMPRESS_SNAPPY -> uncompress(packet);
+                case Frame.COMPRESS_NONE -> ByteBufUtil.getBytes(packet);
+                default -> throw new MessageException("Unsupported compress type: " + head.getCompressType());
+            };
+        } finally {
+            packet.release();
         }
 
         return messageFactory.create(packetType, data);
     }
+
+    /**
+     * Snappy straight into the message array: heap buffers are read through their backing array, anything else
+     * (direct or spread over several frames) has only its compressed bytes gathered first.
+     */
+    private byte[] uncompress(ByteBuf packet) throws MessageException {
+        try {
+            byte[] compressed;
+            int offset;
+            if (packet.hasArray()) {
+                compressed = packet.array();
+                offset = packet.arrayOffset() + packet.readerIndex();
+            } else {
+                compressed = ByteBufUtil.getBytes(packet);
+                offset = 0;
+            }
+            int length = checkUncompressedLength(Snappy.uncompressedLength(compressed, offset, packet.readableBytes()));
+            byte[] data = new byte[length];
+            Snappy.uncompress(compressed, offset, packet.readableBytes(), data, 0);
+            return data;
+        } catch (IOException e) {
+            throw new MessageException(e);
+        }
+    }
+
+    private int checkUncompressedLength(int length) throws MessageException {
+        // check uncompressed length to avoid OOM vulnerability
+        if (length < 0 || length > netMaxPacketSize) {
+            throw new MessageException("Uncompressed data length is too big: " + length);
+        }
+        return length;
+    }
 }
@@ -370,7 +370,7 @@ public class XdagP2pHandler extends SimpleChannelInboundHandler<Message> {
 
         log.debug("processNewBlock:{} from node {}", block.getHashLow(), channel.getRemoteAddress());
         BlockWrapper bw = new BlockWrapper(block, msg.getTtl() - 1, channel.getRemotePeer(), false);
-        syncMgr.validateAndAddNewBlock(bw);
+        syncMgr.submitBlock(bw, channel);
     }
 
     protected void processSyncBlock(SyncBlockMessage msg) {
@@ -378,7 +378,7 @@ public class XdagP2pHandler extends SimpleChannelInboundHandler<Message> {
 
         log.debug("processSyncBlock:{}  from node {}", block.getHashLow(), channel.getRemoteAddress());
         BlockWrapper bw = new BlockWrapper(block, msg.getTtl() - 1, channel.getRemotePeer(), true);
-        syncMgr.validateAndAddNewBlock(bw);
+        syncMgr.submitBlock(bw, channel);
     }
 
     /**
@@ -466,8 +466,14 @@ public class XdagP2pHandler extends SimpleChannelInboundHandler<Message> {
      * ********************** Xdag Message ************************
      */
     public void sendNewBlock(Block newBlock, int TTL) {
-        log.debug("send block:{} to node:{}", newBlock.getHashLow(), channel.getRemoteAddress());
-        NewBlockMessage msg = new NewBlockMessage(newBlock, TTL);
+        sendNewBlock(new NewBlockMessage(newBlock, TTL));
+    }
+
+    /**
+     * Send an already encoded block, the same message may be queued on every channel.
+     */
+    public void sendNewBlock(NewBlockMessage msg) {
+        log.debug("send block:{} to node:{}", msg.getBlock().getHashLow(), channel.getRemoteAddress());
         sendMessage(msg);
     }
 
@@ -24,9 +24,13 @@
 
 package io.xdag.net.message;
 
+import java.io.IOException;
+
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.MutableBytes;
+import org.xerial.snappy.Snappy;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 
 @Getter
@@ -47,6 +51,12 @@ public abstract class Message {
      */
     protected byte[] body;
 
+    /**
+     * Snappy compressed body, a message written to many channels is compressed once.
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile byte[] compressedBody;
+
     /**
      * Create a message instance.
      */
@@ -56,6 +66,18 @@ public abstract class Message {
         this.body = Bytes.EMPTY.toArray();
     }
 
+    /**
+     * Return the Snappy compressed body. The result is shared, callers must not modify it.
+     */
+    public byte[] getCompressedBody() throws IOException {
+        byte[] res = compressedBody;
+        if (res == null) {
+            res = Snappy.compress(body);
+            compressedBody = res;
+        }
+        return res;
+    }
+
     /**
      * Return the message name.
      */
@@ -4,9 +4,13 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelId;
 import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.ChannelMatcher;
 import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import io.netty.util.concurrent.GlobalEventExecutor;
+import io.xdag.consensus.Task;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.concurrent.ConcurrentHashMap;
@@ -17,14 +21,26 @@ import java.util.concurrent.ConcurrentMap;
 public class ChannelSupervise {// supervise channel
     private static final ChannelGroup GlobalGroup = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
     private static final ConcurrentMap<ChannelId, String> ChannelMap = new ConcurrentHashMap<>();
+    // pools that negotiated the binary protocol, also in GlobalGroup
+    private static final ChannelGroup BinaryGroup = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private static final ChannelMatcher TextChannels = channel -> !BinaryGroup.contains(channel);
 
     public static void addChannel(Channel channel) {
         GlobalGroup.add(channel);
         ChannelMap.put(channel.id(), channel.remoteAddress().toString());
     }
 
+    public static void setBinary(Channel channel) {
+        BinaryGroup.add(channel);
+    }
+
+    public static boolean isBinary(Channel channel) {
+        return BinaryGroup.contains(channel);
+    }
+
     public static void removeChannel(Channel channel) {
         GlobalGroup.remove(channel);
+        BinaryGroup.remove(channel);
         ChannelMap.remove(channel.id());
     }
 
@@ -52,4 +68,22 @@ public class ChannelSupervise {// supervise channel
             log.debug("No active pools.");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Send a task to all pools, as a binary frame to pools that negotiated it and as JSON to the rest.
+     */
+    public static void send2Pools(Task task) {
+        if (ChannelMap.isEmpty()) {
+            log.debug("No active pools.");
+            return;
+        }
+        log.debug("There are active mining pools: " + showChannel());
+        if (!BinaryGroup.isEmpty()) {
+            BinaryGroup.writeAndFlush(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(task.toBinary())));
+        }
+        if (BinaryGroup.size() < GlobalGroup.size()) {
+            GlobalGroup.writeAndFlush(new TextWebSocketFrame(task.toJsonString()), TextChannels);
+        }
+        log.debug("Send task to pools successfully. Task: " + task);
+    }
+}
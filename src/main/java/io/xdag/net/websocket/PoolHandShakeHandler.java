@@ -1,6 +1,7 @@
 package io.xdag.net.websocket;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
@@ -21,6 +22,8 @@ import static io.xdag.utils.BasicUtils.extractIpAddress;
 @Slf4j
 @ChannelHandler.Sharable
 public class PoolHandShakeHandler extends SimpleChannelInboundHandler<Object> {
+    public static final String BINARY_SUBPROTOCOL = "xdag-share-bin";
+
     private WebSocketServerHandshaker handshaker;
     private final int port;
     // pool whitelist
@@ -71,13 +74,18 @@ public class PoolHandShakeHandler extends SimpleChannelInboundHandler<Object> {
             return;
         }
         String uri = "ws://0.0.0.0:" + port + "/websocket";
+        // pools asking for the binary subprotocol get binary tasks and may send binary share batches
         WebSocketServerHandshakerFactory wsFactory = new WebSocketServerHandshakerFactory(
-                uri, null, false);
+                uri, BINARY_SUBPROTOCOL, false);
         handshaker = wsFactory.newHandshaker(req);
         if (handshaker == null) {
             WebSocketServerHandshakerFactory.sendUnsupportedVersionResponse(ctx.channel());
         } else {
             handshaker.handshake(ctx.channel(), req);
+            if (BINARY_SUBPROTOCOL.equals(handshaker.selectedSubprotocol())) {
+                ChannelSupervise.setBinary(ctx.channel());
+                log.debug("Pool {} uses binary shares", ctx.channel().remoteAddress());
+            }
         }
     }
 
@@ -112,6 +120,13 @@ public class PoolHandShakeHandler extends SimpleChannelInboundHandler<Object> {
             ctx.channel().write(new PongWebSocketFrame(frame.content().retain()));
             return;
         }
+        // binary share batch
+        if (frame instanceof BinaryWebSocketFrame && ChannelSupervise.isBinary(ctx.channel())) {
+            if (xdagPow != null) {
+                xdagPow.getSharesFromPools().getShareBatch(ByteBufUtil.getBytes(frame.content()));
+            }
+            return;
+        }
         // support text msg
         if (!(frame instanceof TextWebSocketFrame)) {
             log.debug("Unsupported msg type ");
@@ -120,6 +120,14 @@ public class Web3Impl implements Web3 {
         return web3XdagModule.xdag_getBlockByHash(blockHash, page, pageSize);
     }
 
+    public BlockResultDTO xdag_getBlockByHashWithCursor(String blockHash, String cursor) {
+        return web3XdagModule.xdag_getBlockByHashWithCursor(blockHash, cursor);
+    }
+
+    public BlockResultDTO xdag_getBlockByHashWithCursor(String blockHash, String cursor, int pageSize) {
+        return web3XdagModule.xdag_getBlockByHashWithCursor(blockHash, cursor, pageSize);
+    }
+
     @Override
     public StatusDTO xdag_getStatus() throws Exception {
         return web3XdagModule.xdag_getStatus();
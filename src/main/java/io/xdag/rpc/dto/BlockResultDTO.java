@@ -44,6 +44,8 @@ public class BlockResultDTO {
     private String type;
     private String flags;
     private int totalPage;
+    private String nextCursor; // continuation token for the next keyset page
+    private boolean totalApproximate;
     private List<Link> refs; // means all the ref block
     private List<TxLink> transactions; // means transaction a wallet have
 
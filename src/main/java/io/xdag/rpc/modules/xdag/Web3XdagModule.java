@@ -110,6 +110,14 @@ public interface Web3XdagModule {
         return getXdagModule().getBlockByHash(blockHash, page, pageSize);
     }
 
+    default BlockResultDTO xdag_getBlockByHashWithCursor(String blockHash, String cursor) {
+        return getXdagModule().getBlockByHashWithCursor(blockHash, cursor);
+    }
+
+    default BlockResultDTO xdag_getBlockByHashWithCursor(String blockHash, String cursor, int pageSize) {
+        return getXdagModule().getBlockByHashWithCursor(blockHash, cursor, pageSize);
+    }
+
     StatusDTO xdag_getStatus() throws Exception;
 
     Object xdag_netType() throws Exception;
@@ -85,6 +85,11 @@ public class XdagModule implements XdagModuleTransaction, XdagModuleWallet, Xdag
         return xdagModuleChain.getBlockByHash(hash, page, parameters);
     }
 
+    @Override
+    public BlockResultDTO getBlockByHashWithCursor(String hash, String cursor, Object... parameters) {
+        return xdagModuleChain.getBlockByHashWithCursor(hash, cursor, parameters);
+    }
+
     @Override
     public BlockResultDTO getBlockByNumber(String bnOrId, int page, Object... parameters) {
         return xdagModuleChain.getBlockByNumber(bnOrId, page, parameters);
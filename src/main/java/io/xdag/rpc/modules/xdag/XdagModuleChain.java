@@ -32,6 +32,8 @@ public interface XdagModuleChain {
 
     BlockResultDTO getBlockByHash(String hash, int page, Object... parameters);
 
+    BlockResultDTO getBlockByHashWithCursor(String hash, String cursor, Object... parameters);
+
     BlockResultDTO getBlockByNumber(String bnOrId, int page, Object... parameters );
 
     String getRewardByNumber(String bnOrId);
@@ -46,7 +46,6 @@ import static io.xdag.config.Constants.MIN_GAS;
 import static io.xdag.core.BlockState.MAIN;
 import static io.xdag.core.BlockType.*;
 import static io.xdag.core.XdagField.FieldType.*;
-import static io.xdag.db.mysql.TransactionHistoryStoreImpl.totalPage;
 import static io.xdag.rpc.utils.TypeConverter.toQuantityJsonHex;
 import static io.xdag.utils.BasicUtils.*;
 import static io.xdag.utils.WalletUtils.checkAddress;
@@ -70,7 +69,12 @@ public class XdagModuleChainBase implements XdagModuleChain {
 
     @Override
     public BlockResultDTO getBlockByHash(String hash, int page, Object... parameters) {
-        return getBlockDTOByHash(hash, page, parameters);
+        return getBlockDTOByHash(hash, page, null, parameters);
+    }
+
+    @Override
+    public BlockResultDTO getBlockByHashWithCursor(String hash, String cursor, Object... parameters) {
+        return getBlockDTOByHash(hash, 1, cursor == null ? "" : cursor, parameters);
     }
 
     @Override
@@ -81,9 +85,9 @@ public class XdagModuleChainBase implements XdagModuleChain {
         }
         Block blockTrue = blockchain.getBlockByHash(blockFalse.getHash(), true);
         if (blockTrue == null) {
-            return transferBlockInfoToBlockResultDTO(blockFalse, page, parameters);
+            return transferBlockInfoToBlockResultDTO(blockFalse, page, null, parameters);
         }
-        return transferBlockToBlockResultDTO(blockTrue, page, parameters);
+        return transferBlockToBlockResultDTO(blockTrue, page, null, parameters);
     }
 
     @Override
@@ -129,10 +133,10 @@ public class XdagModuleChainBase implements XdagModuleChain {
         return Commands.getBalanceMaxXfer(kernel);
     }
 
-    public BlockResultDTO getBlockDTOByHash(String hash, int page, Object... parameters) {
+    public BlockResultDTO getBlockDTOByHash(String hash, int page, String cursor, Object... parameters) {
         Bytes32 blockHash;
         if (checkAddress(hash)) {
-            return transferAccountToBlockResultDTO(hash, page, parameters);
+            return transferAccountToBlockResultDTO(hash, page, cursor, parameters);
         } else {
             if (StringUtils.length(hash) == 32) {
                 blockHash = address2Hash(hash);
@@ -142,9 +146,9 @@ public class XdagModuleChainBase implements XdagModuleChain {
             Block block = blockchain.getBlockByHash(blockHash, true);
             if (block == null) {
                 block = blockchain.getBlockByHash(blockHash, false);
-                return transferBlockInfoToBlockResultDTO(block, page, parameters);
+                return transferBlockInfoToBlockResultDTO(block, page, cursor, parameters);
             }
-            return transferBlockToBlockResultDTO(block, page, parameters);
+            return transferBlockToBlockResultDTO(block, page, cursor, parameters);
         }
     }
 
@@ -168,7 +172,7 @@ public class XdagModuleChainBase implements XdagModuleChain {
         return BlockResultDTOBuilder.build();
     }
 
-    private BlockResultDTO transferBlockInfoToBlockResultDTO(Block block, int page, Object... parameters) {
+    private BlockResultDTO transferBlockInfoToBlockResultDTO(Block block, int page, String cursor, Object... parameters) {
         if (null == block) {
             return null;
         }
@@ -188,14 +192,14 @@ public class XdagModuleChainBase implements XdagModuleChain {
 //                .refs(getLinks(block))
 //                .height(block.getInfo().getHeight())
                 if (page != 0){
-                BlockResultDTOBuilder.transactions(getTxLinks(block, page, parameters))
-                .totalPage(totalPage);
+                    TxHistoryPage txPage = blockchain.getBlockTxHistoryPage(block.getHashLow(), page, cursor, parameters);
+                    BlockResultDTOBuilder.transactions(getTxLinks(block, txPage.getTxHistories()));
+                    setPage(BlockResultDTOBuilder, txPage);
                 }
-        totalPage = 1;
         return BlockResultDTOBuilder.build();
     }
 
-    private BlockResultDTO transferAccountToBlockResultDTO(String address, int page, Object... parameters) {
+    private BlockResultDTO transferAccountToBlockResultDTO(String address, int page, String cursor, Object... parameters) {
         XAmount balance = kernel.getAddressStore().getBalanceByAddress(hash2byte(pubAddress2Hash(address).mutableCopy()));
 
         BlockResultDTO.BlockResultDTOBuilder BlockResultDTOBuilder = BlockResultDTO.builder();
@@ -207,14 +211,14 @@ public class XdagModuleChainBase implements XdagModuleChain {
                 .timeStamp(kernel.getConfig().getSnapshotSpec().getSnapshotTime())
                 .state("Accepted");
         if (page != 0){
-            BlockResultDTOBuilder.transactions(getTxHistory(address, page, parameters))
-                .totalPage(totalPage);
+            TxHistoryPage txPage = blockchain.getBlockTxHistoryPage(pubAddress2Hash(address), page, cursor, parameters);
+            BlockResultDTOBuilder.transactions(getTxHistory(txPage.getTxHistories()));
+            setPage(BlockResultDTOBuilder, txPage);
         }
-        totalPage = 1;
         return BlockResultDTOBuilder.build();
     }
 
-    private BlockResultDTO transferBlockToBlockResultDTO(Block block, int page, Object... parameters) {
+    private BlockResultDTO transferBlockToBlockResultDTO(Block block, int page, String cursor, Object... parameters) {
         if (null == block) {
             return null;
         }
@@ -233,13 +237,19 @@ public class XdagModuleChainBase implements XdagModuleChain {
                 .refs(getLinks(block))
                 .height(block.getInfo().getHeight());
         if (page != 0) {
-                BlockResultDTOBuilder.transactions(getTxLinks(block, page, parameters))
-                    .totalPage(totalPage);
+            TxHistoryPage txPage = blockchain.getBlockTxHistoryPage(block.getHashLow(), page, cursor, parameters);
+            BlockResultDTOBuilder.transactions(getTxLinks(block, txPage.getTxHistories()));
+            setPage(BlockResultDTOBuilder, txPage);
         }
-        totalPage = 1;
         return BlockResultDTOBuilder.build();
     }
 
+    private void setPage(BlockResultDTO.BlockResultDTOBuilder builder, TxHistoryPage txPage) {
+        builder.totalPage(txPage.getTotalPage())
+                .nextCursor(txPage.getNextCursor())
+                .totalApproximate(txPage.isApproximate());
+    }
+
     private List<Link> getLinks(Block block) {
         List<Address> inputs = block.getInputs();
         List<Address> outputs = block.getOutputs();
@@ -285,8 +295,7 @@ public class XdagModuleChainBase implements XdagModuleChain {
         return links;
     }
 
-    private List<TxLink> getTxLinks(Block block, int page, Object... parameters) {
-        List<TxHistory> txHistories = blockchain.getBlockTxHistoryByAddress(block.getHashLow(), page, parameters);
+    private List<TxLink> getTxLinks(Block block, List<TxHistory> txHistories) {
         List<TxLink> txLinks = Lists.newArrayList();
         // 1. earning info
         if (getStateByFlags(block.getInfo().getFlags()).equals(MAIN.getDesc()) && block.getInfo().getHeight() > kernel.getConfig().getSnapshotSpec().getSnapshotHeight()) {
@@ -330,8 +339,7 @@ public class XdagModuleChainBase implements XdagModuleChain {
         return txLinks;
     }
 
-    private List<TxLink> getTxHistory(String address, int page, Object... parameters) {
-        List<TxHistory> txHistories = blockchain.getBlockTxHistoryByAddress(pubAddress2Hash(address), page, parameters);
+    private List<TxLink> getTxHistory(List<TxHistory> txHistories) {
         List<TxLink> txLinks = Lists.newArrayList();
         for (TxHistory txHistory : txHistories) {
             Block b = blockchain.getBlockByHash(txHistory.getAddress().getAddress(), false);
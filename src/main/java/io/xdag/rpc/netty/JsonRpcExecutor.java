@@ -0,0 +1,213 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.rpc.netty;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.googlecode.jsonrpc4j.InvocationListener;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+/**
+ * Runs JSON-RPC requests away from the Netty I/O threads.
+ * <p>
+ * At most {@code threads + queueSize} requests are outstanding at any time; beyond that
+ * {@link #submit(Runnable)} refuses the work so the caller can answer "server busy" instead of
+ * letting a slow method back up the event loop. On Java 21+ every request gets its own virtual
+ * thread, otherwise a fixed pool of {@code threads} platform threads drains the queue.
+ * <p>
+ * It also keeps a latency histogram per RPC method, fed through the jsonrpc4j
+ * {@link InvocationListener} hook.
+ */
+@Slf4j
+public class JsonRpcExecutor implements InvocationListener {
+
+    public static final int SERVER_BUSY = -32005;
+
+    /** Bucket i counts calls that took less than 2^i ms, the last one everything slower. */
+    static final int BUCKETS = 16;
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    @Getter
+    private final boolean virtualThreads;
+    @Getter
+    private final int capacity;
+    private final Map<String, LongAdder[]> latencies = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+
+    public JsonRpcExecutor(int threads, int queueSize, boolean preferVirtualThreads) {
+        int poolSize = threads > 0 ? threads : Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+        this.capacity = poolSize + Math.max(0, queueSize);
+        this.permits = new Semaphore(capacity);
+        ExecutorService virtual = preferVirtualThreads ? newVirtualThreadExecutor() : null;
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : Executors.newFixedThreadPool(poolSize,
+                new BasicThreadFactory.Builder()
+                        .namingPattern("JsonRpc-thread-%d")
+                        .daemon(true)
+                        .build());
+        log.info("JSON-RPC executor: {}, capacity {}", virtualThreads ? "virtual threads" : poolSize + " threads",
+                capacity);
+    }
+
+    /**
+     * Queue a request for execution.
+     *
+     * @return false if the executor is saturated or shut down, the task was not accepted
+     */
+    public boolean submit(Runnable task) {
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            rejected.increment();
+            return false;
+        }
+    }
+
+    public int getPending() {
+        return capacity - permits.availablePermits();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void willInvoke(Method method, List<JsonNode> arguments) {
+    }
+
+    @Override
+    public void didInvoke(Method method, List<JsonNode> arguments, Object result, Throwable t, long duration) {
+        record(method.getName(), duration);
+    }
+
+    void record(String method, long millis) {
+        latencies.computeIfAbsent(method, k -> newBuckets())[bucket(millis)].increment();
+    }
+
+    static int bucket(long millis) {
+        if (millis <= 0) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+    }
+
+    /**
+     * Snapshot of the histogram of every method seen so far, bucket i holding the number of calls
+     * faster than 2^i ms.
+     */
+    public Map<String, long[]> getLatencyHistograms() {
+        Map<String, long[]> snapshot = new TreeMap<>();
+        latencies.forEach((method, buckets) -> {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            snapshot.put(method, counts);
+        });
+        return snapshot;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        getLatencyHistograms().forEach((method, counts) -> log.info("rpc {} latency: {}", method, format(counts)));
+        if (getRejected() > 0) {
+            log.info("rpc requests rejected as busy: {}", getRejected());
+        }
+    }
+
+    private static String format(long[] counts) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(i == counts.length - 1 ? ">=" + (1L << (i - 1)) : "<" + (1L << i)).append("ms=").append(counts[i]);
+        }
+        return sb.toString();
+    }
+
+    private static LongAdder[] newBuckets() {
+        LongAdder[] buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+        return buckets;
+    }
+
+    /**
+     * The build targets Java 17, so the virtual thread API is looked up reflectively and only used
+     * when the running JVM provides it.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "JsonRpc-vthread-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Virtual threads unavailable, using a fixed pool: {}", e.toString());
+            return null;
+        }
+    }
+}
@@ -50,6 +50,7 @@ import lombok.extern.slf4j.Slf4j;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @Slf4j
 @ChannelHandler.Sharable
@@ -58,35 +59,80 @@ public class JsonRpcWeb3ServerHandler extends SimpleChannelInboundHandler<ByteBu
     private final ObjectMapper mapper = new ObjectMapper();
     private final JsonNodeFactory jsonNodeFactory = JsonNodeFactory.instance;
     private final JsonRpcBasicServer jsonRpcServer;
+    private final JsonRpcExecutor executor;
 
     public JsonRpcWeb3ServerHandler(Web3 service, List<ModuleDescription> filteredModules) {
+        this(service, filteredModules, null);
+    }
+
+    /**
+     * @param executor runs the requests off the I/O threads, null to handle them inline
+     */
+    public JsonRpcWeb3ServerHandler(Web3 service, List<ModuleDescription> filteredModules,
+            JsonRpcExecutor executor) {
+        this.executor = executor;
         this.jsonRpcServer = new JsonRpcBasicServer(service, service.getClass());
         jsonRpcServer.setRequestInterceptor(new JsonRpcMethodFilter(filteredModules));
         jsonRpcServer.setErrorResolver(
                 new MultipleErrorResolver(new XdagErrorResolver(), AnnotationsErrorResolver.INSTANCE,
                         DefaultErrorResolver.INSTANCE));
+        if (executor != null) {
+            jsonRpcServer.setInvocationListener(executor);
+        }
     }
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, ByteBufHolder request) throws Exception {
+        if (executor == null) {
+            ctx.fireChannelRead(handle(request.content().retain()));
+            return;
+        }
+
+        // the request buffer is released once this method returns, keep it for the worker
+        ByteBuf content = request.content().retain();
+        boolean accepted = executor.submit(() -> {
+            Web3Result result = handle(content);
+            // hand the response back to the channel's event loop, the response handlers flush on read complete
+            try {
+                ctx.executor().execute(() -> {
+                    ctx.fireChannelRead(result);
+                    ctx.fireChannelReadComplete();
+                });
+            } catch (RejectedExecutionException e) {
+                // the event loop is shutting down, nobody is left to answer
+                result.getContent().release();
+            }
+        });
+        if (!accepted) {
+            content.release();
+            ctx.fireChannelRead(new Web3Result(buildErrorContent(JsonRpcExecutor.SERVER_BUSY, "Server busy"),
+                    JsonRpcExecutor.SERVER_BUSY));
+        }
+    }
+
+    /**
+     * Run one request, consuming (releasing) the given content.
+     */
+    private Web3Result handle(ByteBuf content) {
         ByteBuf responseContent = Unpooled.buffer();
         int responseCode;
         try (ByteBufOutputStream os = new ByteBufOutputStream(responseContent);
-                ByteBufInputStream is = new ByteBufInputStream(request.content().retain())) {
+                ByteBufInputStream is = new ByteBufInputStream(content, true)) {
 
             responseCode = jsonRpcServer.handleRequest(is, os);
         } catch (Exception e) {
             String unexpectedErrorMsg = "Unexpected error";
             log.error(unexpectedErrorMsg, e);
             int errorCode = ErrorResolver.JsonError.CUSTOM_SERVER_ERROR_LOWER;
+            responseContent.release();
             responseContent = buildErrorContent(errorCode, unexpectedErrorMsg);
             responseCode = errorCode;
         }
 
-        ctx.fireChannelRead(new Web3Result(
+        return new Web3Result(
                 responseContent,
                 responseCode
-        ));
+        );
     }
 
     @Override
@@ -95,12 +141,17 @@ public class JsonRpcWeb3ServerHandler extends SimpleChannelInboundHandler<ByteBu
         ctx.close();
     }
 
-    private ByteBuf buildErrorContent(int errorCode, String errorMessage) throws JsonProcessingException {
+    private ByteBuf buildErrorContent(int errorCode, String errorMessage) {
         Map<String, JsonNode> errorProperties = new HashMap<>();
         errorProperties.put("code", jsonNodeFactory.numberNode(errorCode));
         errorProperties.put("message", jsonNodeFactory.textNode(errorMessage));
         JsonNode error = jsonNodeFactory.objectNode()
                 .set("error", jsonNodeFactory.objectNode().setAll(errorProperties));
-        return Unpooled.wrappedBuffer(mapper.writeValueAsBytes(mapper.treeToValue(error, Object.class)));
+        try {
+            return Unpooled.wrappedBuffer(mapper.writeValueAsBytes(mapper.treeToValue(error, Object.class)));
+        } catch (JsonProcessingException e) {
+            // a two-field object always serializes
+            throw new IllegalStateException(e);
+        }
     }
 }
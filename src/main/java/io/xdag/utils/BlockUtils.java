@@ -44,6 +44,17 @@ public final class BlockUtils {
         return key;
     }
 
+    public static byte[] getOurKeyIndexKey(byte[] hashlow) {
+        return BytesUtils.merge(BlockStore.OURS_BLOCK_KEY_INDEX, hashlow);
+    }
+
+    /**
+     * Keys sort by descending height, so a forward prefix scan lists the latest mined blocks first.
+     */
+    public static byte[] getMinedBlockKey(long height) {
+        return BytesUtils.merge(BlockStore.MINED_BLOCK_HEIGHT, BytesUtils.longToBytes(Long.MAX_VALUE - height, false));
+    }
+
     public static byte[] getHeight(long height) {
         return BytesUtils.merge(BlockStore.BLOCK_HEIGHT, BytesUtils.longToBytes(height, false));
     }
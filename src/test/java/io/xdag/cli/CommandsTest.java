@@ -26,6 +26,7 @@ package io.xdag.cli;
 
 import static io.xdag.core.XdagField.FieldType.XDAG_FIELD_SNAPSHOT;
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
 
 import java.math.BigInteger;
 import java.security.InvalidAlgorithmParameterException;
@@ -55,6 +56,7 @@ import io.xdag.core.Address;
 import io.xdag.core.Block;
 import io.xdag.core.BlockInfo;
 import io.xdag.core.Blockchain;
+import io.xdag.core.MemOrphanPool;
 import io.xdag.core.TxHistory;
 import io.xdag.core.XAmount;
 import io.xdag.core.XUnit;
@@ -66,6 +68,7 @@ import io.xdag.crypto.Keys;
 import io.xdag.crypto.Sign;
 import io.xdag.db.AddressStore;
 import io.xdag.db.BlockStore;
+import io.xdag.db.mysql.TxHistoryWriter;
 import io.xdag.net.NetDBManager;
 import io.xdag.net.NetDB;
 import io.xdag.utils.BasicUtils;
@@ -177,18 +180,7 @@ public class CommandsTest {
 
     @Test
     public void testStats() {
-        NetDB netDB = new NetDB();
-        netDB.addNewIP("127.0.0.1:7001");
-        NetDBManager netDBManager = new NetDBManager(config);
-
-        Mockito.when(blockchain.getXdagTopStatus()).thenReturn(new XdagTopStatus());
-        Mockito.when(blockchain.getXdagStats()).thenReturn(new XdagStats());
-        Mockito.when(blockchain.getXdagExtStats()).thenReturn(new XdagExtStats());
-        Mockito.when(blockchain.getSupply(Mockito.anyLong())).thenReturn(XAmount.of(1400000000, XUnit.XDAG));
-        Mockito.when(addressStore.getAllBalance()).thenReturn(XAmount.of(100000, XUnit.XDAG));
-        Mockito.when(addressStore.getAddressSize()).thenReturn(UInt64.valueOf(100));
-        Mockito.when(kernel.getNetDB()).thenReturn(netDB);
-        Mockito.when(kernel.getNetDBMgr()).thenReturn(netDBManager);
+        mockStats();
         String str = commands.stats();
         assertEquals("""
                 Statistics for ours and maximum known parameters:
@@ -196,6 +188,7 @@ public class CommandsTest {
                            blocks: 0 of 0
                       main blocks: 0 of 0
                      extra blocks: 0
+                       extra pool: 0 hits, 0 misses, 0 evictions
                     orphan blocks: 0
                  wait sync blocks: 0
                  chain difficulty: 0 of 0
@@ -205,6 +198,36 @@ public class CommandsTest {
                 Number of Address: 100""", str);
     }
 
+    @Test
+    public void testStatsWithTxHistoryWriter() {
+        mockStats();
+        TxHistoryWriter txHistoryWriter = Mockito.mock(TxHistoryWriter.class);
+        Mockito.when(txHistoryWriter.getQueueDepth()).thenReturn(12);
+        Mockito.when(txHistoryWriter.getLastFlushMillis()).thenReturn(35L);
+        Mockito.when(txHistoryWriter.getAverageFlushMillis()).thenReturn(20L);
+        Mockito.when(kernel.getTxHistoryWriter()).thenReturn(txHistoryWriter);
+        String str = commands.stats();
+        assertTrue(str.endsWith("""
+                Number of Address: 100
+                       tx history: 12 queued, flush 35 ms last, 20 ms avg"""));
+    }
+
+    private void mockStats() {
+        NetDB netDB = new NetDB();
+        netDB.addNewIP("127.0.0.1:7001");
+        NetDBManager netDBManager = new NetDBManager(config);
+
+        Mockito.when(blockchain.getXdagTopStatus()).thenReturn(new XdagTopStatus());
+        Mockito.when(blockchain.getXdagStats()).thenReturn(new XdagStats());
+        Mockito.when(blockchain.getXdagExtStats()).thenReturn(new XdagExtStats());
+        Mockito.when(blockchain.getMemOrphanPool()).thenReturn(new MemOrphanPool(100, 0));
+        Mockito.when(blockchain.getSupply(Mockito.anyLong())).thenReturn(XAmount.of(1400000000, XUnit.XDAG));
+        Mockito.when(addressStore.getAllBalance()).thenReturn(XAmount.of(100000, XUnit.XDAG));
+        Mockito.when(addressStore.getAddressSize()).thenReturn(UInt64.valueOf(100));
+        Mockito.when(kernel.getNetDB()).thenReturn(netDB);
+        Mockito.when(kernel.getNetDBMgr()).thenReturn(netDBManager);
+    }
+
     @Test
     public void testPrintBlockInfo() {
         BlockInfo blockInfo = new BlockInfo();
@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.consensus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class PoolShareTest {
+
+    private static final String SHARE = "1c07a4bd33e4e2d46a7f0e3d2cb1e2b0d5d8f1b6a3e9c7d2f0a1b2c3d4e5f607";
+    private static final String HASH = "4b9f1cb9e5f1e3d2c1b0a9f8e7d6c5b4a3928170605040302010f0e0d0c0b0a0";
+
+    private static String shareJson(long taskIndex) {
+        return "{\n  \"msgType\": 2,\n  \"msgContent\": {\n    \"share\": \"" + SHARE + "\",\n    \"hash\": \"" + HASH
+                + "\",\n    \"taskIndex\": " + taskIndex + "\n  }\n}";
+    }
+
+    @Test
+    public void testParse() {
+        PoolShare share = PoolShare.parse(shareJson(1234));
+        assertNotNull(share);
+        assertEquals(SHARE, share.getShare());
+        assertEquals(HASH, share.getHash());
+        assertEquals(1234, share.getTaskIndex());
+
+        // compact form and any field order
+        share = PoolShare.parse("{\"msgContent\":{\"taskIndex\":7,\"hash\":\"" + HASH + "\",\"share\":\"" + SHARE
+                + "\"},\"msgType\":2}");
+        assertNotNull(share);
+        assertEquals(7, share.getTaskIndex());
+        assertEquals(SHARE, share.getShare());
+    }
+
+    @Test
+    public void testParseRejects() {
+        assertNull(PoolShare.parse(null));
+        assertNull(PoolShare.parse(""));
+        assertNull(PoolShare.parse("not json"));
+        // a task message, not a share
+        assertNull(PoolShare.parse(shareJson(1).replace("\"msgType\": 2", "\"msgType\": 1")));
+        assertNull(PoolShare.parse(shareJson(1).replace("\"taskIndex\": 1", "\"taskIndex\": x")));
+        assertNull(PoolShare.parse("{\"msgType\":2,\"msgContent\":{\"share\":\"" + SHARE + "\",\"taskIndex\":1}}"));
+        assertNull(PoolShare.parse("{\"msgType\":2,\"msgContent\":{\"share\":\"a\\\"b\",\"hash\":\"" + HASH
+                + "\",\"taskIndex\":1}}"));
+    }
+
+    @Test
+    public void testRecordCount() {
+        assertEquals(-1, PoolShare.recordCount(null));
+        assertEquals(-1, PoolShare.recordCount(new byte[1]));
+        byte[] batch = new byte[1 + 3 * PoolShare.RECORD_SIZE];
+        batch[0] = PoolShare.SHARE_FLAG;
+        assertEquals(3, PoolShare.recordCount(batch));
+        // a task flag is not a share batch
+        batch[0] = 1;
+        assertEquals(-1, PoolShare.recordCount(batch));
+        byte[] partial = new byte[2 + PoolShare.RECORD_SIZE];
+        partial[0] = PoolShare.SHARE_FLAG;
+        assertEquals(-1, PoolShare.recordCount(partial));
+    }
+}
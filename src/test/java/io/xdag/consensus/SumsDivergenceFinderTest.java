@@ -0,0 +1,134 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.consensus;
+
+import static io.xdag.config.Constants.REQUEST_BLOCKS_MAX_TIME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.util.concurrent.SettableFuture;
+import io.xdag.db.BlockStore;
+import io.xdag.net.Channel;
+import io.xdag.net.XdagP2pHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.MutableBytes;
+import org.junit.After;
+import org.junit.Test;
+
+public class SumsDivergenceFinderTest {
+
+    private final AtomicLong seq = new AtomicLong();
+    private final Map<Long, SettableFuture<Bytes>> sumsRequestMap = new ConcurrentHashMap<>();
+    private final ExecutorService network = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        network.shutdownNow();
+    }
+
+    @Test
+    public void testFindDifferingLeaves() throws Exception {
+        // we have nothing, the peers have blocks under children 3 and 5 of every node
+        BlockStore blockStore = mock(BlockStore.class);
+        when(blockStore.loadSum(anyLong(), anyLong(), any(MutableBytes.class))).thenReturn(1);
+        AtomicInteger requestsA = new AtomicInteger();
+        AtomicInteger requestsB = new AtomicInteger();
+        List<Channel> peers = new ArrayList<>();
+        peers.add(newPeer(requestsA, true));
+        peers.add(newPeer(requestsB, true));
+
+        SumsDivergenceFinder finder = new SumsDivergenceFinder(() -> peers, sumsRequestMap, blockStore, 5000);
+        long dt = REQUEST_BLOCKS_MAX_TIME << 8;
+        List<Long> leaves = finder.find(0, dt, 2048);
+
+        long leaf = REQUEST_BLOCKS_MAX_TIME;
+        assertEquals(List.of(3 * 16 * leaf + 3 * leaf, 3 * 16 * leaf + 5 * leaf,
+                5 * 16 * leaf + 3 * leaf, 5 * 16 * leaf + 5 * leaf), leaves);
+        // one request for the root and one for each differing child, spread over both peers
+        assertEquals(3, requestsA.get() + requestsB.get());
+        assertTrue(requestsA.get() > 0 && requestsB.get() > 0);
+        assertTrue(sumsRequestMap.isEmpty());
+    }
+
+    @Test
+    public void testRetryOnSilentPeer() throws Exception {
+        BlockStore blockStore = mock(BlockStore.class);
+        when(blockStore.loadSum(anyLong(), anyLong(), any(MutableBytes.class))).thenReturn(1);
+        AtomicInteger silent = new AtomicInteger();
+        AtomicInteger answering = new AtomicInteger();
+        List<Channel> peers = new ArrayList<>();
+        peers.add(newPeer(silent, false));
+        peers.add(newPeer(answering, true));
+
+        SumsDivergenceFinder finder = new SumsDivergenceFinder(() -> peers, sumsRequestMap, blockStore, 200);
+        List<Long> leaves = finder.find(0, REQUEST_BLOCKS_MAX_TIME << 4, 2048);
+
+        // the root went to the silent peer first and was asked again from the other one
+        assertEquals(1, silent.get());
+        assertEquals(1, answering.get());
+        assertEquals(List.of(3 * REQUEST_BLOCKS_MAX_TIME, 5 * REQUEST_BLOCKS_MAX_TIME), leaves);
+    }
+
+    private Channel newPeer(AtomicInteger requests, boolean answer) {
+        Channel channel = mock(Channel.class);
+        XdagP2pHandler handler = mock(XdagP2pHandler.class);
+        when(channel.getP2pHandler()).thenReturn(handler);
+        when(handler.sendGetSums(anyLong(), anyLong())).thenAnswer(invocation -> {
+            long s = seq.incrementAndGet();
+            requests.incrementAndGet();
+            if (answer) {
+                network.submit(() -> reply(s));
+            }
+            return s;
+        });
+        return channel;
+    }
+
+    private void reply(long s) {
+        SettableFuture<Bytes> sf;
+        while ((sf = sumsRequestMap.get(s)) == null) {
+            Thread.onSpinWait();
+        }
+        MutableBytes sums = MutableBytes.create(256);
+        for (int i : new int[]{3, 5}) {
+            // sum and size of 1, little endian
+            sums.set(i * 16, (byte) 1);
+            sums.set(i * 16 + 8, (byte) 1);
+        }
+        sf.set(sums);
+    }
+}
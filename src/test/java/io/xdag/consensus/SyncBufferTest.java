@@ -0,0 +1,142 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.consensus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.xdag.core.Block;
+import io.xdag.core.BlockWrapper;
+import io.xdag.core.XdagBlock;
+import java.util.List;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.Test;
+
+public class SyncBufferTest {
+
+    private static final long ENTRY_SIZE = 512 + SyncBuffer.ENTRY_OVERHEAD;
+
+    private static Bytes32 hash(int id) {
+        byte[] hashlow = new byte[32];
+        hashlow[31] = (byte) id;
+        return Bytes32.wrap(hashlow);
+    }
+
+    private static BlockWrapper wrapper(int id) {
+        Block block = mock(Block.class);
+        when(block.getHashLow()).thenReturn(hash(id));
+        when(block.getXdagBlock()).thenReturn(new XdagBlock(new byte[512]));
+        return new BlockWrapper(block, 5);
+    }
+
+    @Test
+    public void testParentRequestedOnce() {
+        SyncBuffer buffer = new SyncBuffer(100, Long.MAX_VALUE);
+        assertTrue(buffer.add(wrapper(1), hash(100), 0));
+        assertFalse(buffer.add(wrapper(2), hash(100), 10));
+        // same child again is not stored twice
+        assertFalse(buffer.add(wrapper(2), hash(100), 20));
+        assertEquals(2, buffer.size());
+        assertEquals(1, buffer.parentSize());
+        assertEquals(2 * ENTRY_SIZE, buffer.getBytes());
+
+        // asked again once the request timed out
+        assertTrue(buffer.add(wrapper(3), hash(100), SyncBuffer.REQUEST_TIMEOUT + 1));
+        assertFalse(buffer.add(wrapper(4), hash(100), SyncBuffer.REQUEST_TIMEOUT + 2));
+    }
+
+    @Test
+    public void testExpireRequests() {
+        SyncBuffer buffer = new SyncBuffer(100, Long.MAX_VALUE);
+        buffer.add(wrapper(1), hash(100), 0);
+        buffer.add(wrapper(2), hash(101), 10);
+        assertEquals(1, buffer.request(hash(100)).getAttempt());
+        assertNull(buffer.request(hash(102)));
+
+        assertTrue(buffer.expireRequests(SyncBuffer.REQUEST_TIMEOUT).isEmpty());
+        List<SyncBuffer.Request> expired = buffer.expireRequests(SyncBuffer.REQUEST_TIMEOUT + 1);
+        assertEquals(1, expired.size());
+        assertEquals(hash(100), expired.get(0).getParent());
+        assertEquals(2, expired.get(0).getAttempt());
+
+        // the retried parent is now the newest request
+        expired = buffer.expireRequests(2 * SyncBuffer.REQUEST_TIMEOUT + 5);
+        assertEquals(1, expired.size());
+        assertEquals(hash(101), expired.get(0).getParent());
+        assertEquals(2, buffer.request(hash(101)).getAttempt());
+    }
+
+    @Test
+    public void testReleaseInArrivalOrder() {
+        SyncBuffer buffer = new SyncBuffer(100, Long.MAX_VALUE);
+        buffer.add(wrapper(1), hash(100), 0);
+        buffer.add(wrapper(2), hash(101), 0);
+        buffer.add(wrapper(3), hash(100), 0);
+
+        List<BlockWrapper> released = buffer.release(hash(100));
+        assertEquals(2, released.size());
+        assertEquals(hash(1), released.get(0).getBlock().getHashLow());
+        assertEquals(hash(3), released.get(1).getBlock().getHashLow());
+        assertTrue(buffer.release(hash(100)).isEmpty());
+        assertEquals(1, buffer.size());
+        assertEquals(ENTRY_SIZE, buffer.getBytes());
+    }
+
+    @Test
+    public void testOldestEvicted() {
+        SyncBuffer buffer = new SyncBuffer(2, Long.MAX_VALUE);
+        buffer.add(wrapper(1), hash(100), 0);
+        buffer.add(wrapper(2), hash(101), 0);
+        buffer.add(wrapper(3), hash(101), 0);
+        assertEquals(2, buffer.size());
+        assertEquals(1, buffer.getEvictions());
+        assertFalse(buffer.isWaiting(hash(1)));
+        // the parent with no children left is forgotten and requested afresh
+        assertEquals(1, buffer.parentSize());
+        assertTrue(buffer.add(wrapper(4), hash(100), 1));
+
+        SyncBuffer small = new SyncBuffer(100, 2 * ENTRY_SIZE);
+        small.add(wrapper(1), hash(100), 0);
+        small.add(wrapper(2), hash(100), 0);
+        small.add(wrapper(3), hash(100), 0);
+        assertEquals(2, small.size());
+        assertEquals(2 * ENTRY_SIZE, small.getBytes());
+    }
+
+    @Test
+    public void testMovedToNewParent() {
+        SyncBuffer buffer = new SyncBuffer(100, Long.MAX_VALUE);
+        buffer.add(wrapper(1), hash(100), 0);
+        buffer.add(wrapper(1), hash(101), 0);
+        assertEquals(1, buffer.size());
+        assertEquals(1, buffer.parentSize());
+        assertTrue(buffer.release(hash(100)).isEmpty());
+        assertEquals(1, buffer.release(hash(101)).size());
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.consensus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.xdag.Kernel;
+import io.xdag.config.DevnetConfig;
+import io.xdag.core.Block;
+import io.xdag.core.Blockchain;
+import io.xdag.core.BlockWrapper;
+import io.xdag.core.XdagBlock;
+import io.xdag.core.XdagStats;
+import io.xdag.net.Channel;
+import io.xdag.net.ChannelManager;
+import io.xdag.net.Peer;
+import io.xdag.net.XdagP2pHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class SyncManagerTest {
+
+    DevnetConfig config = new DevnetConfig();
+    List<Channel> channels = new ArrayList<>();
+    SyncManager syncManager;
+
+    @Before
+    public void setUp() {
+        config.setImportQueueSize(2);
+        Kernel kernel = mock(Kernel.class);
+        Blockchain blockchain = mock(Blockchain.class);
+        ChannelManager channelMgr = mock(ChannelManager.class);
+        when(kernel.getConfig()).thenReturn(config);
+        when(kernel.getBlockchain()).thenReturn(blockchain);
+        when(kernel.getChannelMgr()).thenReturn(channelMgr);
+        when(blockchain.getXdagStats()).thenReturn(new XdagStats());
+        when(channelMgr.getActiveChannels()).thenReturn(channels);
+        syncManager = new SyncManager(kernel);
+    }
+
+    @After
+    public void tearDown() {
+        syncManager.stop();
+    }
+
+    @Test
+    public void testSubmitBlocksWhileImportQueueIsFull() throws Exception {
+        syncManager.submitBlock(mock(BlockWrapper.class));
+        syncManager.submitBlock(mock(BlockWrapper.class));
+
+        Thread producer = new Thread(() -> syncManager.submitBlock(mock(BlockWrapper.class)));
+        producer.start();
+        producer.join(200);
+        // no import thread is running, the third block waits for room
+        assertTrue(producer.isAlive());
+        assertEquals(2, syncManager.getVerifiedQueue().size());
+
+        assertNotNull(syncManager.getVerifiedQueue().poll(1, TimeUnit.SECONDS));
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertEquals(2, syncManager.getVerifiedQueue().size());
+    }
+
+    @Test
+    public void testParentRequestedFromOnePeerAtATime() {
+        for (int i = 0; i < 3; i++) {
+            channels.add(channel("peer" + i));
+        }
+        Bytes32 parent = Bytes32.random();
+
+        // the peer that sent the block is asked first, only once for all children
+        syncManager.syncPushBlock(wrapper(channels.get(1).getRemotePeer()), parent);
+        syncManager.syncPushBlock(wrapper(channels.get(2).getRemotePeer()), parent);
+        assertEquals(List.of(0, 1, 0), requests(parent));
+
+        // every timeout moves the request on to the next peer
+        long now = System.currentTimeMillis();
+        syncManager.retryParentRequests(now);
+        assertEquals(List.of(0, 1, 0), requests(parent));
+        syncManager.retryParentRequests(now + SyncBuffer.REQUEST_TIMEOUT + 1);
+        assertEquals(List.of(0, 1, 1), requests(parent));
+        syncManager.retryParentRequests(now + 2 * SyncBuffer.REQUEST_TIMEOUT + 2);
+        assertEquals(List.of(1, 1, 1), requests(parent));
+    }
+
+    private static Channel channel(String peerId) {
+        Channel channel = mock(Channel.class);
+        Peer peer = mock(Peer.class);
+        when(peer.getPeerId()).thenReturn(peerId);
+        when(channel.getRemotePeer()).thenReturn(peer);
+        when(channel.getP2pHandler()).thenReturn(mock(XdagP2pHandler.class));
+        return channel;
+    }
+
+    private static BlockWrapper wrapper(Peer peer) {
+        Block block = mock(Block.class);
+        when(block.getHashLow()).thenReturn(Bytes32.random());
+        when(block.getXdagBlock()).thenReturn(new XdagBlock(new byte[512]));
+        return new BlockWrapper(block, 5, peer, false);
+    }
+
+    private List<Integer> requests(Bytes32 parent) {
+        List<Integer> counts = new ArrayList<>();
+        for (Channel channel : channels) {
+            counts.add(Mockito.mockingDetails(channel.getP2pHandler()).getInvocations().stream()
+                    .filter(i -> i.getMethod().getName().equals("sendGetBlock")
+                            && parent.equals(i.getArgument(0)))
+                    .mapToInt(i -> 1).sum());
+        }
+        return counts;
+    }
+}
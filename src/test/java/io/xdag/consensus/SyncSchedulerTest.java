@@ -0,0 +1,152 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.consensus;
+
+import static io.xdag.config.Constants.REQUEST_BLOCKS_MAX_TIME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.util.concurrent.SettableFuture;
+import io.xdag.net.Channel;
+import io.xdag.net.XdagP2pHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.tuweni.bytes.Bytes;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SyncSchedulerTest {
+
+    private final AtomicLong seq = new AtomicLong();
+    private final Map<Long, SettableFuture<Bytes>> requestMap = new ConcurrentHashMap<>();
+    private final List<Channel> channels = new ArrayList<>();
+    private final Map<Long, Channel> sentTo = new ConcurrentHashMap<>();
+    private SyncScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new SyncScheduler(() -> channels, requestMap, 4, 2);
+    }
+
+    @Test
+    public void testRequestsSpreadAcrossPeers() {
+        Channel a = newChannel();
+        Channel b = newChannel();
+        for (int i = 0; i < 6; i++) {
+            assertTrue(scheduler.submit(i * REQUEST_BLOCKS_MAX_TIME));
+        }
+        assertFalse(scheduler.submit(0));
+
+        scheduler.tick(0);
+        // bounded by two per peer and four overall
+        assertEquals(4, scheduler.inFlightSize());
+        assertEquals(4, requestMap.size());
+        verify(a.getP2pHandler(), times(2)).sendGetBlocks(anyLong(), anyLong());
+        verify(b.getP2pHandler(), times(2)).sendGetBlocks(anyLong(), anyLong());
+
+        // a reply frees a slot and the next range goes out right away
+        reply(requestMap.keySet().iterator().next());
+        assertEquals(4, scheduler.inFlightSize());
+        assertEquals(5, scheduler.size());
+    }
+
+    @Test
+    public void testRetryOnTimeout() {
+        Channel slow = newChannel();
+        scheduler.submit(0);
+        scheduler.tick(0);
+        long first = requestMap.keySet().iterator().next();
+        assertEquals(slow, sentTo.get(first));
+
+        Channel fast = newChannel();
+        scheduler.tick(60_000);
+        // the slow peer timed out, the range moved to the other peer
+        assertFalse(requestMap.containsKey(first));
+        assertEquals(1, requestMap.size());
+        assertEquals(fast, sentTo.get(requestMap.keySet().iterator().next()));
+        assertEquals(1, scheduler.getScore(slow).getFailures());
+    }
+
+    @Test
+    public void testStealFromSlowPeer() {
+        Channel slow = newChannel();
+        scheduler.submit(0);
+        scheduler.tick(0);
+        long first = requestMap.keySet().iterator().next();
+
+        Channel idle = newChannel();
+        // not timed out yet, but well beyond the expected latency
+        scheduler.tick(SyncScheduler.STEAL_FACTOR * SyncScheduler.DEFAULT_LATENCY);
+        assertEquals(2, requestMap.size());
+
+        long stolen = requestMap.keySet().stream().filter(s -> s != first).findFirst().orElseThrow();
+        assertEquals(idle, sentTo.get(stolen));
+        reply(stolen);
+        // first reply wins, the copy on the slow peer is dropped
+        assertTrue(requestMap.isEmpty());
+        assertEquals(0, scheduler.size());
+        assertEquals(0, scheduler.getScore(slow).getInFlight());
+    }
+
+    @Test
+    public void testInactivePeerRequeued() {
+        Channel gone = newChannel();
+        scheduler.submit(0);
+        scheduler.tick(0);
+        channels.remove(gone);
+        Channel other = newChannel();
+
+        scheduler.tick(1);
+        assertEquals(1, requestMap.size());
+        assertEquals(other, sentTo.get(requestMap.keySet().iterator().next()));
+    }
+
+    private void reply(long seq) {
+        requestMap.get(seq).set(Bytes.wrap(new byte[]{0}));
+    }
+
+    private Channel newChannel() {
+        Channel channel = mock(Channel.class);
+        XdagP2pHandler handler = mock(XdagP2pHandler.class);
+        when(channel.isActive()).thenReturn(true);
+        when(channel.getP2pHandler()).thenReturn(handler);
+        when(handler.sendGetBlocks(anyLong(), anyLong())).thenAnswer(invocation -> {
+            long s = seq.incrementAndGet();
+            sentTo.put(s, channel);
+            return s;
+        });
+        channels.add(channel);
+        return channel;
+    }
+}
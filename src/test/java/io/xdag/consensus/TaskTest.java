@@ -146,6 +146,27 @@ public class TaskTest {
         assertEquals(1, jsonObject.getInt("msgType"));
     }
 
+    @Test
+    public void testTaskConvertToBinary() {
+        Task newTask = new Task();
+        XdagField[] task = new XdagField[2];
+        MutableBytes preHash = MutableBytes.wrap(RandomUtils.nextBytes(32));
+        MutableBytes taskSeed = MutableBytes.wrap(RandomUtils.nextBytes(32));
+        task[0] = new XdagField(preHash);
+        task[1] = new XdagField(taskSeed);
+        newTask.setTask(task);
+        newTask.setTaskTime(0x1234L);
+        newTask.setTaskIndex(7);
+
+        byte[] binary = newTask.toBinary();
+        assertEquals(Task.BINARY_SIZE, binary.length);
+        assertEquals(1, binary[0]);
+        assertEquals(preHash, Bytes.wrap(binary, 1, 32));
+        assertEquals(taskSeed, Bytes.wrap(binary, 33, 32));
+        assertEquals(0x1234L, BytesUtils.bytesToLong(binary, 65, false));
+        assertEquals(7, BytesUtils.bytesToLong(binary, 73, false));
+    }
+
     @Test
     public void testSend2PoolsTxInfoConvertToJsonFormat() {
         // example:
@@ -0,0 +1,199 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.consensus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.xdag.Kernel;
+import io.xdag.config.DevnetConfig;
+import io.xdag.core.XdagField;
+import io.xdag.pool.PoolAwardManager;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.bytes.MutableBytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class XdagPowTest {
+
+    DevnetConfig config = new DevnetConfig();
+    Kernel kernel;
+    RecordingPow pow;
+
+    @Before
+    public void setUp() {
+        kernel = mock(Kernel.class);
+        when(kernel.getConfig()).thenReturn(config);
+        when(kernel.getPoolAwardManager()).thenReturn(mock(PoolAwardManager.class));
+        pow = new RecordingPow(kernel);
+        pow.start();
+    }
+
+    @After
+    public void tearDown() {
+        pow.stop();
+    }
+
+    @Test
+    public void testBinaryShareBatch() throws Exception {
+        Bytes32 preHash = Bytes32.random();
+        pow.newTask(7, preHash);
+        Bytes32 share1 = Bytes32.random();
+        Bytes32 share2 = Bytes32.random();
+
+        XdagPow.GetShares shares = pow.getSharesFromPools();
+        shares.getShareBatch(batch(
+                record(share1, preHash, 7),
+                record(share1, preHash, 7),         // duplicate
+                record(share2, Bytes32.random(), 7), // other preHash
+                record(share2, preHash, 6),         // old task
+                record(share2, preHash, 7)));
+
+        waitFor(() -> pow.accepted.size() == 2 && shares.getStale() == 2 && shares.getDuplicate() == 1);
+        assertEquals(Arrays.asList(share1, share2), pow.accepted);
+        assertEquals(5, shares.getReceived());
+        assertEquals(0, shares.getMalformed());
+
+        // a truncated record rejects the whole batch
+        byte[] truncated = Arrays.copyOf(batch(record(Bytes32.random(), preHash, 7)), 1 + PoolShare.RECORD_SIZE - 1);
+        shares.getShareBatch(truncated);
+        waitFor(() -> shares.getMalformed() == 1);
+        assertEquals(2, pow.accepted.size());
+    }
+
+    @Test
+    public void testBinaryShareBatchVerifiedInParallel() throws Exception {
+        int threads = 4;
+        config.setPoolShareVerifyThreads(threads);
+        Set<Thread> workers = ConcurrentHashMap.newKeySet();
+        CountDownLatch allWorking = new CountDownLatch(threads);
+        RecordingPow parallel = new RecordingPow(kernel) {
+            @Override
+            protected void onNewShare(Task task, Bytes32 share) {
+                super.onNewShare(task, share);
+                if (workers.add(Thread.currentThread())) {
+                    allWorking.countDown();
+                    try {
+                        // only returns early if the other threads got shares of the same batch as well
+                        allWorking.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        parallel.start();
+        try {
+            Bytes32 preHash = Bytes32.random();
+            parallel.newTask(1, preHash);
+            byte[][] records = new byte[100][];
+            for (int i = 0; i < records.length; i++) {
+                records[i] = record(Bytes32.random(), preHash, 1);
+            }
+            parallel.getSharesFromPools().getShareBatch(batch(records));
+
+            waitFor(() -> parallel.accepted.size() == records.length);
+            assertEquals(0, allWorking.getCount());
+        } finally {
+            parallel.stop();
+        }
+    }
+
+    @Test
+    public void testJsonAndBinarySharesShareDedup() throws Exception {
+        Bytes32 preHash = Bytes32.random();
+        pow.newTask(3, preHash);
+        Bytes32 share = Bytes32.random();
+
+        pow.receiveNewShare(share.toUnprefixedHexString(), preHash.toUnprefixedHexString(), 3);
+        pow.getSharesFromPools().getShareBatch(batch(record(share, preHash, 3)));
+
+        waitFor(() -> pow.getSharesFromPools().getDuplicate() == 1);
+        assertEquals(List.of(share), pow.accepted);
+    }
+
+    private static byte[] record(Bytes32 share, Bytes32 preHash, long taskIndex) {
+        return ByteBuffer.allocate(PoolShare.RECORD_SIZE)
+                .put(share.toArrayUnsafe())
+                .put(preHash.toArrayUnsafe())
+                .putLong(taskIndex)
+                .array();
+    }
+
+    private static byte[] batch(byte[]... records) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + records.length * PoolShare.RECORD_SIZE);
+        buffer.put((byte) PoolShare.SHARE_FLAG);
+        for (byte[] record : records) {
+            buffer.put(record);
+        }
+        return buffer.array();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    /**
+     * Records the shares that pass the task checks instead of hashing them.
+     */
+    static class RecordingPow extends XdagPow {
+
+        final List<Bytes32> accepted = new CopyOnWriteArrayList<>();
+
+        RecordingPow(Kernel kernel) {
+            super(kernel);
+        }
+
+        void newTask(long index, Bytes32 preHash) {
+            Task task = new Task();
+            task.setTask(new XdagField[]{new XdagField(preHash.mutableCopy()),
+                    new XdagField(MutableBytes.wrap(Bytes32.random().toArray()))});
+            task.setTaskIndex(index);
+            taskIndex.set(index);
+            currentTask.set(task);
+            sharesFromPools.newTask();
+        }
+
+        @Override
+        protected void onNewShare(Task task, Bytes32 share) {
+            accepted.add(share);
+        }
+    }
+}
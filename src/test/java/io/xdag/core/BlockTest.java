@@ -26,17 +26,32 @@ package io.xdag.core;
 
 //import static io.xdag.db.BlockStore.BLOCK_AMOUNT;
 
+import io.xdag.BlockBuilder;
+import io.xdag.config.DevnetConfig;
+import io.xdag.crypto.Hash;
+import io.xdag.crypto.Keys;
+import io.xdag.crypto.Sign;
 import io.xdag.utils.BytesUtils;
 import io.xdag.utils.SimpleEncoder;
+import io.xdag.utils.XdagTime;
+import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.bytes.MutableBytes;
 import org.apache.tuweni.bytes.MutableBytes32;
 import org.bouncycastle.util.encoders.Hex;
+import org.hyperledger.besu.crypto.KeyPair;
+import org.hyperledger.besu.crypto.SECPPublicKey;
 import org.junit.Test;
 
 import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class BlockTest {
 
@@ -56,6 +71,86 @@ public class BlockTest {
           assertEquals(inFee, outFee);
      }
 
+     @Test
+     public void testVerifiedKeysComputedOnce() throws Exception {
+          KeyPair key = Keys.createEcKeyPair();
+          Block signed = BlockBuilder.generateAddressBlock(new DevnetConfig(), key, XdagTime.getCurrentTimestamp());
+          Block block = new Block(new XdagBlock(signed.toBytes()));
+
+          List<SECPPublicKey> keys = block.verifiedKeys();
+          assertEquals(1, keys.size());
+          assertEquals(key.getPublicKey(), keys.get(0));
+          assertSame(keys, block.verifiedKeys());
+
+          // keys verified ahead of import can be handed to a fresh copy of the block
+          Block copy = new Block(new XdagBlock(signed.toBytes()));
+          copy.setVerifiedKeys(keys);
+          assertSame(keys, copy.verifiedKeys());
+     }
+
+     @Test
+     public void testSubRawDataMemoized() throws Exception {
+          KeyPair key = Keys.createEcKeyPair();
+          Block block = BlockBuilder.generateAddressBlock(new DevnetConfig(), key, XdagTime.getCurrentTimestamp());
+          int index = block.getOutsigIndex() - 2;
+
+          Bytes subData = block.getSubRawData(index);
+          assertSame(subData, block.getSubRawData(index));
+
+          // a new nonce changes the raw block, so the digest is cut again
+          block.setNonce(Bytes32.random());
+          block.recalcHash();
+          Bytes changed = block.getSubRawData(index);
+          assertNotSame(subData, changed);
+          assertEquals(512, changed.size());
+     }
+
+     /**
+      * Every import verifies the out signature several times (verifiedKeys, getBlockPubKey, checkMineAndAdd),
+      * each of them has to reuse the digest and key encoding of the first one.
+      */
+     @Test
+     public void testSignatureDigestReused() throws Exception {
+          DevnetConfig config = new DevnetConfig();
+          for (int i = 0; i < 4; i++) {
+               KeyPair key = Keys.createEcKeyPair();
+               byte[] raw = BlockBuilder.generateAddressBlock(config, key, XdagTime.getCurrentTimestamp() + i).toBytes();
+               Block block = new Block(new XdagBlock(raw));
+               SECPPublicKey publicKey = block.getPubKeys().get(0);
+               int index = block.getOutsigIndex() - 2;
+
+               Bytes subData = block.getSubRawData(index);
+               Bytes pubkeyBytes = Keys.toCompressedBytes(publicKey);
+               assertEquals(subRawData(block.getXdagBlock().getData(), index), subData);
+               assertEquals(Bytes.wrap(publicKey.asEcPoint(Sign.CURVE).getEncoded(true)), pubkeyBytes);
+               for (int r = 0; r < 3; r++) {
+                    assertSame(subData, block.getSubRawData(index));
+                    assertSame(pubkeyBytes, Keys.toCompressedBytes(publicKey));
+               }
+               Bytes32 hash = Hash.hashTwice(Bytes.wrap(subData, pubkeyBytes));
+               assertTrue(Sign.SECP256K1.verify(hash, block.getOutsig(), publicKey));
+               assertEquals(List.of(publicKey), block.verifiedKeys());
+          }
+     }
+
+     /**
+      * the digest as it was cut before being memoized on the block
+      */
+     private static Bytes subRawData(Bytes data, int length) {
+          MutableBytes res = MutableBytes.create(512);
+          res.set(0, data.slice(0, (length + 1) * 32));
+          for (int i = length + 1; i < 16; i++) {
+               long type = data.getLong(8, ByteOrder.LITTLE_ENDIAN);
+               byte typeB = (byte) (type >> (i << 2) & 0xf);
+               if (XdagField.FieldType.XDAG_FIELD_SIGN_IN.asByte() == typeB
+                       || XdagField.FieldType.XDAG_FIELD_SIGN_OUT.asByte() == typeB) {
+                    continue;
+               }
+               res.set(i * 32, data.slice(i * 32, 32));
+          }
+          return res;
+     }
+
      @Test
      public void generateBlock() {
           String blockRawdata = "000000000000000038324654050000004d3782fa780100000000000000000000"
@@ -215,7 +215,7 @@ public class ExtraBlockTest {
         @Override
         public void processExtraBlock() {
             if (this.getMemOrphanPool().size() > expectedExtraBlocks) {
-                Block reuse = getMemOrphanPool().entrySet().iterator().next().getValue();
+                Block reuse = getMemOrphanPool().oldest();
                 removeOrphan(reuse.getHashLow(), OrphanRemoveActions.ORPHAN_REMOVE_REUSE);
                 this.getXdagStats().nblocks--;
                 this.getXdagStats().totalnblocks = Math
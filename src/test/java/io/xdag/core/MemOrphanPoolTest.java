@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.Test;
+
+public class MemOrphanPoolTest {
+
+    private static Block block(int id) {
+        Block block = mock(Block.class);
+        byte[] hashlow = new byte[32];
+        hashlow[31] = (byte) id;
+        when(block.getHashLow()).thenReturn(Bytes32.wrap(hashlow));
+        return block;
+    }
+
+    @Test
+    public void testFifoOrderAndSize() {
+        MemOrphanPool pool = new MemOrphanPool(2, 0);
+        Block b1 = block(1);
+        Block b2 = block(2);
+        Block b3 = block(3);
+        pool.put(b1, 0);
+        pool.put(b2, 0);
+        assertFalse(pool.needEvict(0));
+        pool.put(b3, 0);
+        assertTrue(pool.needEvict(0));
+        assertSame(b1, pool.oldest());
+
+        assertSame(b1, pool.remove(b1.getHashLow()));
+        assertFalse(pool.needEvict(0));
+        assertSame(b2, pool.oldest());
+        assertNull(pool.remove(b1.getHashLow()));
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void testAgeEviction() {
+        MemOrphanPool pool = new MemOrphanPool(100, 1000);
+        pool.put(block(1), 0);
+        pool.put(block(2), 800);
+        assertFalse(pool.needEvict(1000));
+        assertTrue(pool.needEvict(1001));
+        pool.remove(block(1).getHashLow());
+        assertFalse(pool.needEvict(1001));
+        assertTrue(pool.needEvict(1801));
+    }
+
+    @Test
+    public void testEvictSkipsKeptBlocks() {
+        MemOrphanPool pool = new MemOrphanPool(1, 0);
+        Block b1 = block(1);
+        Block b2 = block(2);
+        Block b3 = block(3);
+        pool.put(b1, 0);
+        pool.put(b2, 0);
+        pool.put(b3, 0);
+
+        // b1 cannot be removed, eviction moves past it until only b1 is left
+        List<Block> offered = new ArrayList<>();
+        int evicted = pool.evict(0, block -> {
+            offered.add(block);
+            return block != b1 && pool.remove(block.getHashLow()) != null;
+        });
+        assertEquals(2, evicted);
+        assertEquals(Arrays.asList(b1, b2, b3), offered);
+        assertEquals(2, pool.getEvictions());
+        assertTrue(pool.contains(b1.getHashLow()));
+        assertFalse(pool.contains(b2.getHashLow()));
+        assertFalse(pool.contains(b3.getHashLow()));
+
+        // over size again with only kept blocks, the pass still ends
+        pool.put(block(4), 0);
+        assertEquals(0, pool.evict(0, block -> false));
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void testMetrics() {
+        MemOrphanPool pool = new MemOrphanPool(1, 0);
+        Block b1 = block(1);
+        Block b2 = block(2);
+        pool.put(b1, 0);
+        pool.put(b2, 0);
+        assertSame(b1, pool.get(b1.getHashLow()));
+        assertEquals(1, pool.evict(0, block -> pool.remove(block.getHashLow()) != null));
+
+        // only lookups for evicted blocks are misses
+        assertNull(pool.get(b1.getHashLow()));
+        assertNull(pool.get(block(3).getHashLow()));
+        assertSame(b2, pool.get(b2.getHashLow()));
+
+        assertEquals(2, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(1, pool.getEvictions());
+        assertEquals(2.0 / 3, pool.getHitRate(), 0.0001);
+
+        // a block received again is served by the pool, no longer a miss
+        pool.put(b1, 0);
+        pool.remove(b1.getHashLow());
+        assertNull(pool.get(b1.getHashLow()));
+        assertEquals(1, pool.getMisses());
+    }
+}
@@ -25,7 +25,9 @@
 package io.xdag.crypto;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 import io.xdag.utils.Numeric;
 import java.security.InvalidAlgorithmParameterException;
@@ -82,4 +84,21 @@ public class KeysTest {
         }
     }
 
+    @Test
+    public void testCompressedBytesCache()
+            throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, NoSuchProviderException {
+        KeyPair key = Keys.createEcKeyPair();
+        byte[] compressed = key.getPublicKey().asEcPoint(Sign.CURVE).getEncoded(true);
+
+        Bytes cached = Keys.toCompressedBytes(key.getPublicKey());
+        assertEquals(Bytes.wrap(compressed), cached);
+        assertSame(cached, Keys.toCompressedBytes(key.getPublicKey()));
+
+        byte[] address = Keys.toBytesAddress(key);
+        assertArrayEquals(Hash.sha256hash160(Bytes.wrap(compressed)), address);
+        // callers get their own copy of the cached address
+        address[0] ^= 1;
+        assertArrayEquals(Hash.sha256hash160(Bytes.wrap(compressed)), Keys.toBytesAddress(key.getPublicKey()));
+    }
+
 }
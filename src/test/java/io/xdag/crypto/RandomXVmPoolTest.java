@@ -0,0 +1,91 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.crypto;
+
+import static io.xdag.utils.BytesUtils.bytesToPointer;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.jna.Pointer;
+import io.xdag.crypto.randomx.NativeSize;
+import io.xdag.crypto.randomx.RandomXJNA;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RandomXVmPoolTest {
+
+    private Pointer rxCache;
+    private RandomXVmPool pool;
+
+    @Before
+    public void setUp() {
+        // light mode, vms read the cache only
+        int flags = RandomXJNA.INSTANCE.randomx_get_flags();
+        byte[] seed = "xdagj randomx vm pool".getBytes(StandardCharsets.UTF_8);
+        rxCache = RandomXJNA.INSTANCE.randomx_alloc_cache(flags);
+        RandomXJNA.INSTANCE.randomx_init_cache(rxCache, bytesToPointer(seed), new NativeSize(seed.length));
+        pool = new RandomXVmPool(flags, rxCache, null, 4);
+        assertTrue(pool.init());
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+        RandomXJNA.INSTANCE.randomx_release_cache(rxCache);
+    }
+
+    @Test
+    public void testParallelHashMatchesSequential() throws Exception {
+        int count = 64;
+        List<byte[]> inputs = new ArrayList<>();
+        List<byte[]> expected = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte[] data = ("block " + i).getBytes(StandardCharsets.UTF_8);
+            inputs.add(data);
+            expected.add(pool.calculateHash(data, data.length));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> futures = new ArrayList<>();
+            for (byte[] data : inputs) {
+                futures.add(executor.submit(() -> pool.calculateHash(data, data.length)));
+            }
+            for (int i = 0; i < count; i++) {
+                assertArrayEquals(expected.get(i), futures.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(pool.getCreated() <= 4);
+    }
+}
@@ -59,6 +59,8 @@ import java.util.List;
 
 import static io.xdag.BlockBuilder.generateExtraBlock;
 import static io.xdag.BlockBuilder.generateOldTransactionBlock;
+import static io.xdag.config.Constants.BI_MAIN;
+import static io.xdag.config.Constants.BI_OURS;
 import static io.xdag.core.ImportResult.IMPORTED_BEST;
 import static io.xdag.core.ImportResult.IMPORTED_NOT_BEST;
 import static io.xdag.core.XdagField.FieldType.XDAG_FIELD_IN;
@@ -204,6 +206,17 @@ public class SnapshotStoreTest {
 
         snapshotStore.saveSnapshotToIndex(blockStore, kernel.getTxHistoryStore(), keys,0);
 
+        // main blocks mined by our key stay listed after booting from the snapshot
+        List<Block> minedBlocks = blockStore.getMinedBlocks(100);
+        assertFalse(minedBlocks.isEmpty());
+        long lastHeight = Long.MAX_VALUE;
+        for (Block block : minedBlocks) {
+            assertTrue((block.getInfo().getFlags() & BI_MAIN) != 0);
+            assertTrue((block.getInfo().getFlags() & BI_OURS) != 0);
+            assertTrue(block.getInfo().getHeight() < lastHeight);
+            lastHeight = block.getInfo().getHeight();
+        }
+
         //Verify the total balance of the current account
 //        assertEquals("45980.0", String.valueOf(snapshotStore.getAllBalance().toDecimal(1, XUnit.XDAG)));
         //Verify height
@@ -25,6 +25,7 @@ package io.xdag.db.mysql;
 
 import io.xdag.core.Address;
 import io.xdag.core.TxHistory;
+import io.xdag.core.TxHistoryPage;
 import io.xdag.core.XAmount;
 import io.xdag.core.XdagField;
 import io.xdag.crypto.Sign;
@@ -43,8 +44,11 @@ import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 import static io.xdag.utils.BasicUtils.hash2Address;
 import static io.xdag.utils.BasicUtils.hash2byte;
@@ -66,7 +70,7 @@ public class TransactionHistoryStoreImplTest {
                 `ftime` datetime(3) NOT NULL,
                 PRIMARY KEY (`fid`),
                 UNIQUE KEY `id_UNIQUE` (`fid`),
-                KEY `faddress_index` (`faddress`)
+                KEY `faddress_ftime_fid_index` (`faddress`,`ftime`,`fid`)
                 )
             """;
     long txPageSizeLimit = SecureRandomProvider.publicSecureRandom().nextLong();
@@ -135,4 +139,48 @@ public class TransactionHistoryStoreImplTest {
 
     }
 
+    @Test
+    public void testKeysetPagination() {
+        TransactionHistoryStore store = new TransactionHistoryStoreImpl(100);
+        Address address = new Address(Bytes32.random(), XdagField.FieldType.XDAG_FIELD_OUTPUT, XAmount.ZERO, false);
+        String addr = hash2Address(address.getAddress());
+        long base = System.currentTimeMillis() - 60_000;
+        Set<String> hashes = new HashSet<>();
+        for (int i = 0; i < 25; i++) {
+            TxHistory txHistory = new TxHistory();
+            txHistory.setAddress(address);
+            txHistory.setHash(BasicUtils.hash2Address(Bytes32.random()));
+            // pairs of rows share a timestamp, so the page boundary has to fall back to fid
+            txHistory.setTimestamp(XdagTime.msToXdagtimestamp(base + (i / 2) * 1000L));
+            assertTrue(store.saveTxHistory(txHistory));
+            hashes.add(txHistory.getHash());
+        }
+
+        TxHistoryPage offsetPage = store.listTxHistoryPage(addr, 1, null, 10);
+        assertEquals(10, offsetPage.getTxHistories().size());
+        assertEquals(3, offsetPage.getTotalPage());
+        assertNull(offsetPage.getNextCursor());
+
+        Set<String> seen = new HashSet<>();
+        List<Integer> sizes = new ArrayList<>();
+        long lastTime = Long.MAX_VALUE;
+        String cursor = "";
+        do {
+            TxHistoryPage page = store.listTxHistoryPage(addr, 1, cursor, 10);
+            assertEquals(3, page.getTotalPage());
+            assertFalse(page.isApproximate());
+            sizes.add(page.getTxHistories().size());
+            for (TxHistory txHistory : page.getTxHistories()) {
+                assertTrue(seen.add(txHistory.getHash()));
+                assertTrue(txHistory.getTimestamp() <= lastTime);
+                lastTime = txHistory.getTimestamp();
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(List.of(10, 10, 5), sizes);
+        assertEquals(hashes, seen);
+
+        assertSame(TxHistoryPage.EMPTY, store.listTxHistoryPage(addr, 1, "not-a-cursor", 10));
+    }
+
 }
@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.db.mysql;
+
+import io.xdag.utils.DruidUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class TxHistoryWriterTest {
+
+    @Rule
+    public TemporaryFolder root = new TemporaryFolder();
+
+    private final AtomicBoolean online = new AtomicBoolean(true);
+    private TxHistoryWriter writer;
+    private Path spool;
+
+    @BeforeClass
+    public static void setUp() throws SQLException {
+        Statement stmt = null;
+        Connection conn = DruidUtils.getConnection();
+        if (conn != null) {
+            stmt = conn.createStatement();
+            stmt.execute(TransactionHistoryStoreImplTest.SQL_CTEATE_TABLE);
+        }
+        DruidUtils.close(conn, stmt);
+    }
+
+    @Before
+    public void init() throws Exception {
+        spool = root.newFolder().toPath().resolve("txhistory.spool");
+        writer = new TxHistoryWriter(() -> online.get() ? DruidUtils.getConnection() : null, spool,
+                1000, 100, 50, 0);
+    }
+
+    @After
+    public void close() {
+        writer.close();
+    }
+
+    @Test
+    public void testBatchFlush() throws SQLException {
+        for (int i = 0; i < 250; i++) {
+            assertTrue(writer.offer(row("batch", i, "remark")));
+        }
+        assertTrue(writer.flush());
+        assertEquals(250, count("batch"));
+        assertEquals(250, writer.getWritten());
+        assertEquals(0, writer.getQueueDepth());
+        assertEquals(0, writer.getSpooled());
+        assertFalse(writer.hasSpool());
+    }
+
+    @Test
+    public void testSpoolAndReplay() throws SQLException {
+        online.set(false);
+        for (int i = 0; i < 150; i++) {
+            writer.offer(row("spool", i, "tab\tand\nnewline"));
+        }
+        assertTrue(writer.flush());
+        assertEquals(0, count("spool"));
+        assertEquals(150, writer.getSpooled());
+        assertTrue(writer.hasSpool());
+
+        online.set(true);
+        writer.offer(row("spool", 150, null));
+        assertTrue(writer.flush());
+        assertEquals(151, count("spool"));
+        assertEquals(150, writer.getReplayed());
+        assertFalse(writer.hasSpool());
+    }
+
+    @Test
+    public void testCloseDrainsQueue() throws SQLException {
+        for (int i = 0; i < 50; i++) {
+            writer.offer(row("close", i, ""));
+        }
+        writer.close();
+        assertEquals(50, count("close"));
+        assertFalse(writer.offer(row("close", 50, "")));
+    }
+
+    @Test
+    public void testRowEncodeDecode() {
+        TxHistoryWriter.Row row = row("codec", 7, "a\tb\nc");
+        TxHistoryWriter.Row decoded = TxHistoryWriter.Row.decode(row.encode());
+        assertEquals(row.address, decoded.address);
+        assertEquals(row.addressType, decoded.addressType);
+        assertEquals(row.hash, decoded.hash);
+        assertEquals(0, row.amount.compareTo(decoded.amount));
+        assertEquals(row.type, decoded.type);
+        assertEquals(row.remark, decoded.remark);
+        assertEquals(row.time, decoded.time);
+    }
+
+    private static TxHistoryWriter.Row row(String address, int i, String remark) {
+        return new TxHistoryWriter.Row(address, 1, "hash" + i, new BigDecimal("1.000000001"), 2, remark,
+                1_700_000_000_000L + i);
+    }
+
+    private static int count(String address) throws SQLException {
+        try (Connection conn = DruidUtils.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(
+                        "select count(*) from t_transaction_history where faddress=?")) {
+            pstmt.setString(1, address);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.db.rocksdb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.xdag.core.BlockInfo;
+import io.xdag.core.SnapshotInfo;
+import io.xdag.core.XAmount;
+import io.xdag.core.XdagStats;
+import io.xdag.core.XdagTopStatus;
+import io.xdag.db.execption.DeserializationException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import org.apache.commons.lang3.RandomUtils;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.Test;
+
+public class BlockInfoCodecTest {
+
+    @Test
+    public void testEncodeDecode() throws Exception {
+        BlockInfo info = new BlockInfo();
+        info.setType(0x51);
+        info.setFlags(0x1f);
+        info.setHeight(100);
+        info.setTimestamp(1602226304712L);
+        info.setDifficulty(new BigInteger("31354286420799284945296"));
+        info.setRef(RandomUtils.nextBytes(32));
+        info.setMaxDiffLink(RandomUtils.nextBytes(32));
+        info.setHash(RandomUtils.nextBytes(32));
+        info.setHashlow(RandomUtils.nextBytes(32));
+        info.setAmount(XAmount.of(-1024));
+        info.setFee(XAmount.of(100));
+        info.setRemark(RandomUtils.nextBytes(32));
+        info.setSnapshot(true);
+        info.setSnapshotInfo(new SnapshotInfo(true, RandomUtils.nextBytes(33)));
+
+        byte[] value = BlockInfoCodec.encode(info);
+        assertTrue(BlockInfoCodec.isEncoded(value));
+        BlockInfo decoded = BlockInfoCodec.decode(value);
+        assertEquals(info, decoded);
+        assertEquals(info.getDifficulty(), decoded.getDifficulty());
+        assertArrayEquals(info.getRef(), decoded.getRef());
+        assertArrayEquals(info.getMaxDiffLink(), decoded.getMaxDiffLink());
+        assertArrayEquals(info.getHashlow(), decoded.getHashlow());
+        assertEquals(info.getAmount(), decoded.getAmount());
+        assertEquals(info.getFee(), decoded.getFee());
+        assertArrayEquals(info.getRemark(), decoded.getRemark());
+        assertTrue(decoded.isSnapshot());
+        assertTrue(decoded.getSnapshotInfo().getType());
+        assertArrayEquals(info.getSnapshotInfo().getData(), decoded.getSnapshotInfo().getData());
+    }
+
+    @Test
+    public void testNullFields() throws Exception {
+        BlockInfo info = new BlockInfo();
+        info.setHashlow(RandomUtils.nextBytes(32));
+
+        BlockInfo decoded = BlockInfoCodec.decode(BlockInfoCodec.encode(info));
+        assertNull(decoded.getRef());
+        assertNull(decoded.getMaxDiffLink());
+        assertNull(decoded.getHash());
+        assertNull(decoded.getDifficulty());
+        assertNull(decoded.getRemark());
+        assertNull(decoded.getSnapshotInfo());
+        assertFalse(decoded.isSnapshot());
+        assertArrayEquals(info.getHashlow(), decoded.getHashlow());
+    }
+
+    @Test
+    public void testKryoValueIsNotEncoded() throws Exception {
+        KryoCodec kryo = new KryoCodec(BigInteger.class, byte[].class, BlockInfo.class, XdagStats.class,
+                XdagTopStatus.class, SnapshotInfo.class, UInt64.class, XAmount.class);
+        BlockInfo info = new BlockInfo();
+        info.setRef(RandomUtils.nextBytes(32));
+        info.setMaxDiffLink(RandomUtils.nextBytes(32));
+        info.setHash(RandomUtils.nextBytes(32));
+        info.setHashlow(RandomUtils.nextBytes(32));
+        info.setRemark(RandomUtils.nextBytes(32));
+        info.setAmount(XAmount.of(1024));
+        assertFalse(BlockInfoCodec.isEncoded(kryo.serialize(info)));
+    }
+
+    @Test(expected = DeserializationException.class)
+    public void testDecodeTruncated() throws Exception {
+        BlockInfo info = new BlockInfo();
+        info.setRemark(RandomUtils.nextBytes(32));
+        byte[] value = BlockInfoCodec.encode(info);
+        BlockInfoCodec.decode(Arrays.copyOf(value, value.length - 1));
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.db.rocksdb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
+import io.xdag.core.BlockInfo;
+import io.xdag.core.SnapshotInfo;
+import io.xdag.core.XAmount;
+import io.xdag.core.XdagStats;
+import io.xdag.core.XdagTopStatus;
+import io.xdag.db.execption.DeserializationException;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.lang3.RandomUtils;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.Test;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+
+public class KryoCodecTest {
+
+    private static final Class<?>[] TYPES = {BigInteger.class, byte[].class, BlockInfo.class, XdagStats.class,
+            XdagTopStatus.class, SnapshotInfo.class, UInt64.class, XAmount.class};
+
+    private final KryoCodec codec = new KryoCodec(TYPES);
+
+    private final Kryo legacyKryo = legacyKryo();
+
+    @Test
+    public void testCompatibleWithLegacyEncoding() throws Exception {
+        BlockInfo blockInfo = newBlockInfo();
+
+        byte[] legacy = legacySerialize(blockInfo);
+        assertArrayEquals(legacy, codec.serialize(blockInfo));
+
+        BlockInfo decoded = codec.deserialize(legacy, BlockInfo.class);
+        assertEquals(blockInfo, decoded);
+        assertEquals(blockInfo.getDifficulty(), decoded.getDifficulty());
+        assertEquals(blockInfo.getAmount(), decoded.getAmount());
+        assertArrayEquals(blockInfo.getRef(), decoded.getRef());
+    }
+
+    @Test(expected = DeserializationException.class)
+    public void testDeserializeTruncated() throws Exception {
+        byte[] data = codec.serialize(newBlockInfo());
+        codec.deserialize(Arrays.copyOf(data, 10), BlockInfo.class);
+    }
+
+    @Test
+    public void testConcurrentCodec() throws Exception {
+        int threads = 8;
+        int n = 500;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < n; i++) {
+                        BlockInfo blockInfo = newBlockInfo();
+                        byte[] data = codec.serialize(blockInfo);
+                        assertArrayEquals(legacySerialize(blockInfo), data);
+                        BlockInfo decoded = codec.deserialize(data, BlockInfo.class);
+                        assertEquals(blockInfo, decoded);
+                        assertEquals(blockInfo.getDifficulty(), decoded.getDifficulty());
+                        assertArrayEquals(blockInfo.getRef(), decoded.getRef());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static BlockInfo newBlockInfo() {
+        BlockInfo blockInfo = new BlockInfo();
+        blockInfo.setHeight(1);
+        blockInfo.setType(0x51);
+        blockInfo.setFlags(0x1f);
+        blockInfo.setTimestamp(1602226304712L);
+        blockInfo.setDifficulty(new BigInteger(RandomUtils.nextBytes(16)).abs());
+        blockInfo.setRef(RandomUtils.nextBytes(32));
+        blockInfo.setMaxDiffLink(RandomUtils.nextBytes(32));
+        blockInfo.setHash(RandomUtils.nextBytes(32));
+        blockInfo.setHashlow(RandomUtils.nextBytes(32));
+        blockInfo.setAmount(XAmount.of(1024));
+        blockInfo.setFee(XAmount.of(100));
+        return blockInfo;
+    }
+
+    private static Kryo legacyKryo() {
+        Kryo kryo = new Kryo();
+        kryo.setReferences(false);
+        kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+        for (Class<?> type : TYPES) {
+            kryo.register(type);
+        }
+        return kryo;
+    }
+
+    private byte[] legacySerialize(Object obj) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Output output = new Output(outputStream);
+        synchronized (legacyKryo) {
+            legacyKryo.writeObject(output, obj);
+        }
+        output.flush();
+        output.close();
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.db.rocksdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.xdag.config.Config;
+import io.xdag.config.DevnetConfig;
+import io.xdag.core.Address;
+import io.xdag.core.Block;
+import java.util.List;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OrphanBlockStoreImplTest {
+
+    @Rule
+    public TemporaryFolder root = new TemporaryFolder();
+
+    Config config = new DevnetConfig();
+    DatabaseFactory factory;
+    OrphanBlockStore orphanStore;
+
+    @Before
+    public void setUp() throws Exception {
+        config.getNodeSpec().setStoreDir(root.newFolder().getAbsolutePath());
+        config.getNodeSpec().setStoreBackupDir(root.newFolder().getAbsolutePath());
+        factory = new RocksdbFactory(config);
+        orphanStore = new OrphanBlockStoreImpl(factory.getDB(DatabaseName.ORPHANIND));
+        orphanStore.init();
+        orphanStore.reset();
+    }
+
+    private static Block orphan(int id, long time) {
+        Block block = mock(Block.class);
+        byte[] hashlow = new byte[32];
+        hashlow[31] = (byte) id;
+        when(block.getHashLow()).thenReturn(Bytes32.wrap(hashlow));
+        when(block.getTimestamp()).thenReturn(time);
+        return block;
+    }
+
+    @Test
+    public void testGetOrphanOrderedByTime() {
+        assertNull(orphanStore.getOrphan(10, new long[]{Long.MAX_VALUE, 0}));
+
+        orphanStore.addOrphan(orphan(1, 300));
+        orphanStore.addOrphan(orphan(2, 100));
+        orphanStore.addOrphan(orphan(3, 200));
+        orphanStore.addOrphan(orphan(4, 500));
+        // re-adding the same orphan must not grow the pool
+        orphanStore.addOrphan(orphan(2, 100));
+        assertEquals(4, orphanStore.getOrphanSize());
+
+        long[] sendTime = new long[]{300, 0};
+        List<Address> res = orphanStore.getOrphan(2, sendTime);
+        assertEquals(2, res.size());
+        assertEquals(2, res.get(0).getAddress().get(31));
+        assertEquals(3, res.get(1).getAddress().get(31));
+        assertEquals(201, sendTime[1]);
+
+        sendTime = new long[]{300, 0};
+        res = orphanStore.getOrphan(10, sendTime);
+        assertEquals(3, res.size());
+        assertEquals(300, sendTime[1]);
+    }
+
+    @Test
+    public void testDeleteAndReload() {
+        orphanStore.addOrphan(orphan(1, 300));
+        orphanStore.addOrphan(orphan(2, 100));
+        orphanStore.deleteByHash(orphan(2, 100).getHashLow().toArray());
+        // unknown hash leaves the size untouched
+        orphanStore.deleteByHash(orphan(9, 100).getHashLow().toArray());
+        assertEquals(1, orphanStore.getOrphanSize());
+
+        OrphanBlockStore reopened = new OrphanBlockStoreImpl(factory.getDB(DatabaseName.ORPHANIND));
+        reopened.init();
+        assertEquals(1, reopened.getOrphanSize());
+        List<Address> res = reopened.getOrphan(10, new long[]{Long.MAX_VALUE, 0});
+        assertEquals(1, res.size());
+        assertEquals(1, res.get(0).getAddress().get(31));
+    }
+}
@@ -40,6 +40,9 @@ import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 
 public class RocksdbKVSourceTest {
 
@@ -103,4 +106,98 @@ public class RocksdbKVSourceTest {
         List<byte[]> values = indexSource.prefixValueLookup(key);
         assertEquals(2, values.size());
     }
+
+    @Test
+    public void testExecuteInBatch() throws Exception {
+        RocksdbColumnFamilyFactory factory = new RocksdbColumnFamilyFactory(config);
+        KVSource<byte[], byte[]> indexSource = factory.getDB(DatabaseName.INDEX);
+        KVSource<byte[], byte[]> timeSource = factory.getDB(DatabaseName.TIME);
+        indexSource.reset();
+        timeSource.reset();
+
+        byte[] key = Hex.decode("FFFF");
+        byte[] timeKey = BlockUtils.getTimeKey(1602226304712L, Hash.hashTwice(Bytes.wrap("1".getBytes(StandardCharsets.UTF_8))));
+        byte[] value = Hex.decode("1234");
+        byte[][] seenByOtherThread = new byte[1][];
+
+        factory.executeInBatch(() -> {
+            indexSource.put(key, value);
+            timeSource.put(timeKey, value);
+
+            // pending writes are visible to the writing thread only
+            assertEquals("1234", Hex.toHexString(indexSource.get(key)));
+            assertEquals(1, timeSource.prefixKeyLookup(BlockUtils.getTimeKey(1602226304712L, null)).size());
+            Thread reader = new Thread(() -> seenByOtherThread[0] = indexSource.get(key));
+            reader.start();
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        assertNull(seenByOtherThread[0]);
+        assertEquals("1234", Hex.toHexString(indexSource.get(key)));
+        assertEquals("1234", Hex.toHexString(timeSource.get(timeKey)));
+        factory.close();
+    }
+
+    @Test
+    public void testFailedBatchIsDiscarded() {
+        RocksdbColumnFamilyFactory factory = new RocksdbColumnFamilyFactory(config);
+        KVSource<byte[], byte[]> indexSource = factory.getDB(DatabaseName.INDEX);
+        indexSource.reset();
+
+        byte[] key = Hex.decode("FFFF");
+        boolean[] committed = new boolean[1];
+        try {
+            factory.executeInBatch(() -> {
+                indexSource.put(key, Hex.decode("1234"));
+                indexSource.afterCommit(() -> committed[0] = true);
+                throw new IllegalStateException("import failed");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("import failed", e.getMessage());
+        }
+
+        assertNull(indexSource.get(key));
+        assertFalse(committed[0]);
+        factory.close();
+    }
+
+    @Test
+    public void testMigrateLegacyDatabases() {
+        RocksdbFactory legacyFactory = new RocksdbFactory(config);
+        KVSource<byte[], byte[]> legacyIndex = legacyFactory.getDB(DatabaseName.INDEX);
+        KVSource<byte[], byte[]> legacyTime = legacyFactory.getDB(DatabaseName.TIME);
+        legacyIndex.init();
+        legacyTime.init();
+
+        byte[] key = Hex.decode("FFFF");
+        byte[] timeKey = BlockUtils.getTimeKey(1602226304712L, Hash.hashTwice(Bytes.wrap("1".getBytes(StandardCharsets.UTF_8))));
+        legacyIndex.put(key, Hex.decode("1234"));
+        legacyTime.put(timeKey, Hex.decode("2345"));
+        legacyFactory.close();
+
+        RocksdbColumnFamilyFactory factory = new RocksdbColumnFamilyFactory(config);
+        KVSource<byte[], byte[]> indexSource = factory.getDB(DatabaseName.INDEX);
+        KVSource<byte[], byte[]> timeSource = factory.getDB(DatabaseName.TIME);
+        indexSource.init();
+        timeSource.init();
+        assertEquals("1234", Hex.toHexString(indexSource.get(key)));
+        assertEquals("2345", Hex.toHexString(timeSource.get(timeKey)));
+        KVSource<byte[], byte[]> blockSource = factory.getDB(DatabaseName.BLOCK);
+        blockSource.init();
+        assertNull(blockSource.get(key));
+
+        // the migration runs once, later changes are not overwritten by the legacy data
+        indexSource.put(key, Hex.decode("5678"));
+        factory.close();
+        factory = new RocksdbColumnFamilyFactory(config);
+        indexSource = factory.getDB(DatabaseName.INDEX);
+        indexSource.init();
+        assertEquals("5678", Hex.toHexString(indexSource.get(key)));
+        factory.close();
+    }
 }
@@ -0,0 +1,208 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.db.rocksdb;
+
+import static io.xdag.db.AddressStore.ADDRESS;
+import static io.xdag.db.AddressStore.ADDRESS_SIZE;
+import static io.xdag.db.BlockStore.HASH_BLOCK_INFO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.xdag.config.Config;
+import io.xdag.config.DevnetConfig;
+import io.xdag.core.XAmount;
+import io.xdag.db.AddressStore;
+import io.xdag.utils.BytesUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.RandomUtils;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SnapshotStoreImplTest {
+
+    @Rule
+    public TemporaryFolder root = new TemporaryFolder();
+
+    Config config = new DevnetConfig();
+
+    @Before
+    public void setUp() throws Exception {
+        config.getNodeSpec().setStoreDir(root.newFolder().getAbsolutePath());
+        config.getNodeSpec().setStoreBackupDir(root.newFolder().getAbsolutePath());
+    }
+
+    /**
+     * the import range of a key: the top 4 bits of the byte at {@code offset} pick one of the 16 ranges
+     */
+    private static int range(byte[] key, int offset) {
+        return (key[offset] & 0xf0) >>> 4;
+    }
+
+    private static int addressRange(byte[] key) {
+        return range(key, 1);
+    }
+
+    @Test
+    public void testBlockInfoRangesRunInParallel() throws Exception {
+        RocksdbKVSource snapshotSource = new RocksdbKVSource("SNAPSHOT/HASH");
+        snapshotSource.setConfig(config);
+        snapshotSource.init();
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < 2000; i++) {
+            // hashlow: the first 8 bytes are always zero
+            byte[] hashlow = BytesUtils.merge(new byte[8], RandomUtils.nextBytes(24));
+            byte[] key = BytesUtils.merge(HASH_BLOCK_INFO, hashlow);
+            snapshotSource.put(key, new byte[]{1});
+            keys.add(Hex.toHexString(key));
+        }
+        assertEquals(SnapshotStoreImpl.IMPORT_RANGES,
+                keys.stream().map(Hex::decode).mapToInt(key -> range(key, 9)).distinct().count());
+
+        int threads = 4;
+        SnapshotStoreImpl snapshotStore = new SnapshotStoreImpl(snapshotSource, null, threads);
+        Set<String> imported = ConcurrentHashMap.newKeySet();
+        Set<Thread> workers = ConcurrentHashMap.newKeySet();
+        CountDownLatch allWorking = new CountDownLatch(threads);
+        int offset = SnapshotStoreImpl.BLOCK_INFO_SPLIT_OFFSET;
+        snapshotStore.importRanges(HASH_BLOCK_INFO, offset, null, (key, value, progress) -> {
+            assertTrue(imported.add(Hex.toHexString(key)));
+            if (workers.add(Thread.currentThread())) {
+                allWorking.countDown();
+                try {
+                    // only returns early if the other workers got block info keys as well
+                    allWorking.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        assertEquals(0, allWorking.getCount());
+        assertEquals(keys, imported);
+        snapshotSource.close();
+    }
+
+    @Test
+    public void testSaveAddressImportsAllKeys() {
+        RocksdbKVSource snapshotSource = new RocksdbKVSource("SNAPSHOT/ADDRESS");
+        snapshotSource.setConfig(config);
+        snapshotSource.init();
+        List<byte[]> addresses = new ArrayList<>();
+        long total = 0;
+        for (int i = 0; i < 2000; i++) {
+            byte[] key = BytesUtils.merge(ADDRESS, RandomUtils.nextBytes(20));
+            snapshotSource.put(key, UInt64.valueOf(i + 1).toBytes().toArray());
+            addresses.add(key);
+            total += i + 1;
+        }
+        snapshotSource.put(new byte[]{ADDRESS_SIZE}, BytesUtils.longToBytes(addresses.size(), false));
+
+        RocksdbFactory dbFactory = new RocksdbFactory(config);
+        AddressStore addressStore = new AddressStoreImpl(dbFactory.getDB(DatabaseName.ADDRESS));
+        addressStore.reset();
+        SnapshotStoreImpl snapshotStore = new SnapshotStoreImpl(snapshotSource, dbFactory, 4);
+        snapshotStore.saveAddress(null, addressStore, null, Collections.emptyList(), 0);
+
+        assertEquals(XAmount.ofXAmount(total), snapshotStore.getAllBalance());
+        assertEquals(XAmount.ofXAmount(total), addressStore.getAllBalance());
+        for (byte[] key : addresses) {
+            long expected = UInt64.fromBytes(Bytes.wrap(snapshotSource.get(key))).toLong();
+            assertEquals(XAmount.ofXAmount(expected), addressStore.getBalanceByAddress(Arrays.copyOfRange(key, 1, 21)));
+        }
+        snapshotSource.close();
+    }
+
+    @Test
+    public void testSaveAddressResumesFromCheckpoints() {
+        RocksdbKVSource snapshotSource = new RocksdbKVSource("SNAPSHOT/ADDRESS");
+        snapshotSource.setConfig(config);
+        snapshotSource.init();
+        List<byte[]> addresses = new ArrayList<>();
+        long total = 0;
+        for (int i = 0; i < 2000; i++) {
+            byte[] key = BytesUtils.merge(ADDRESS, RandomUtils.nextBytes(20));
+            snapshotSource.put(key, UInt64.valueOf(i + 1).toBytes().toArray());
+            addresses.add(key);
+            total += i + 1;
+        }
+        snapshotSource.put(new byte[]{ADDRESS_SIZE}, BytesUtils.longToBytes(addresses.size(), false));
+        addresses.sort(Arrays::compareUnsigned);
+
+        RocksdbFactory dbFactory = new RocksdbFactory(config);
+        AddressStore addressStore = new AddressStoreImpl(dbFactory.getDB(DatabaseName.ADDRESS));
+        addressStore.reset();
+        SnapshotStoreImpl snapshotStore = new SnapshotStoreImpl(snapshotSource, dbFactory, 4);
+
+        // range 0 finished and range 1 stopped halfway before the restart
+        SnapshotStoreImpl.RangeProgress done = new SnapshotStoreImpl.RangeProgress();
+        SnapshotStoreImpl.RangeProgress partial = new SnapshotStoreImpl.RangeProgress();
+        List<byte[]> range1 = new ArrayList<>();
+        for (byte[] key : addresses) {
+            long value = UInt64.fromBytes(Bytes.wrap(snapshotSource.get(key))).toLong();
+            if (addressRange(key) == 0) {
+                done.all = done.all.add(XAmount.ofXAmount(value));
+            } else if (addressRange(key) == 1) {
+                range1.add(key);
+                if (range1.size() <= 10) {
+                    partial.all = partial.all.add(XAmount.ofXAmount(value));
+                    partial.lastKey = key;
+                }
+            }
+        }
+        done.done = true;
+        snapshotStore.saveCheckpoint(0, done);
+        snapshotStore.saveCheckpoint(1, partial);
+
+        snapshotStore.saveAddress(null, addressStore, null, Collections.emptyList(), 0);
+
+        assertEquals(XAmount.ofXAmount(total), snapshotStore.getAllBalance());
+        assertEquals(XAmount.ofXAmount(total), addressStore.getAllBalance());
+        assertEquals(addresses.size(), addressStore.getAddressSize().toLong());
+        for (byte[] key : addresses) {
+            byte[] address = Arrays.copyOfRange(key, 1, 21);
+            boolean skipped = addressRange(key) == 0 || (addressRange(key) == 1 && range1.indexOf(key) < 10);
+            long expected = skipped ? 0 : UInt64.fromBytes(Bytes.wrap(snapshotSource.get(key))).toLong();
+            assertEquals(XAmount.ofXAmount(expected), addressStore.getBalanceByAddress(address));
+        }
+        for (int i = 0; i < SnapshotStoreImpl.IMPORT_RANGES; i++) {
+            assertNull(snapshotSource.get(new byte[]{SnapshotStoreImpl.SNAPSHOT_CHECKPOINT, (byte) i}));
+        }
+        snapshotSource.close();
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.db.rocksdb;
+
+import static io.xdag.config.Constants.MIN_GAS;
+import static io.xdag.utils.BasicUtils.hash2Address;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.xdag.config.Config;
+import io.xdag.config.DevnetConfig;
+import io.xdag.core.Address;
+import io.xdag.core.TxHistory;
+import io.xdag.core.TxHistoryPage;
+import io.xdag.core.XAmount;
+import io.xdag.core.XUnit;
+import io.xdag.core.XdagField;
+import io.xdag.utils.XdagTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TxHistoryIndexStoreImplTest {
+
+    @Rule
+    public TemporaryFolder root = new TemporaryFolder();
+
+    Config config = new DevnetConfig();
+    DatabaseFactory factory;
+    TxHistoryIndexStoreImpl store;
+
+    Address owner = new Address(Bytes32.random(), XdagField.FieldType.XDAG_FIELD_OUTPUT, XAmount.of(5, XUnit.XDAG),
+            false);
+    String addr = hash2Address(owner.getAddress());
+    long base = System.currentTimeMillis() - 3_600_000;
+
+    @Before
+    public void setUp() throws Exception {
+        config.getNodeSpec().setStoreDir(root.newFolder().getAbsolutePath());
+        config.getNodeSpec().setStoreBackupDir(root.newFolder().getAbsolutePath());
+        factory = new RocksdbFactory(config);
+        store = new TxHistoryIndexStoreImpl(factory.getDB(DatabaseName.TXINDEX), 100);
+        store.init();
+        store.reset();
+    }
+
+    private TxHistory txHistory(Address address, String hash, long ms, String remark) {
+        TxHistory txHistory = new TxHistory();
+        txHistory.setAddress(address);
+        txHistory.setHash(hash);
+        txHistory.setTimestamp(XdagTime.msToXdagtimestamp(ms));
+        txHistory.setRemark(remark);
+        return txHistory;
+    }
+
+    @Test
+    public void testSaveAndList() {
+        String hash = hash2Address(Bytes32.random());
+        assertTrue(store.saveTxHistory(txHistory(owner, hash, base, " remark ")));
+        Address input = new Address(owner.getAddress(), XdagField.FieldType.XDAG_FIELD_INPUT,
+                XAmount.of(5, XUnit.XDAG), false);
+        assertTrue(store.saveTxHistory(txHistory(input, hash2Address(Bytes32.random()), base + 10_000, null)));
+        // other addresses never show up in the range
+        Address other = new Address(Bytes32.random(), XdagField.FieldType.XDAG_FIELD_OUTPUT, XAmount.ZERO, false);
+        assertTrue(store.saveTxHistory(txHistory(other, hash, base + 5_000, null)));
+
+        assertEquals(2, store.getTxHistoryCount(addr));
+        List<TxHistory> list = store.listTxHistoryByAddress(addr, 1);
+        assertEquals(2, list.size());
+        // newest first, amounts stored like the MySQL store does
+        assertEquals(XdagField.FieldType.XDAG_FIELD_INPUT, list.get(0).getAddress().getType());
+        assertEquals(XAmount.of(5, XUnit.XDAG).subtract(MIN_GAS), list.get(0).getAddress().getAmount());
+        assertEquals("", list.get(0).getRemark());
+        assertEquals(hash, list.get(1).getHash());
+        assertEquals("remark", list.get(1).getRemark());
+        assertEquals(XAmount.of(5, XUnit.XDAG), list.get(1).getAddress().getAmount());
+        assertEquals(XdagTime.xdagTimestampToMs(XdagTime.msToXdagtimestamp(base)), list.get(1).getTimestamp());
+
+        // time bounded
+        List<TxHistory> bounded = store.listTxHistoryByAddress(addr, 1, base - 1000, base + 1000);
+        assertEquals(1, bounded.size());
+        assertEquals(hash, bounded.get(0).getHash());
+    }
+
+    @Test
+    public void testCursorPagination() {
+        Set<String> hashes = new HashSet<>();
+        for (int i = 0; i < 25; i++) {
+            String hash = hash2Address(Bytes32.random());
+            // pairs share a timestamp so pages may end between them
+            assertTrue(store.saveTxHistory(txHistory(owner, hash, base + (i / 2) * 1000L, null)));
+            hashes.add(hash);
+        }
+        // the same hash touching the address twice at the same time keeps both entries
+        String twice = hash2Address(Bytes32.random());
+        assertTrue(store.saveTxHistory(txHistory(owner, twice, base, null)));
+        assertTrue(store.saveTxHistory(txHistory(owner, twice, base, null)));
+        hashes.add(twice);
+        assertEquals(27, store.getTxHistoryCount(addr));
+
+        TxHistoryPage offsetPage = store.listTxHistoryPage(addr, 3, null, 10);
+        assertEquals(7, offsetPage.getTxHistories().size());
+        assertEquals(3, offsetPage.getTotalPage());
+
+        Set<String> seen = new HashSet<>();
+        List<Integer> sizes = new ArrayList<>();
+        long lastTime = Long.MAX_VALUE;
+        int entries = 0;
+        String cursor = "";
+        do {
+            TxHistoryPage page = store.listTxHistoryPage(addr, 1, cursor, 10);
+            assertEquals(3, page.getTotalPage());
+            assertFalse(page.isApproximate());
+            sizes.add(page.getTxHistories().size());
+            for (TxHistory txHistory : page.getTxHistories()) {
+                seen.add(txHistory.getHash());
+                assertTrue(txHistory.getTimestamp() <= lastTime);
+                lastTime = txHistory.getTimestamp();
+                entries++;
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(List.of(10, 10, 7), sizes);
+        assertEquals(27, entries);
+        assertEquals(hashes, seen);
+
+        // a time bounded first page counts the range instead of using the counter
+        TxHistoryPage bounded = store.listTxHistoryPage(addr, 1, "", base + 10_500, base + 12_500, 10);
+        assertEquals(3, bounded.getTxHistories().size());
+        assertNull(bounded.getNextCursor());
+
+        assertSame(TxHistoryPage.EMPTY, store.listTxHistoryPage(addr, 1, "not-a-cursor", 10));
+    }
+
+    @Test
+    public void testWritesJoinBatch() throws Exception {
+        AtomicInteger seenByOthers = new AtomicInteger(-1);
+        factory.executeInBatch(() -> {
+            store.saveTxHistory(txHistory(owner, hash2Address(Bytes32.random()), base, null));
+            store.saveTxHistory(txHistory(owner, hash2Address(Bytes32.random()), base, null));
+            // the import thread reads its own pending writes
+            assertEquals(2, store.getTxHistoryCount(addr));
+            Thread reader = new Thread(() -> seenByOthers.set(store.getTxHistoryCount(addr)));
+            reader.start();
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertEquals(0, seenByOthers.get());
+        assertEquals(2, store.getTxHistoryCount(addr));
+        assertEquals(2, store.listTxHistoryByAddress(addr, 1).size());
+    }
+}
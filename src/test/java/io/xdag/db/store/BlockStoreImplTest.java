@@ -27,12 +27,17 @@ package io.xdag.db.store;
 import io.xdag.config.Config;
 import io.xdag.config.DevnetConfig;
 import io.xdag.core.Block;
+import io.xdag.core.BlockInfo;
+import io.xdag.core.SnapshotInfo;
 import io.xdag.core.XAmount;
 import io.xdag.core.XdagBlock;
 import io.xdag.core.XdagStats;
+import io.xdag.core.XdagTopStatus;
 import io.xdag.crypto.Keys;
 import io.xdag.db.BlockStore;
 import io.xdag.db.rocksdb.*;
+import io.xdag.utils.BytesUtils;
+import org.apache.tuweni.units.bigints.UInt64;
 import org.apache.tuweni.bytes.MutableBytes;
 import org.bouncycastle.util.encoders.Hex;
 import org.hyperledger.besu.crypto.KeyPair;
@@ -40,13 +45,22 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
 
+import java.math.BigInteger;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static io.xdag.BlockBuilder.generateAddressBlock;
+import static io.xdag.config.Constants.BI_APPLIED;
+import static io.xdag.config.Constants.BI_MAIN;
+import static io.xdag.db.BlockStore.HASH_BLOCK_INFO;
 import static io.xdag.utils.BytesUtils.equalBytes;
 import static org.junit.Assert.*;
 
@@ -131,6 +145,131 @@ public class BlockStoreImplTest {
         bs.saveBlockInfo(block.getInfo());
         assertEquals(XAmount.TEN, bs.getBlockInfoByHash(block.getHashLow()).getFee());
     }
+    @Test
+    public void testBlockInfoCache()
+            throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, NoSuchProviderException {
+        BlockStore bs = new BlockStoreImpl(indexSource, timeSource, blockSource,TxHistorySource);
+        bs.init();
+        long time = System.currentTimeMillis();
+        KeyPair key = Keys.createEcKeyPair();
+        Block block = generateAddressBlock(config, key, time);
+        bs.saveBlock(block);
+
+        // saveBlockInfo writes through, so the first read is already a hit
+        assertTrue(bs.hasBlockInfo(block.getHashLow()));
+        assertNotNull(bs.getBlockInfoByHash(block.getHashLow()));
+        assertEquals(0, bs.getBlockInfoCacheStats().missCount());
+        assertTrue(bs.getBlockInfoCacheStats().hitCount() >= 2);
+
+        block.getInfo().setFee(XAmount.TEN);
+        bs.saveBlockInfo(block.getInfo());
+        assertEquals(XAmount.TEN, bs.getBlockInfoByHash(block.getHashLow()).getFee());
+
+        // cached values must not be shared with callers
+        bs.getBlockInfoByHash(block.getHashLow()).getInfo().setFee(XAmount.ONE);
+        assertEquals(XAmount.TEN, bs.getBlockInfoByHash(block.getHashLow()).getFee());
+
+        Block unknown = generateAddressBlock(config, Keys.createEcKeyPair(), time + 1);
+        assertNull(bs.getBlockInfoByHash(unknown.getHashLow()));
+        assertFalse(bs.hasBlockInfo(unknown.getHashLow()));
+    }
+
+    @Test
+    public void testBlockInfoCacheKeepsNewerValue() throws Exception {
+        BlockStore bs = new BlockStoreImpl(indexSource, timeSource, blockSource, TxHistorySource);
+        bs.init();
+        Block block = generateAddressBlock(config, Keys.createEcKeyPair(), System.currentTimeMillis());
+        bs.saveBlock(block);
+
+        // a second store with a cold cache, the block info is saved by another thread while a miss is loading
+        KVSource<byte[], byte[]> spyIndex = Mockito.spy(indexSource);
+        BlockStore reader = new BlockStoreImpl(spyIndex, timeSource, blockSource, TxHistorySource);
+        byte[] infoKey = BytesUtils.merge(HASH_BLOCK_INFO, block.getHashLow().toArray());
+        CountDownLatch written = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            invocation.callRealMethod();
+            written.countDown();
+            return null;
+        }).when(spyIndex).put(ArgumentMatchers.argThat(key -> Arrays.equals(key, infoKey)), ArgumentMatchers.any());
+        Thread writer = new Thread(() -> {
+            block.getInfo().setFee(XAmount.TEN);
+            reader.saveBlockInfo(block.getInfo());
+        });
+        Mockito.doAnswer(invocation -> {
+            Object stale = invocation.callRealMethod();
+            if (!writer.isAlive() && written.getCount() > 0) {
+                writer.start();
+                assertTrue(written.await(5, TimeUnit.SECONDS));
+            }
+            return stale;
+        }).when(spyIndex).get(ArgumentMatchers.argThat(key -> Arrays.equals(key, infoKey)));
+
+        reader.getBlockInfoByHash(block.getHashLow());
+        writer.join();
+        assertEquals(XAmount.TEN, reader.getBlockInfoByHash(block.getHashLow()).getFee());
+    }
+
+    @Test
+    public void testFailedUnitDoesNotHideLaterWrite() throws Exception {
+        BlockStore bs = new BlockStoreImpl(indexSource, timeSource, blockSource, TxHistorySource);
+        bs.init();
+        Block block = generateAddressBlock(config, Keys.createEcKeyPair(), System.currentTimeMillis());
+        bs.saveBlock(block);
+        int flags = block.getInfo().getFlags();
+
+        try {
+            factory.executeInBatch(() -> {
+                block.getInfo().setFlags(flags | BI_MAIN);
+                bs.saveBlockInfo(block.getInfo());
+                assertEquals(flags | BI_MAIN, bs.getBlockInfoByHash(block.getHashLow()).getInfo().getFlags());
+                throw new IllegalStateException("import failed");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("import failed", e.getMessage());
+        }
+        assertEquals(flags, bs.getBlockInfoByHash(block.getHashLow()).getInfo().getFlags());
+
+        // the same value again must still reach the disk
+        bs.saveBlockInfo(block.getInfo());
+        BlockStore cold = new BlockStoreImpl(indexSource, timeSource, blockSource, TxHistorySource);
+        assertEquals(flags | BI_MAIN, cold.getBlockInfoByHash(block.getHashLow()).getInfo().getFlags());
+    }
+
+    @Test
+    public void testBlockInfoWrittenOncePerUnit() throws Exception {
+        KVSource<byte[], byte[]> spyIndex = Mockito.spy(indexSource);
+        BlockStore bs = new BlockStoreImpl(spyIndex, timeSource, blockSource, TxHistorySource);
+        bs.init();
+        Block block = generateAddressBlock(config, Keys.createEcKeyPair(), System.currentTimeMillis());
+        bs.saveBlock(block);
+        int flags = block.getInfo().getFlags();
+        byte[] infoKey = BytesUtils.merge(HASH_BLOCK_INFO, block.getHashLow().toArray());
+        Mockito.clearInvocations(spyIndex);
+
+        // the flag is toggled back, nothing to write
+        factory.executeInBatch(() -> {
+            block.getInfo().setFlags(flags | BI_MAIN);
+            bs.saveBlockInfo(block.getInfo());
+            block.getInfo().setFlags(flags);
+            bs.saveBlockInfo(block.getInfo());
+        });
+        Mockito.verify(spyIndex, Mockito.never())
+                .put(ArgumentMatchers.argThat(key -> Arrays.equals(key, infoKey)), ArgumentMatchers.any());
+
+        // several changes, one write of the last value
+        factory.executeInBatch(() -> {
+            block.getInfo().setFlags(flags | BI_MAIN);
+            bs.saveBlockInfo(block.getInfo());
+            block.getInfo().setFlags(flags | BI_MAIN | BI_APPLIED);
+            bs.saveBlockInfo(block.getInfo());
+        });
+        Mockito.verify(spyIndex, Mockito.times(1))
+                .put(ArgumentMatchers.argThat(key -> Arrays.equals(key, infoKey)), ArgumentMatchers.any());
+        BlockStore cold = new BlockStoreImpl(indexSource, timeSource, blockSource, TxHistorySource);
+        assertEquals(flags | BI_MAIN | BI_APPLIED, cold.getBlockInfoByHash(block.getHashLow()).getInfo().getFlags());
+    }
+
     @Test
     public void testSaveOurBlock()
             throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, NoSuchProviderException {
@@ -159,6 +298,59 @@ public class BlockStoreImplTest {
         assertTrue(equalBytes(bs.getOurBlock(1).toArray(), new byte[]{0}));
     }
 
+    @Test
+    public void testOurKeyIndex()
+            throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, NoSuchProviderException {
+        BlockStore bs = new BlockStoreImpl(indexSource, timeSource, blockSource,TxHistorySource);
+        bs.init();
+        KeyPair key = Keys.createEcKeyPair();
+        Block block1 = generateAddressBlock(config, key, System.currentTimeMillis());
+        Block block2 = generateAddressBlock(config, key, System.currentTimeMillis() + 1);
+        bs.saveBlock(block1);
+        bs.saveBlock(block2);
+        bs.saveOurBlock(3, block1.getHashLow().toArray());
+        bs.saveOurBlock(5, block2.getHashLow().toArray());
+        assertEquals(3, bs.getKeyIndexByHash(block1.getHashLow()));
+        assertEquals(5, bs.getKeyIndexByHash(block2.getHashLow()));
+
+        // the lookup is rebuilt from the store on boot
+        BlockStore reloaded = new BlockStoreImpl(indexSource, timeSource, blockSource,TxHistorySource);
+        reloaded.init();
+        assertEquals(3, reloaded.getKeyIndexByHash(block1.getHashLow()));
+        assertArrayEquals(block2.getHashLow().toArray(), reloaded.getOurBlock(5).toArray());
+
+        reloaded.removeOurBlock(block1.getHashLow().toArray());
+        assertEquals(-1, reloaded.getKeyIndexByHash(block1.getHashLow()));
+        assertTrue(equalBytes(reloaded.getOurBlock(3).toArray(), new byte[]{0}));
+        assertEquals(5, reloaded.getKeyIndexByHash(block2.getHashLow()));
+    }
+
+    @Test
+    public void testMinedBlocks()
+            throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, NoSuchProviderException {
+        BlockStore bs = new BlockStoreImpl(indexSource, timeSource, blockSource,TxHistorySource);
+        bs.init();
+        KeyPair key = Keys.createEcKeyPair();
+        long time = System.currentTimeMillis();
+        Block[] blocks = new Block[3];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = generateAddressBlock(config, key, time + i);
+            bs.saveBlock(blocks[i]);
+            bs.saveMinedBlock(i + 1, blocks[i].getHashLow().toArray());
+        }
+
+        List<Block> mined = bs.getMinedBlocks(2);
+        assertEquals(2, mined.size());
+        assertEquals(blocks[2].getHashLow(), mined.get(0).getHashLow());
+        assertEquals(blocks[1].getHashLow(), mined.get(1).getHashLow());
+
+        bs.removeMinedBlock(3);
+        mined = bs.getMinedBlocks(10);
+        assertEquals(2, mined.size());
+        assertEquals(blocks[1].getHashLow(), mined.get(0).getHashLow());
+        assertEquals(blocks[0].getHashLow(), mined.get(1).getHashLow());
+    }
+
     @Test
     public void testSaveBlockSums()
             throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, NoSuchProviderException {
@@ -195,4 +387,27 @@ public class BlockStoreImplTest {
         assertEquals(block, blocks.get(0));
 
     }
+
+    @Test
+    public void testMigrateBlockInfoFormat() throws Exception {
+        KeyPair key = Keys.createEcKeyPair();
+        Block block = generateAddressBlock(config, key, System.currentTimeMillis());
+        block.getInfo().setHeight(7);
+        block.getInfo().setFlags(0x1f);
+
+        // a block info written by the kryo based store
+        indexSource.init();
+        KryoCodec kryo = new KryoCodec(BigInteger.class, byte[].class, BlockInfo.class, XdagStats.class,
+                XdagTopStatus.class, SnapshotInfo.class, UInt64.class, XAmount.class);
+        byte[] key1 = BytesUtils.merge(BlockStore.HASH_BLOCK_INFO, block.getHashLow().toArray());
+        indexSource.put(key1, kryo.serialize(block.getInfo()));
+
+        BlockStore bs = new BlockStoreImpl(indexSource, timeSource, blockSource, TxHistorySource);
+        bs.init();
+        assertTrue(BlockInfoCodec.isEncoded(indexSource.get(key1)));
+        BlockInfo stored = bs.getBlockInfoByHash(block.getHashLow()).getInfo();
+        assertEquals(block.getInfo(), stored);
+        assertEquals(block.getInfo().getDifficulty(), stored.getDifficulty());
+        assertArrayEquals(block.getInfo().getHashlow(), stored.getHashlow());
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.netty.channel.socket.DefaultSocketChannelConfig;
+import io.netty.channel.socket.SocketChannel;
+import java.net.Socket;
+import org.junit.Test;
+
+public class ChannelTest {
+
+    @Test
+    public void testImportBackpressure() {
+        SocketChannel socket = mock(SocketChannel.class);
+        DefaultSocketChannelConfig config = new DefaultSocketChannelConfig(socket, new Socket());
+        when(socket.config()).thenReturn(config);
+        Channel channel = new Channel(socket);
+        int limit = 8;
+
+        for (int i = 0; i < limit - 1; i++) {
+            channel.importQueued(limit);
+        }
+        assertTrue(config.isAutoRead());
+        channel.importQueued(limit);
+        assertFalse(config.isAutoRead());
+
+        // stays paused until half of the backlog drained
+        for (int i = 0; i < limit / 2 - 1; i++) {
+            channel.importDone(limit);
+        }
+        assertFalse(config.isAutoRead());
+        channel.importDone(limit);
+        assertTrue(config.isAutoRead());
+        assertEquals(limit / 2, channel.getPendingImports().get());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.xdag.BlockBuilder;
+import io.xdag.config.Config;
+import io.xdag.config.DevnetConfig;
+import io.xdag.core.Block;
+import io.xdag.crypto.Keys;
+import io.xdag.net.message.Message;
+import io.xdag.net.message.consensus.NewBlockMessage;
+import io.xdag.net.message.consensus.SyncBlockMessage;
+import io.xdag.utils.XdagTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.hyperledger.besu.crypto.KeyPair;
+import org.junit.Test;
+
+public class XdagMessageHandlerTest {
+
+    @Test
+    public void testBroadcastEncodedOnce() throws Exception {
+        Config config = new DevnetConfig();
+        KeyPair key = Keys.createEcKeyPair();
+        Block block = BlockBuilder.generateAddressBlock(config, key, XdagTime.getCurrentTimestamp());
+        NewBlockMessage msg = new NewBlockMessage(block, 5);
+
+        List<Object> out1 = new ArrayList<>();
+        List<Object> out2 = new ArrayList<>();
+        new XdagMessageHandler(config).encode(null, msg, out1);
+        new XdagMessageHandler(config).encode(null, msg, out2);
+
+        assertEquals(1, out1.size());
+        assertEquals(1, out2.size());
+        Frame frame1 = (Frame) out1.get(0);
+        Frame frame2 = (Frame) out2.get(0);
+        // both channels write the body compressed for the first one
+        assertSame(msg.getCompressedBody(), frame1.getBody().array());
+        assertSame(msg.getCompressedBody(), frame2.getBody().array());
+        frame1.release();
+
+        Message decoded = new XdagMessageHandler(config).decodeMessage(List.of(frame2));
+        frame2.release();
+        assertTrue(decoded instanceof NewBlockMessage);
+        assertEquals(block.getHashLow(), ((NewBlockMessage) decoded).getBlock().getHashLow());
+        assertEquals(5, ((NewBlockMessage) decoded).getTtl());
+    }
+
+    @Test
+    public void testChunkedRoundTrip() throws Exception {
+        DevnetConfig config = new DevnetConfig();
+        // small frames so a block spans several of them
+        config.setNetMaxFrameBodySize(64);
+        KeyPair key = Keys.createEcKeyPair();
+        Block block = BlockBuilder.generateAddressBlock(config, key, XdagTime.getCurrentTimestamp());
+
+        EmbeddedChannel sender = newChannel(config);
+        EmbeddedChannel receiver = newChannel(config);
+        sender.writeOutbound(new SyncBlockMessage(block, 3));
+        ByteBuf buf;
+        int frames = 0;
+        while ((buf = sender.readOutbound()) != null) {
+            receiver.writeInbound(buf);
+            frames++;
+        }
+        assertTrue(frames > 1);
+
+        SyncBlockMessage decoded = receiver.readInbound();
+        assertEquals(block.getHashLow(), decoded.getBlock().getHashLow());
+        assertEquals(3, decoded.getTtl());
+        assertNull(receiver.readInbound());
+        sender.finishAndReleaseAll();
+        receiver.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Config config = new DevnetConfig();
+        EmbeddedChannel sender = newChannel(config);
+        EmbeddedChannel receiver = newChannel(config);
+        for (int i = 0; i < 4; i++) {
+            Block block = BlockBuilder.generateAddressBlock(config, Keys.createEcKeyPair(),
+                    XdagTime.getCurrentTimestamp() + i);
+            boolean sync = i % 2 == 1;
+            sender.writeOutbound(sync ? new SyncBlockMessage(block, i) : new NewBlockMessage(block, i));
+            ByteBuf buf;
+            while ((buf = sender.readOutbound()) != null) {
+                receiver.writeInbound(buf);
+            }
+
+            Message decoded = receiver.readInbound();
+            assertEquals(sync ? SyncBlockMessage.class : NewBlockMessage.class, decoded.getClass());
+            Block decodedBlock = sync ? ((SyncBlockMessage) decoded).getBlock() : ((NewBlockMessage) decoded).getBlock();
+            assertEquals(block.getHashLow(), decodedBlock.getHashLow());
+            assertEquals(block.getXdagBlock().getData(), decodedBlock.getXdagBlock().getData());
+            assertNull(receiver.readInbound());
+        }
+        sender.finishAndReleaseAll();
+        receiver.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testDecodeDirectBody() throws Exception {
+        Config config = new DevnetConfig();
+        Block block = BlockBuilder.generateAddressBlock(config, Keys.createEcKeyPair(), XdagTime.getCurrentTimestamp());
+        List<Object> out = new ArrayList<>();
+        new XdagMessageHandler(config).encode(null, new NewBlockMessage(block, 5), out);
+        Frame heap = (Frame) out.get(0);
+
+        // frames read off the socket are backed by direct buffers
+        ByteBuf body = Unpooled.directBuffer(heap.getBodySize()).writeBytes(heap.getBody());
+        Frame direct = new Frame(heap.getVersion(), heap.getCompressType(), heap.getPacketType(), heap.getPacketId(),
+                heap.getPacketSize(), heap.getBodySize(), body);
+        heap.release();
+
+        NewBlockMessage decoded = (NewBlockMessage) new XdagMessageHandler(config).decodeMessage(List.of(direct));
+        direct.release();
+        assertEquals(block.getHashLow(), decoded.getBlock().getHashLow());
+        assertEquals(5, decoded.getTtl());
+    }
+
+    private static EmbeddedChannel newChannel(Config config) {
+        return new EmbeddedChannel(new XdagFrameHandler(config), new XdagMessageHandler(config));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.net.websocket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.xdag.Kernel;
+import io.xdag.consensus.XdagPow;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PoolHandShakeHandlerTest {
+
+    XdagPow.GetShares shares;
+    EmbeddedChannel channel;
+
+    @Before
+    public void setUp() {
+        Kernel kernel = mock(Kernel.class);
+        XdagPow pow = mock(XdagPow.class);
+        shares = mock(XdagPow.GetShares.class);
+        when(kernel.getPow()).thenReturn(pow);
+        when(pow.getSharesFromPools()).thenReturn(shares);
+        channel = new EmbeddedChannel(new HttpServerCodec(), new HttpObjectAggregator(65536),
+                new PoolHandShakeHandler(kernel, List.of("0.0.0.0"), 7001));
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testBinarySubprotocolNegotiated() {
+        HttpResponse response = handshake(PoolHandShakeHandler.BINARY_SUBPROTOCOL);
+
+        assertEquals(HttpResponseStatus.SWITCHING_PROTOCOLS, response.status());
+        assertEquals(PoolHandShakeHandler.BINARY_SUBPROTOCOL, response.headers().get("Sec-WebSocket-Protocol"));
+        assertTrue(ChannelSupervise.isBinary(channel));
+
+        byte[] batch = new byte[]{2, 1, 2, 3};
+        channel.writeInbound(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(batch)));
+        verify(shares).getShareBatch(batch);
+    }
+
+    @Test
+    public void testTextPoolWithoutSubprotocol() {
+        HttpResponse response = handshake(null);
+
+        assertEquals(HttpResponseStatus.SWITCHING_PROTOCOLS, response.status());
+        assertNull(response.headers().get("Sec-WebSocket-Protocol"));
+        assertFalse(ChannelSupervise.isBinary(channel));
+
+        channel.writeInbound(new TextWebSocketFrame("{}"));
+        verify(shares).getShareInfo("{}");
+        verify(shares, never()).getShareBatch(any());
+    }
+
+    @Test
+    public void testChannelRemovedOnClose() {
+        handshake(PoolHandShakeHandler.BINARY_SUBPROTOCOL);
+        channel.close();
+        assertFalse(ChannelSupervise.isBinary(channel));
+    }
+
+    /**
+     * Sends a websocket upgrade request and decodes the handshake response.
+     */
+    private HttpResponse handshake(String subprotocol) {
+        FullHttpRequest req = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/websocket");
+        req.headers()
+                .set("Host", "127.0.0.1:7001")
+                .set("Upgrade", "websocket")
+                .set("Connection", "Upgrade")
+                .set("Sec-WebSocket-Key", "dGhlIHNhbXBsZSBub25jZQ==")
+                .set("Sec-WebSocket-Version", "13");
+        if (subprotocol != null) {
+            req.headers().set("Sec-WebSocket-Protocol", subprotocol);
+        }
+        EmbeddedChannel client = new EmbeddedChannel(new HttpClientCodec());
+        client.writeOutbound(req);
+        forward(client, channel);
+        forward(channel, client);
+        HttpResponse response = client.readInbound();
+        client.finishAndReleaseAll();
+        return response;
+    }
+
+    private static void forward(EmbeddedChannel from, EmbeddedChannel to) {
+        for (Object msg = from.readOutbound(); msg != null; msg = from.readOutbound()) {
+            to.writeInbound(msg);
+        }
+    }
+}
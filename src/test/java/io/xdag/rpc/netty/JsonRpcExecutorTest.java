@@ -0,0 +1,89 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.xdag.rpc.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class JsonRpcExecutorTest {
+
+    @Test
+    public void testRejectWhenSaturated() throws Exception {
+        JsonRpcExecutor executor = new JsonRpcExecutor(1, 1, false);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        Runnable blocking = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        };
+
+        assertTrue(executor.submit(blocking));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // one running, one queued
+        assertTrue(executor.submit(done::countDown));
+        assertFalse(executor.submit(done::countDown));
+        assertEquals(2, executor.getPending());
+        assertEquals(1, executor.getRejected());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertFalse(executor.submit(done::countDown));
+    }
+
+    @Test
+    public void testLatencyHistogram() {
+        assertEquals(0, JsonRpcExecutor.bucket(0));
+        assertEquals(1, JsonRpcExecutor.bucket(1));
+        assertEquals(2, JsonRpcExecutor.bucket(3));
+        assertEquals(3, JsonRpcExecutor.bucket(4));
+        assertEquals(JsonRpcExecutor.BUCKETS - 1, JsonRpcExecutor.bucket(Long.MAX_VALUE));
+
+        JsonRpcExecutor executor = new JsonRpcExecutor(1, 0, false);
+        executor.record("xdag_getBalance", 0);
+        executor.record("xdag_getBalance", 5);
+        executor.record("xdag_getBlockByHash", 5);
+
+        Map<String, long[]> histograms = executor.getLatencyHistograms();
+        assertEquals(2, histograms.size());
+        long[] balance = histograms.get("xdag_getBalance");
+        assertEquals(1, balance[0]);
+        assertEquals(1, balance[3]);
+        assertEquals(1, histograms.get("xdag_getBlockByHash")[3]);
+        executor.shutdown();
+    }
+}
@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.URL;
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -140,12 +141,28 @@ public class Web3HttpServerTest {
         smokeTest(APPLICATION_JSON, google.getHostAddress(), google, Lists.newArrayList());
     }
 
+    @Test
+    public void smokeTestUsingExecutor() throws Exception {
+        JsonRpcExecutor executor = new JsonRpcExecutor(2, 16, true);
+        try {
+            smokeTest(APPLICATION_JSON, "127.0.0.1", InetAddress.getLoopbackAddress(), Lists.newArrayList(), executor);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, Arrays.stream(executor.getLatencyHistograms().get("web3_sha3")).sum());
+    }
+
     private void smokeTest(String contentType, String host) throws Exception {
         smokeTest(contentType, host, InetAddress.getLoopbackAddress(), Lists.newArrayList());
     }
 
     private void smokeTest(String contentType, String host, InetAddress rpcAddress, List<String> rpcHost)
             throws Exception {
+        smokeTest(contentType, host, rpcAddress, rpcHost, null);
+    }
+
+    private void smokeTest(String contentType, String host, InetAddress rpcAddress, List<String> rpcHost,
+            JsonRpcExecutor executor) throws Exception {
         Web3 web3Mock = Mockito.mock(Web3.class);
         String mockResult = "output";
         Mockito.when(web3Mock.web3_sha3(Mockito.anyString())).thenReturn(mockResult);
@@ -158,7 +175,7 @@ public class Web3HttpServerTest {
         List<ModuleDescription> filteredModules = Collections.singletonList(
                 new ModuleDescription("web3", "1.0", true, Collections.emptyList(), Collections.emptyList()));
         JsonRpcWeb3FilterHandler filterHandler = new JsonRpcWeb3FilterHandler("*", rpcAddress, rpcHost);
-        JsonRpcWeb3ServerHandler serverHandler = new JsonRpcWeb3ServerHandler(web3Mock, filteredModules);
+        JsonRpcWeb3ServerHandler serverHandler = new JsonRpcWeb3ServerHandler(web3Mock, filteredModules, executor);
         Web3HttpServer server = new Web3HttpServer(InetAddress.getLoopbackAddress(), randomPort, 0, Boolean.TRUE,
                 mockCorsConfiguration, filterHandler, serverHandler);
         server.start();